@@ -0,0 +1,76 @@
+package com.mynetrunner.backend.benchmark;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+/**
+ * Compares a JMH JSON result file against the committed baseline and exits
+ * non-zero when any benchmark is worse by more than the allowed fraction.
+ * Throughput scores must not drop and average-time scores must not rise.
+ *
+ * Usage: BaselineComparison result.json baseline.json threshold
+ */
+public class BaselineComparison {
+
+    public static void main(String[] args) throws IOException {
+        if (args.length != 3) {
+            System.err.println("Usage: BaselineComparison <result.json> <baseline.json> <threshold>");
+            System.exit(2);
+        }
+
+        ObjectMapper mapper = new ObjectMapper();
+        Map<String, JsonNode> baseline = byName(mapper.readTree(new File(args[1])));
+        double threshold = Double.parseDouble(args[2]);
+
+        int regressions = 0;
+        for (JsonNode run : mapper.readTree(new File(args[0]))) {
+            String name = name(run);
+            double score = run.path("primaryMetric").path("score").asDouble();
+            String unit = run.path("primaryMetric").path("scoreUnit").asText();
+
+            JsonNode reference = baseline.get(name);
+            if (reference == null) {
+                System.out.printf("NEW        %-70s %14.3f %s%n", name, score, unit);
+                continue;
+            }
+
+            double expected = reference.path("primaryMetric").path("score").asDouble();
+            boolean higherIsBetter = "thrpt".equals(run.path("mode").asText());
+            double change = (score - expected) / expected;
+            double worse = higherIsBetter ? -change : change;
+
+            String status = worse > threshold ? "REGRESSED" : "ok";
+            if (worse > threshold) {
+                regressions++;
+            }
+            System.out.printf("%-10s %-70s %14.3f %s (baseline %.3f, %+.1f%%)%n",
+                status, name, score, unit, expected, change * 100);
+        }
+
+        if (regressions > 0) {
+            System.out.printf("%d benchmark(s) regressed by more than %.0f%%%n", regressions, threshold * 100);
+            System.exit(1);
+        }
+    }
+
+    private static Map<String, JsonNode> byName(JsonNode runs) {
+        Map<String, JsonNode> result = new HashMap<>();
+        for (JsonNode run : runs) {
+            result.put(name(run), run);
+        }
+        return result;
+    }
+
+    // Benchmark method plus its @Param values, if any
+    private static String name(JsonNode run) {
+        StringBuilder name = new StringBuilder(run.path("benchmark").asText());
+        run.path("params").fields().forEachRemaining(param ->
+            name.append(' ').append(param.getKey()).append('=').append(param.getValue().asText()));
+        return name.toString();
+    }
+}
@@ -0,0 +1,74 @@
+package com.mynetrunner.backend.benchmark;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import com.mynetrunner.backend.service.ConversationDispatcher;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+/**
+ * Deliveries per second through ConversationDispatcher as the number of
+ * lanes grows. Each operation dispatches a burst over many conversations,
+ * each delivery burning a fixed amount of CPU, and waits for all of them.
+ * Throughput should scale close to linearly until lanes reach the core count.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 2, time = 1)
+@Measurement(iterations = 3, time = 1)
+@Fork(1)
+public class ConversationDispatcherBenchmark {
+
+    private static final int BURST = 1024;
+
+    private static final int CONVERSATIONS = 256;
+
+    @Param({ "1", "2", "4", "8" })
+    private int lanes;
+
+    private ConversationDispatcher dispatcher;
+
+    @Setup
+    public void setUp() {
+        dispatcher = new ConversationDispatcher();
+        ReflectionTestUtils.setField(dispatcher, "meterRegistry", new SimpleMeterRegistry());
+        ReflectionTestUtils.setField(dispatcher, "laneCount", lanes);
+        ReflectionTestUtils.setField(dispatcher, "laneCapacity", BURST);
+        dispatcher.start();
+    }
+
+    @TearDown
+    public void tearDown() throws InterruptedException {
+        dispatcher.stop();
+    }
+
+    @Benchmark
+    public void dispatchBurst() throws InterruptedException {
+        CountDownLatch done = new CountDownLatch(BURST);
+        for (int i = 0; i < BURST; i++) {
+            long conversation = i % CONVERSATIONS;
+            dispatcher.dispatch(conversation, conversation + 1, () -> {
+                Blackhole.consumeCPU(2000);
+                done.countDown();
+            });
+        }
+        done.await();
+    }
+}
@@ -0,0 +1,101 @@
+package com.mynetrunner.backend.benchmark;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Date;
+import java.util.concurrent.TimeUnit;
+
+import javax.crypto.SecretKey;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import com.mynetrunner.backend.util.JwtUtil;
+
+import io.jsonwebtoken.Jwts;
+import io.jsonwebtoken.security.Keys;
+
+/**
+ * Token validations per second.
+ *
+ * legacyValidate reproduces the old JwtUtil: the key is derived from the
+ * secret and the token parsed and verified twice on every call.
+ * validateUncached measures the new single-parse path with a cache miss;
+ * validateCached the steady state for a token that is already verified.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class JwtUtilBenchmark {
+
+    private static final String SECRET = "mySecretKeyForDevelopmentOnlyChangeThisInProduction123456789";
+
+    private JwtUtil jwtUtil;
+
+    private JwtUtil uncachedJwtUtil;
+
+    private String token;
+
+    // Far more distinct tokens than the small cache can hold, so each call misses
+    private String[] distinctTokens;
+
+    private int next;
+
+    @Setup
+    public void setUp() {
+        jwtUtil = newJwtUtil(10_000);
+        uncachedJwtUtil = newJwtUtil(16);
+        token = jwtUtil.generateToken("alejandro");
+        distinctTokens = new String[4096];
+        for (int i = 0; i < distinctTokens.length; i++) {
+            distinctTokens[i] = uncachedJwtUtil.generateToken("user" + i);
+        }
+    }
+
+    @Benchmark
+    public String generate() {
+        return jwtUtil.generateToken("alejandro");
+    }
+
+    @Benchmark
+    public boolean legacyValidate() {
+        SecretKey key = Keys.hmacShaKeyFor(SECRET.getBytes(StandardCharsets.UTF_8));
+        String username = Jwts.parser().verifyWith(key).build()
+            .parseSignedClaims(token).getPayload().getSubject();
+        SecretKey keyAgain = Keys.hmacShaKeyFor(SECRET.getBytes(StandardCharsets.UTF_8));
+        Date expiration = Jwts.parser().verifyWith(keyAgain).build()
+            .parseSignedClaims(token).getPayload().getExpiration();
+        return username.equals("alejandro") && !expiration.before(new Date());
+    }
+
+    @Benchmark
+    public boolean validateUncached() {
+        int i = next++ & (distinctTokens.length - 1);
+        return uncachedJwtUtil.validateToken(distinctTokens[i], "user" + i);
+    }
+
+    @Benchmark
+    public boolean validateCached() {
+        return jwtUtil.validateToken(token, "alejandro");
+    }
+
+    private static JwtUtil newJwtUtil(long cacheSize) {
+        JwtUtil util = new JwtUtil();
+        ReflectionTestUtils.setField(util, "secret", SECRET);
+        ReflectionTestUtils.setField(util, "expiration", 86_400_000L);
+        ReflectionTestUtils.setField(util, "cacheMaximumSize", cacheSize);
+        util.init();
+        return util;
+    }
+}
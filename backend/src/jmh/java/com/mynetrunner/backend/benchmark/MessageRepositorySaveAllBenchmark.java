@@ -0,0 +1,84 @@
+package com.mynetrunner.backend.benchmark;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import com.mynetrunner.backend.BackendApplication;
+import com.mynetrunner.backend.model.Message;
+import com.mynetrunner.backend.repository.MessageRepository;
+
+/**
+ * Rows per second inserted through MessageRepository.saveAll on the H2 test
+ * profile, unbatched (batch_size 1) and with the configured JDBC batching.
+ * Each invocation saves ROWS messages in one transaction, so the score is
+ * in rows/s.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class MessageRepositorySaveAllBenchmark {
+
+    private static final int ROWS = 500;
+
+    @Param({ "1", "50" })
+    private int batchSize;
+
+    private ConfigurableApplicationContext context;
+
+    private MessageRepository messageRepository;
+
+    @Setup
+    public void setUp() {
+        context = new SpringApplicationBuilder(BackendApplication.class)
+            .profiles("test")
+            .run(
+                "--server.port=0",
+                "--logging.level.root=WARN",
+                "--spring.jpa.properties.hibernate.jdbc.batch_size=" + batchSize);
+        messageRepository = context.getBean(MessageRepository.class);
+    }
+
+    @TearDown
+    public void tearDown() {
+        context.close();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(ROWS)
+    public List<Message> saveAll() {
+        LocalDateTime now = LocalDateTime.now();
+        List<Message> messages = new ArrayList<>(ROWS);
+        for (int i = 0; i < ROWS; i++) {
+            Message message = new Message();
+            message.setSenderId(1L);
+            message.setReceiverId(2L + i % 100);
+            message.setContent("Hello there! How is the project going?");
+            message.setDelivered(false);
+            message.setTimestamp(now);
+            message.setExpiresAt(now.plusDays(30));
+            messages.add(message);
+        }
+        return messageRepository.saveAll(messages);
+    }
+}
@@ -0,0 +1,52 @@
+package com.mynetrunner.backend.benchmark;
+
+import java.time.LocalDateTime;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.converter.MappingJackson2MessageConverter;
+import org.springframework.messaging.simp.SimpMessageHeaderAccessor;
+
+import com.mynetrunner.backend.dto.message.MessageResponse;
+
+/**
+ * Cost of turning a MessageResponse into an outbound STOMP payload with the
+ * same Jackson converter SimpMessagingTemplate uses.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class MessageResponseSerializationBenchmark {
+
+    private MappingJackson2MessageConverter converter;
+
+    private MessageResponse response;
+
+    @Setup
+    public void setUp() {
+        converter = new MappingJackson2MessageConverter();
+        converter.setObjectMapper(Jackson2ObjectMapperBuilder.json().build());
+        response = new MessageResponse(
+            123L, 2L, "john", 1L, "Hello there! How is the project going?",
+            LocalDateTime.of(2025, 10, 2, 17, 30), false);
+    }
+
+    @Benchmark
+    public Message<?> toMessage() {
+        return converter.toMessage(response, SimpMessageHeaderAccessor.create().getMessageHeaders());
+    }
+}
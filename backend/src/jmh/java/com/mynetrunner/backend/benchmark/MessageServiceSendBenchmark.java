@@ -0,0 +1,61 @@
+package com.mynetrunner.backend.benchmark;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import com.mynetrunner.backend.BackendApplication;
+import com.mynetrunner.backend.model.Message;
+import com.mynetrunner.backend.service.MessageService;
+
+/**
+ * MessageService.sendMessage against the full application context on the
+ * H2 test profile. The offer timeout is raised so a full write-behind
+ * queue blocks the caller, which makes the score the sustained flush rate
+ * rather than how fast the queue fills up.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class MessageServiceSendBenchmark {
+
+    private ConfigurableApplicationContext context;
+
+    private MessageService messageService;
+
+    @Setup
+    public void setUp() {
+        context = new SpringApplicationBuilder(BackendApplication.class)
+            .profiles("test")
+            .run(
+                "--server.port=0",
+                "--logging.level.root=WARN",
+                "--messaging.write-behind.offer-timeout-ms=60000");
+        messageService = context.getBean(MessageService.class);
+    }
+
+    @TearDown
+    public void tearDown() {
+        context.close();
+    }
+
+    @Benchmark
+    public Message sendMessage() {
+        return messageService.sendMessage(1L, 2L, "Hello there! How is the project going?");
+    }
+}
@@ -0,0 +1,94 @@
+package com.mynetrunner.backend.benchmark;
+
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import com.mynetrunner.backend.BackendApplication;
+import com.mynetrunner.backend.model.Message;
+import com.mynetrunner.backend.repository.MessageRepository;
+
+/**
+ * Messages stored per second through JPA by four threads, with the
+ * show-sql and format_sql settings that used to ship against the
+ * slow-query-only logging that replaced them. stdout goes to a temp file
+ * so the forked VM's output stays readable but the writes still cost what
+ * a console does.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Threads(4)
+@Fork(1)
+public class SqlLoggingBenchmark {
+
+    @Param({ "show-sql", "slow-sql" })
+    private String logging;
+
+    private ConfigurableApplicationContext context;
+
+    private MessageRepository messageRepository;
+
+    private PrintStream originalOut;
+
+    private Path stdout;
+
+    @Setup
+    public void setUp() throws IOException {
+        originalOut = System.out;
+        stdout = Files.createTempFile("sql-logging-benchmark", ".log");
+        System.setOut(new PrintStream(new FileOutputStream(stdout.toFile()), true));
+
+        boolean showSql = "show-sql".equals(logging);
+        context = new SpringApplicationBuilder(BackendApplication.class)
+            .profiles("test")
+            .run(
+                "--server.port=0",
+                "--spring.jpa.show-sql=" + showSql,
+                "--spring.jpa.properties.hibernate.format_sql=" + showSql);
+        messageRepository = context.getBean(MessageRepository.class);
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        context.close();
+        System.out.close();
+        System.setOut(originalOut);
+        Files.deleteIfExists(stdout);
+    }
+
+    @Benchmark
+    public Message saveMessage() {
+        LocalDateTime now = LocalDateTime.now();
+        Message message = new Message();
+        message.setSenderId(1L);
+        message.setReceiverId(2L);
+        message.setContent("Hello there! How is the project going?");
+        message.setDelivered(false);
+        message.setTimestamp(now);
+        message.setExpiresAt(now.plusDays(30));
+        return messageRepository.save(message);
+    }
+}
@@ -0,0 +1,175 @@
+package com.mynetrunner.backend.benchmark;
+
+import java.lang.reflect.Type;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.messaging.converter.MappingJackson2MessageConverter;
+import org.springframework.messaging.simp.stomp.StompCommand;
+import org.springframework.messaging.simp.stomp.StompEncoder;
+import org.springframework.messaging.simp.stomp.StompFrameHandler;
+import org.springframework.messaging.simp.stomp.StompHeaderAccessor;
+import org.springframework.messaging.simp.stomp.StompHeaders;
+import org.springframework.messaging.simp.stomp.StompSession;
+import org.springframework.messaging.simp.stomp.StompSessionHandlerAdapter;
+import org.springframework.util.MimeTypeUtils;
+import org.springframework.web.socket.client.WebSocketClient;
+import org.springframework.web.socket.client.standard.StandardWebSocketClient;
+import org.springframework.web.socket.messaging.WebSocketStompClient;
+import org.springframework.web.socket.sockjs.client.RestTemplateXhrTransport;
+import org.springframework.web.socket.sockjs.client.SockJsClient;
+import org.springframework.web.socket.sockjs.client.WebSocketTransport;
+import org.springframework.web.socket.sockjs.frame.Jackson2SockJsMessageCodec;
+
+import com.mynetrunner.backend.BackendApplication;
+import com.mynetrunner.backend.util.JwtUtil;
+
+/**
+ * Native WebSocket (/ws/native) against SockJS (/ws) over its websocket and
+ * xhr-streaming transports, on the full application context with the H2
+ * test profile. handshake opens and closes a STOMP session; roundTrip sends
+ * a chat message to the sender itself and waits for it on
+ * /user/queue/messages. Bytes per MESSAGE frame on the wire are printed at
+ * setup.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class StompTransportBenchmark {
+
+    @Param({ "native", "sockjs-websocket", "sockjs-xhr" })
+    private String transport;
+
+    private ConfigurableApplicationContext context;
+
+    private WebSocketStompClient stompClient;
+
+    private String url;
+
+    private long userId;
+
+    private StompSession session;
+
+    private final BlockingQueue<Object> received = new LinkedBlockingQueue<>();
+
+    @Setup
+    public void setUp() throws Exception {
+        context = new SpringApplicationBuilder(BackendApplication.class)
+            .profiles("test")
+            .run(
+                "--server.port=0",
+                "--logging.level.root=WARN",
+                // The SockJS client logs every close frame that arrives after handshake() disconnects
+                "--logging.level.org.springframework.web.socket.sockjs.client=OFF");
+        String baseUrl = "http://localhost:" + context.getEnvironment().getProperty("local.server.port");
+
+        JdbcTemplate jdbcTemplate = context.getBean(JdbcTemplate.class);
+        jdbcTemplate.update(
+            "INSERT INTO users (username, password_hash, created_at) VALUES ('transport', 'hash', CURRENT_TIMESTAMP)");
+        userId = jdbcTemplate.queryForObject("SELECT id FROM users WHERE username = 'transport'", Long.class);
+        String token = context.getBean(JwtUtil.class).generateToken("transport");
+
+        WebSocketClient client = switch (transport) {
+            case "native" -> new StandardWebSocketClient();
+            case "sockjs-websocket" -> new SockJsClient(List.of(new WebSocketTransport(new StandardWebSocketClient())));
+            case "sockjs-xhr" -> new SockJsClient(List.of(new RestTemplateXhrTransport()));
+            default -> throw new IllegalArgumentException("Unknown transport " + transport);
+        };
+        url = "native".equals(transport)
+            ? baseUrl.replaceFirst("^http", "ws") + "/ws/native?token=" + token
+            : baseUrl + "/ws?token=" + token;
+
+        stompClient = new WebSocketStompClient(client);
+        stompClient.setMessageConverter(new MappingJackson2MessageConverter());
+
+        session = connect();
+        session.subscribe("/user/queue/messages", new StompFrameHandler() {
+            @Override
+            public Type getPayloadType(StompHeaders headers) {
+                return Map.class;
+            }
+
+            @Override
+            public void handleFrame(StompHeaders headers, Object payload) {
+                received.add(payload);
+            }
+        });
+        // Let the subscription register before the first round trip
+        Thread.sleep(500);
+
+        System.out.printf("%n%s: %d bytes per MESSAGE frame%n", transport, messageFrameBytes());
+    }
+
+    @TearDown
+    public void tearDown() {
+        session.disconnect();
+        stompClient.stop();
+        context.close();
+    }
+
+    @Benchmark
+    public StompSession handshake() throws Exception {
+        StompSession opened = connect();
+        opened.disconnect();
+        return opened;
+    }
+
+    @Benchmark
+    public Object roundTrip() throws Exception {
+        session.send("/app/chat", Map.of(
+            "senderId", userId,
+            "receiverId", userId,
+            "content", "Hello there! How is the project going?"
+        ));
+        return received.poll(10, TimeUnit.SECONDS);
+    }
+
+    private StompSession connect() throws Exception {
+        return stompClient.connectAsync(url, new StompSessionHandlerAdapter() {
+        }).get(10, TimeUnit.SECONDS);
+    }
+
+    /**
+     * A typical MESSAGE frame as STOMP bytes, plus the SockJS "a[...]" JSON
+     * array framing when the transport is SockJS
+     */
+    private int messageFrameBytes() {
+        StompHeaderAccessor headers = StompHeaderAccessor.create(StompCommand.MESSAGE);
+        headers.setDestination("/user/queue/messages");
+        headers.setSubscriptionId("0");
+        headers.setMessageId("a1b2c3d4-0");
+        headers.setContentType(MimeTypeUtils.APPLICATION_JSON);
+        byte[] body = ("{\"id\":null,\"senderId\":1,\"senderUsername\":\"john\",\"receiverId\":2,"
+            + "\"content\":\"Hello there! How is the project going?\","
+            + "\"timestamp\":\"2025-10-02T17:30:00\",\"delivered\":true}").getBytes(StandardCharsets.UTF_8);
+        headers.setContentLength(body.length);
+        byte[] frame = new StompEncoder().encode(headers.getMessageHeaders(), body);
+        if ("native".equals(transport)) {
+            return frame.length;
+        }
+        String sockJsFrame = new Jackson2SockJsMessageCodec().encode(new String(frame, StandardCharsets.UTF_8));
+        return sockJsFrame.getBytes(StandardCharsets.UTF_8).length;
+    }
+}
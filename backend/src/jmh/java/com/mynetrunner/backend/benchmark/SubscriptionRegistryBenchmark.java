@@ -0,0 +1,88 @@
+package com.mynetrunner.backend.benchmark;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.simp.SimpMessageHeaderAccessor;
+import org.springframework.messaging.simp.SimpMessageType;
+import org.springframework.messaging.simp.broker.DefaultSubscriptionRegistry;
+import org.springframework.messaging.simp.broker.SubscriptionRegistry;
+import org.springframework.messaging.support.MessageBuilder;
+import org.springframework.util.MultiValueMap;
+
+import com.mynetrunner.backend.config.IndexedSubscriptionRegistry;
+
+/**
+ * Time for the broker to find the subscriber of one user's queue, with one
+ * /queue/messages-user{session} subscription per connected session, as the
+ * user destination handler produces. The indexed registry should stay flat
+ * from 1k to 100k sessions; the default one scans on every cache miss.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 2, time = 1)
+@Measurement(iterations = 3, time = 1)
+@Fork(1)
+public class SubscriptionRegistryBenchmark {
+
+    @Param({ "1000", "10000", "100000" })
+    private int sessions;
+
+    private SubscriptionRegistry defaultRegistry;
+
+    private SubscriptionRegistry indexedRegistry;
+
+    private Message<?>[] deliveries;
+
+    @Setup
+    public void setUp() {
+        defaultRegistry = new DefaultSubscriptionRegistry();
+        indexedRegistry = new IndexedSubscriptionRegistry();
+        deliveries = new Message<?>[sessions];
+        for (int i = 0; i < sessions; i++) {
+            String sessionId = "session" + i;
+            String destination = "/queue/messages-user" + sessionId;
+            Message<?> subscribe = message(SimpMessageType.SUBSCRIBE, sessionId, destination);
+            defaultRegistry.registerSubscription(subscribe);
+            indexedRegistry.registerSubscription(subscribe);
+            deliveries[i] = message(SimpMessageType.MESSAGE, null, destination);
+        }
+    }
+
+    @Benchmark
+    public MultiValueMap<String, String> defaultRegistry() {
+        return defaultRegistry.findSubscriptions(randomDelivery());
+    }
+
+    @Benchmark
+    public MultiValueMap<String, String> indexedRegistry() {
+        return indexedRegistry.findSubscriptions(randomDelivery());
+    }
+
+    private Message<?> randomDelivery() {
+        return deliveries[ThreadLocalRandom.current().nextInt(deliveries.length)];
+    }
+
+    private static Message<?> message(SimpMessageType type, String sessionId, String destination) {
+        SimpMessageHeaderAccessor accessor = SimpMessageHeaderAccessor.create(type);
+        accessor.setDestination(destination);
+        if (sessionId != null) {
+            accessor.setSessionId(sessionId);
+            accessor.setSubscriptionId("sub-0");
+        }
+        return MessageBuilder.createMessage(new byte[0], accessor.getMessageHeaders());
+    }
+}
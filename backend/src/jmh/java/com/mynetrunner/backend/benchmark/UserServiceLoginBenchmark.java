@@ -0,0 +1,78 @@
+package com.mynetrunner.backend.benchmark;
+
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import com.mynetrunner.backend.dto.AuthResponse;
+import com.mynetrunner.backend.model.User;
+import com.mynetrunner.backend.repository.UserRepository;
+import com.mynetrunner.backend.service.PasswordHasher;
+import com.mynetrunner.backend.service.UserService;
+import com.mynetrunner.backend.util.JwtUtil;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+/**
+ * Latency of UserService.login, dominated by the BCrypt check on the
+ * PasswordHasher pool. The repository is stubbed so only hashing, the hand-off
+ * to the pool and token generation are measured.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class UserServiceLoginBenchmark {
+
+    private UserService userService;
+
+    @Setup
+    public void setUp() {
+        User user = new User();
+        user.setId(1L);
+        user.setUsername("alejandro");
+        user.setPasswordHash(new BCryptPasswordEncoder().encode("Password123"));
+
+        UserRepository userRepository = mock(UserRepository.class);
+        when(userRepository.findByUsername("alejandro")).thenReturn(Optional.of(user));
+
+        JwtUtil jwtUtil = new JwtUtil();
+        ReflectionTestUtils.setField(jwtUtil, "secret", "mySecretKeyForDevelopmentOnlyChangeThisInProduction123456789");
+        ReflectionTestUtils.setField(jwtUtil, "expiration", 86_400_000L);
+        ReflectionTestUtils.setField(jwtUtil, "cacheMaximumSize", 10_000L);
+        jwtUtil.init();
+
+        PasswordHasher passwordHasher = new PasswordHasher();
+        ReflectionTestUtils.setField(passwordHasher, "meterRegistry", new SimpleMeterRegistry());
+        ReflectionTestUtils.setField(passwordHasher, "strength", 10);
+        ReflectionTestUtils.setField(passwordHasher, "queueCapacity", 64);
+        passwordHasher.start();
+
+        userService = new UserService();
+        ReflectionTestUtils.setField(userService, "userRepository", userRepository);
+        ReflectionTestUtils.setField(userService, "jwtUtil", jwtUtil);
+        ReflectionTestUtils.setField(userService, "passwordHasher", passwordHasher);
+    }
+
+    @Benchmark
+    public AuthResponse login() {
+        return userService.login("alejandro", "Password123");
+    }
+}
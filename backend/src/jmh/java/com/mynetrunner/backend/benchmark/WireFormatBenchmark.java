@@ -0,0 +1,83 @@
+package com.mynetrunner.backend.benchmark;
+
+import java.time.LocalDateTime;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+import org.springframework.messaging.converter.MappingJackson2MessageConverter;
+import org.springframework.messaging.simp.SimpMessageHeaderAccessor;
+import org.springframework.util.MimeType;
+import org.springframework.util.MimeTypeUtils;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.mynetrunner.backend.config.WireFormatChannelInterceptor;
+import com.mynetrunner.backend.config.WireFormatCodec;
+import com.mynetrunner.backend.dto.message.MessageResponse;
+
+/**
+ * CPU per outbound MessageResponse for each negotiable wire format, against
+ * the stock JSON message converter. Encoded size per message is printed at
+ * setup, since it does not vary between iterations.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class WireFormatBenchmark {
+
+    // "converter" is the stock MappingJackson2MessageConverter the broker used before
+    @Param({ "converter", "json", "cbor", "smile" })
+    private String format;
+
+    private Function<MessageResponse, byte[]> encoder;
+
+    private MessageResponse response;
+
+    @Setup
+    public void setUp() {
+        ObjectMapper objectMapper = Jackson2ObjectMapperBuilder.json().build();
+        MappingJackson2MessageConverter converter = new MappingJackson2MessageConverter();
+        converter.setObjectMapper(objectMapper);
+        WireFormatChannelInterceptor interceptor = new WireFormatChannelInterceptor(objectMapper);
+
+        encoder = switch (format) {
+            case "converter" -> payload -> (byte[]) converter
+                .toMessage(payload, SimpMessageHeaderAccessor.create().getMessageHeaders()).getPayload();
+            case "json" -> new WireFormatCodec(MimeTypeUtils.APPLICATION_JSON, objectMapper)::encode;
+            case "cbor" -> codecFor(interceptor, WireFormatChannelInterceptor.CBOR)::encode;
+            case "smile" -> codecFor(interceptor, WireFormatChannelInterceptor.SMILE)::encode;
+            default -> throw new IllegalArgumentException("Unknown format " + format);
+        };
+
+        response = new MessageResponse(
+            123L, 2L, "john", 1L, "Hello there! How is the project going?",
+            LocalDateTime.of(2025, 10, 2, 17, 30), false);
+        System.out.printf("%n%s: %d bytes per message%n", format, encoder.apply(response).length);
+    }
+
+    @Benchmark
+    public byte[] encode() {
+        return encoder.apply(response);
+    }
+
+    private static WireFormatCodec codecFor(WireFormatChannelInterceptor interceptor, MimeType mimeType) {
+        return interceptor.getBinaryCodecs().stream()
+            .filter(codec -> codec.getMimeType().equals(mimeType))
+            .findFirst()
+            .orElseThrow();
+    }
+}
@@ -0,0 +1,134 @@
+package com.mynetrunner.backend.loadtest;
+
+import java.lang.reflect.Type;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+
+import org.springframework.messaging.simp.stomp.StompCommand;
+import org.springframework.messaging.simp.stomp.StompFrameHandler;
+import org.springframework.messaging.simp.stomp.StompHeaders;
+import org.springframework.messaging.simp.stomp.StompSession;
+import org.springframework.messaging.simp.stomp.StompSessionHandlerAdapter;
+
+import com.fasterxml.jackson.databind.JsonNode;
+
+/**
+ * One simulated user: a STOMP session authenticated with the user's JWT and
+ * subscribed to /user/queue/messages that records the latency of everything
+ * it receives. Message content starts with the sender's System.nanoTime().
+ */
+public class LoadClient extends StompSessionHandlerAdapter {
+
+    private final long userId;
+
+    private final String token;
+
+    private final LoadStats stats;
+
+    private final CountDownLatch subscribed;
+
+    private volatile StompSession session;
+
+    public LoadClient(long userId, String token, LoadStats stats, CountDownLatch subscribed) {
+        this.userId = userId;
+        this.token = token;
+        this.stats = stats;
+        this.subscribed = subscribed;
+    }
+
+    public long getUserId() {
+        return userId;
+    }
+
+    public String getToken() {
+        return token;
+    }
+
+    public boolean isConnected() {
+        return session != null && session.isConnected();
+    }
+
+    @Override
+    public void afterConnected(StompSession session, StompHeaders connectedHeaders) {
+        this.session = session;
+        session.subscribe("/user/queue/messages", new StompFrameHandler() {
+            @Override
+            public Type getPayloadType(StompHeaders headers) {
+                return JsonNode.class;
+            }
+
+            @Override
+            public void handleFrame(StompHeaders headers, Object payload) {
+                handleMessage((JsonNode) payload);
+            }
+        });
+        subscribed.countDown();
+    }
+
+    /**
+     * Publish one chat message to /app/chat
+     */
+    public void send(long receiverId, String padding) {
+        StompSession current = session;
+        if (current == null || !current.isConnected()) {
+            stats.recordError();
+            return;
+        }
+
+        try {
+            String content = System.nanoTime() + "|" + padding;
+            current.send("/app/chat", Map.of(
+                "senderId", userId,
+                "receiverId", receiverId,
+                "content", content
+            ));
+            stats.recordSent();
+        } catch (RuntimeException e) {
+            stats.recordError();
+        }
+    }
+
+    public void disconnect() {
+        StompSession current = session;
+        if (current != null && current.isConnected()) {
+            current.disconnect();
+        }
+    }
+
+    @Override
+    public void handleException(StompSession session, StompCommand command, StompHeaders headers,
+            byte[] payload, Throwable exception) {
+        stats.recordError();
+    }
+
+    @Override
+    public void handleTransportError(StompSession session, Throwable exception) {
+        stats.recordError();
+    }
+
+    private void handleMessage(JsonNode payload) {
+        if (payload.has("messages")) {
+            payload.get("messages").forEach(this::record);
+            // Inbox drain batches carry a batchId and must be acknowledged so the drain moves on
+            if (payload.hasNonNull("batchId")) {
+                session.send("/app/inbox/ack", Map.of("userId", userId, "batchId", payload.get("batchId").asLong()));
+            }
+        } else {
+            record(payload);
+        }
+    }
+
+    private void record(JsonNode message) {
+        String content = message.path("content").asText();
+        int split = content.indexOf('|');
+        if (split <= 0) {
+            return;
+        }
+
+        try {
+            stats.recordReceived(Long.parseLong(content.substring(0, split)));
+        } catch (NumberFormatException e) {
+            // Not one of ours
+        }
+    }
+}
@@ -0,0 +1,82 @@
+package com.mynetrunner.backend.loadtest;
+
+import java.io.PrintStream;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.HdrHistogram.ConcurrentHistogram;
+import org.HdrHistogram.Histogram;
+
+/**
+ * Counters and send-to-receive latency histogram shared by all clients.
+ */
+public class LoadStats {
+
+    // Microsecond resolution, up to one minute, 3 significant digits
+    private final Histogram latency = new ConcurrentHistogram(TimeUnit.MINUTES.toMicros(1), 3);
+
+    private final LongAdder sent = new LongAdder();
+
+    private final LongAdder received = new LongAdder();
+
+    private final LongAdder errors = new LongAdder();
+
+    private final LongAdder connectFailures = new LongAdder();
+
+    public void recordSent() {
+        sent.increment();
+    }
+
+    public void recordReceived(long sentNanos) {
+        received.increment();
+        long micros = TimeUnit.NANOSECONDS.toMicros(System.nanoTime() - sentNanos);
+        latency.recordValue(Math.min(Math.max(micros, 0), latency.getHighestTrackableValue()));
+    }
+
+    public void recordError() {
+        errors.increment();
+    }
+
+    public void recordConnectFailure() {
+        connectFailures.increment();
+    }
+
+    public long getSent() {
+        return sent.sum();
+    }
+
+    public long getReceived() {
+        return received.sum();
+    }
+
+    /**
+     * Errors plus messages that never arrived, as a fraction of messages sent
+     */
+    public double getErrorRate() {
+        long sentCount = getSent();
+        if (sentCount == 0) {
+            return errors.sum() > 0 ? 1.0 : 0.0;
+        }
+        long lost = Math.max(0, sentCount - getReceived());
+        return (errors.sum() + lost) / (double) sentCount;
+    }
+
+    public void print(PrintStream out, int clients, double seconds) {
+        long sentCount = getSent();
+        long receivedCount = getReceived();
+
+        out.println();
+        out.println("=== STOMP load test results ===");
+        out.printf("Sessions        %d connected, %d failed%n", clients - connectFailures.sum(), connectFailures.sum());
+        out.printf("Messages        %d sent, %d received, %d lost%n",
+            sentCount, receivedCount, Math.max(0, sentCount - receivedCount));
+        out.printf("Errors          %d (error rate incl. lost %.3f%%)%n", errors.sum(), getErrorRate() * 100);
+        out.printf("Throughput      %.1f sent/s, %.1f received/s%n", sentCount / seconds, receivedCount / seconds);
+        out.printf("Latency (ms)    p50 %.2f  p90 %.2f  p99 %.2f  p99.9 %.2f  max %.2f%n",
+            percentile(50), percentile(90), percentile(99), percentile(99.9), latency.getMaxValue() / 1000.0);
+    }
+
+    private double percentile(double percentile) {
+        return latency.getValueAtPercentile(percentile) / 1000.0;
+    }
+}
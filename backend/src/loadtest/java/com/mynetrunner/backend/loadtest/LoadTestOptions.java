@@ -0,0 +1,102 @@
+package com.mynetrunner.backend.loadtest;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Command line options for StompLoadTest, given as --name=value.
+ */
+public class LoadTestOptions {
+
+    public enum Pattern {
+        // Client i always sends to client i ^ 1
+        PAIRS,
+        // Every message goes to a random other client
+        RANDOM,
+        // Every message goes to one of a few hot receivers
+        HOTSPOT
+    }
+
+    // Base URL of a running backend; empty starts one in-process on H2
+    private String target = "";
+
+    private int clients = 1000;
+
+    // Messages per second across all clients
+    private int rate = 2000;
+
+    private int durationSeconds = 30;
+
+    private Pattern pattern = Pattern.PAIRS;
+
+    private int hotspots = 10;
+
+    private int payloadBytes = 100;
+
+    // Fail (exit 1) when errors plus lost messages exceed this fraction of sends
+    private double maxErrorRate = 0.01;
+
+    public static LoadTestOptions parse(String[] args) {
+        Map<String, String> values = new HashMap<>();
+        for (String arg : args) {
+            if (!arg.startsWith("--") || !arg.contains("=")) {
+                throw new IllegalArgumentException("Expected --name=value but got " + arg);
+            }
+            int split = arg.indexOf('=');
+            values.put(arg.substring(2, split), arg.substring(split + 1));
+        }
+
+        LoadTestOptions options = new LoadTestOptions();
+        options.target = values.getOrDefault("target", options.target);
+        options.clients = Integer.parseInt(values.getOrDefault("clients", String.valueOf(options.clients)));
+        options.rate = Integer.parseInt(values.getOrDefault("rate", String.valueOf(options.rate)));
+        options.durationSeconds = Integer.parseInt(values.getOrDefault("duration", String.valueOf(options.durationSeconds)));
+        options.pattern = Pattern.valueOf(values.getOrDefault("pattern", options.pattern.name()).toUpperCase());
+        options.hotspots = Integer.parseInt(values.getOrDefault("hotspots", String.valueOf(options.hotspots)));
+        options.payloadBytes = Integer.parseInt(values.getOrDefault("payload", String.valueOf(options.payloadBytes)));
+        options.maxErrorRate = Double.parseDouble(values.getOrDefault("max-error-rate", String.valueOf(options.maxErrorRate)));
+
+        if (options.clients < 2) {
+            throw new IllegalArgumentException("Need at least 2 clients");
+        }
+        return options;
+    }
+
+    public String getTarget() {
+        return target;
+    }
+
+    public int getClients() {
+        return clients;
+    }
+
+    public int getRate() {
+        return rate;
+    }
+
+    public int getDurationSeconds() {
+        return durationSeconds;
+    }
+
+    public Pattern getPattern() {
+        return pattern;
+    }
+
+    public int getHotspots() {
+        return hotspots;
+    }
+
+    public int getPayloadBytes() {
+        return payloadBytes;
+    }
+
+    public double getMaxErrorRate() {
+        return maxErrorRate;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("clients=%d rate=%d/s duration=%ds pattern=%s payload=%dB target=%s",
+            clients, rate, durationSeconds, pattern, payloadBytes, target.isEmpty() ? "in-process" : target);
+    }
+}
@@ -0,0 +1,225 @@
+package com.mynetrunner.backend.loadtest;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.messaging.converter.MappingJackson2MessageConverter;
+import org.springframework.web.socket.client.standard.StandardWebSocketClient;
+import org.springframework.web.socket.messaging.WebSocketStompClient;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.mynetrunner.backend.BackendApplication;
+import com.mynetrunner.backend.util.JwtUtil;
+
+/**
+ * Drives N concurrent STOMP-over-WebSocket clients against /ws/native, each
+ * subscribed to its own /user/queue/messages and publishing to /app/chat,
+ * then reports send-to-receive latency percentiles, throughput and error
+ * rate.
+ *
+ * Without --target the backend is started in-process on the H2 test profile
+ * with the in-memory broker, so it runs in CI without any external service.
+ * Exits with status 1 when the error rate exceeds --max-error-rate.
+ */
+public class StompLoadTest {
+
+    private static final int TICKS_PER_SECOND = 100;
+
+    private final LoadTestOptions options;
+
+    private final String baseUrl;
+
+    private final List<LoadUser> users;
+
+    private final LoadStats stats = new LoadStats();
+
+    private final List<LoadClient> clients = new ArrayList<>();
+
+    /**
+     * A provisioned user and the JWT it connects with
+     */
+    public record LoadUser(long id, String token) {
+    }
+
+    public StompLoadTest(LoadTestOptions options, String baseUrl, List<LoadUser> users) {
+        this.options = options;
+        this.baseUrl = baseUrl;
+        this.users = users;
+    }
+
+    public static void main(String[] args) throws Exception {
+        LoadTestOptions options = LoadTestOptions.parse(args);
+        System.out.println("Load test: " + options);
+
+        ConfigurableApplicationContext context = null;
+        String baseUrl = options.getTarget();
+        List<LoadUser> users;
+        if (baseUrl.isEmpty()) {
+            context = new SpringApplicationBuilder(BackendApplication.class)
+                .profiles("test")
+                .run("--server.port=0", "--logging.level.root=WARN");
+            baseUrl = "http://localhost:" + context.getEnvironment().getProperty("local.server.port");
+            users = insertUsers(context.getBean(JdbcTemplate.class), context.getBean(JwtUtil.class),
+                options.getClients());
+        } else {
+            users = registerUsers(baseUrl, options.getClients());
+        }
+
+        boolean passed;
+        try {
+            StompLoadTest loadTest = new StompLoadTest(options, baseUrl, users);
+            LoadStats stats = loadTest.run();
+            passed = stats.getErrorRate() <= options.getMaxErrorRate();
+        } finally {
+            if (context != null) {
+                context.close();
+            }
+        }
+
+        System.exit(passed ? 0 : 1);
+    }
+
+    public LoadStats run() throws InterruptedException {
+        WebSocketStompClient stompClient = new WebSocketStompClient(new StandardWebSocketClient());
+        MappingJackson2MessageConverter converter = new MappingJackson2MessageConverter();
+        converter.setObjectMapper(Jackson2ObjectMapperBuilder.json().build());
+        stompClient.setMessageConverter(converter);
+
+        String url = baseUrl.replaceFirst("^http", "ws") + "/ws/native";
+        CountDownLatch subscribed = new CountDownLatch(users.size());
+        for (LoadUser user : users) {
+            LoadClient client = new LoadClient(user.id(), user.token(), stats, subscribed);
+            clients.add(client);
+            stompClient.connectAsync(url + "?token=" + user.token(), client).exceptionally(e -> {
+                stats.recordConnectFailure();
+                subscribed.countDown();
+                return null;
+            });
+        }
+
+        if (!subscribed.await(60, TimeUnit.SECONDS)) {
+            System.out.println("Timed out waiting for sessions to connect");
+        }
+        // Give the broker a moment to register the last subscriptions
+        Thread.sleep(1000);
+
+        String padding = "x".repeat(options.getPayloadBytes());
+        ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor();
+        long started = System.nanoTime();
+        double perTick = options.getRate() / (double) TICKS_PER_SECOND;
+        double[] carry = { 0 };
+        scheduler.scheduleAtFixedRate(() -> {
+            carry[0] += perTick;
+            int count = (int) carry[0];
+            carry[0] -= count;
+            for (int i = 0; i < count; i++) {
+                sendOne(padding);
+            }
+        }, 0, 1000 / TICKS_PER_SECOND, TimeUnit.MILLISECONDS);
+
+        Thread.sleep(TimeUnit.SECONDS.toMillis(options.getDurationSeconds()));
+        scheduler.shutdownNow();
+        double seconds = (System.nanoTime() - started) / (double) TimeUnit.SECONDS.toNanos(1);
+
+        // Let in-flight messages arrive before counting losses
+        long deadline = System.currentTimeMillis() + 5000;
+        while (stats.getReceived() < stats.getSent() && System.currentTimeMillis() < deadline) {
+            Thread.sleep(100);
+        }
+
+        stats.print(System.out, users.size(), seconds);
+        clients.forEach(LoadClient::disconnect);
+        stompClient.stop();
+        return stats;
+    }
+
+    private void sendOne(String padding) {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        int size = clients.size();
+        int senderIndex = random.nextInt(size);
+        int receiverIndex;
+        switch (options.getPattern()) {
+            case PAIRS -> receiverIndex = (senderIndex ^ 1) < size ? senderIndex ^ 1 : senderIndex - 1;
+            case HOTSPOT -> receiverIndex = random.nextInt(Math.min(options.getHotspots(), size));
+            default -> receiverIndex = random.nextInt(size);
+        }
+        if (receiverIndex == senderIndex) {
+            receiverIndex = (senderIndex + 1) % size;
+        }
+
+        clients.get(senderIndex).send(clients.get(receiverIndex).getUserId(), padding);
+    }
+
+    /**
+     * In-process mode: insert users directly, skipping BCrypt
+     */
+    private static List<LoadUser> insertUsers(JdbcTemplate jdbcTemplate, JwtUtil jwtUtil, int count) {
+        List<Object[]> rows = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            rows.add(new Object[] { "loadtest_" + i });
+        }
+        jdbcTemplate.batchUpdate(
+            "INSERT INTO users (username, password_hash, created_at) VALUES (?, 'loadtest', CURRENT_TIMESTAMP)",
+            rows);
+        return jdbcTemplate.query(
+            "SELECT id, username FROM users WHERE username LIKE 'loadtest\\_%' ORDER BY id",
+            (rs, rowNum) -> new LoadUser(rs.getLong("id"), jwtUtil.generateToken(rs.getString("username"))));
+    }
+
+    /**
+     * Remote mode: register users through the REST API and look up their ids
+     */
+    private static List<LoadUser> registerUsers(String baseUrl, int count) throws Exception {
+        HttpClient http = HttpClient.newHttpClient();
+        ObjectMapper mapper = new ObjectMapper();
+        String prefix = "lt" + Long.toString(System.currentTimeMillis(), 36) + "_";
+
+        Map<String, String> tokens = new HashMap<>();
+        for (int i = 0; i < count; i++) {
+            String username = prefix + i;
+            String body = mapper.writeValueAsString(Map.of("username", username, "password", "Loadtest123"));
+            HttpResponse<String> response = http.send(HttpRequest.newBuilder(URI.create(baseUrl + "/api/auth/register"))
+                .header("Content-Type", "application/json")
+                .POST(HttpRequest.BodyPublishers.ofString(body))
+                .build(), HttpResponse.BodyHandlers.ofString());
+            if (response.statusCode() != 201) {
+                throw new IllegalStateException("Registering " + username + " failed: " + response.body());
+            }
+            tokens.put(username, mapper.readTree(response.body()).path("token").asText());
+        }
+
+        // Page through just our users via the directory's prefix search
+        List<LoadUser> users = new ArrayList<>();
+        String cursor = "0";
+        while (cursor != null) {
+            URI uri = URI.create(baseUrl + "/api/users?limit=500&prefix=" + prefix + "&after=" + cursor);
+            HttpResponse<String> response = http.send(HttpRequest.newBuilder(uri).GET().build(),
+                HttpResponse.BodyHandlers.ofString());
+            JsonNode page = mapper.readTree(response.body());
+            for (JsonNode user : page.path("users")) {
+                String token = tokens.get(user.path("username").asText());
+                if (token != null) {
+                    users.add(new LoadUser(user.path("id").asLong(), token));
+                }
+            }
+            cursor = page.hasNonNull("nextCursor") ? page.get("nextCursor").asText() : null;
+        }
+        return users;
+    }
+}
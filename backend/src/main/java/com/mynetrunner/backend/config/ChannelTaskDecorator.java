@@ -0,0 +1,66 @@
+package com.mynetrunner.backend.config;
+
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.RejectedExecutionHandler;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.springframework.core.task.TaskDecorator;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+
+/**
+ * Counts the tasks of a STOMP channel executor that are waiting to run and
+ * running, and publishes both as gauges tagged with the channel name. Works
+ * the same for the platform pool and the virtual-thread executor.
+ *
+ * A task is counted as queued when it is decorated, before the pool has
+ * accepted it, so the platform pool must also use this as its rejection
+ * handler to take rejected tasks off the count again.
+ */
+public class ChannelTaskDecorator implements TaskDecorator, RejectedExecutionHandler {
+
+    private final AtomicInteger queued = new AtomicInteger();
+
+    private final AtomicInteger active = new AtomicInteger();
+
+    private final Counter rejected;
+
+    public ChannelTaskDecorator(String channel, MeterRegistry meterRegistry) {
+        Gauge.builder("websocket.channel.queue.depth", queued, AtomicInteger::get)
+            .description("Messages waiting for a thread on the STOMP channel executor")
+            .tag("channel", channel)
+            .register(meterRegistry);
+        Gauge.builder("websocket.channel.active", active, AtomicInteger::get)
+            .description("Messages being handled on the STOMP channel executor")
+            .tag("channel", channel)
+            .register(meterRegistry);
+        rejected = Counter.builder("websocket.channel.rejected")
+            .description("Messages refused because the STOMP channel executor was full")
+            .tag("channel", channel)
+            .register(meterRegistry);
+    }
+
+    @Override
+    public Runnable decorate(Runnable runnable) {
+        queued.incrementAndGet();
+        return () -> {
+            queued.decrementAndGet();
+            active.incrementAndGet();
+            try {
+                runnable.run();
+            } finally {
+                active.decrementAndGet();
+            }
+        };
+    }
+
+    @Override
+    public void rejectedExecution(Runnable runnable, ThreadPoolExecutor executor) {
+        queued.decrementAndGet();
+        rejected.increment();
+        throw new RejectedExecutionException("Task " + runnable + " rejected from " + executor);
+    }
+}
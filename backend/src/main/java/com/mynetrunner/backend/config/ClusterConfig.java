@@ -0,0 +1,68 @@
+package com.mynetrunner.backend.config;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.data.redis.connection.RedisConnectionFactory;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+
+import jakarta.annotation.PreDestroy;
+
+/**
+ * Redis pub/sub wiring for cluster mode (messaging.cluster.enabled=true).
+ */
+@Configuration
+@ConditionalOnProperty(name = "messaging.cluster.enabled", havingValue = "true")
+public class ClusterConfig {
+
+    private static final Logger log = LoggerFactory.getLogger(ClusterConfig.class);
+
+    // Messages received from Redis waiting for the listener thread
+    @Value("${messaging.cluster.listener-queue-capacity:10000}")
+    private int listenerQueueCapacity;
+
+    private ThreadPoolTaskExecutor listenerExecutor;
+
+    @Bean
+    public RedisMessageListenerContainer redisMessageListenerContainer(RedisConnectionFactory connectionFactory,
+            MeterRegistry meterRegistry) {
+        Counter rejected = Counter.builder("messaging.cluster.listener.rejected")
+            .description("Messages from Redis dropped because the listener queue was full")
+            .register(meterRegistry);
+
+        // One thread, so listeners see messages in the order Redis sent them;
+        // the default executor starts a thread per message. A dropped delivery
+        // is never acked, so its sender stores it instead
+        listenerExecutor = new ThreadPoolTaskExecutor();
+        listenerExecutor.setThreadNamePrefix("cluster-listener-");
+        listenerExecutor.setCorePoolSize(1);
+        listenerExecutor.setMaxPoolSize(1);
+        listenerExecutor.setQueueCapacity(listenerQueueCapacity);
+        listenerExecutor.setRejectedExecutionHandler((task, executor) -> {
+            rejected.increment();
+            log.debug("Listener queue full, dropping a message from Redis");
+        });
+        listenerExecutor.initialize();
+
+        // Shard channels are added and removed at runtime by ClusterMessageRelay
+        RedisMessageListenerContainer container = new RedisMessageListenerContainer();
+        container.setConnectionFactory(connectionFactory);
+        container.setTaskExecutor(listenerExecutor);
+        return container;
+    }
+
+    // The container is destroyed first, since it was created from this class
+    @PreDestroy
+    public void stop() {
+        if (listenerExecutor != null) {
+            listenerExecutor.shutdown();
+        }
+    }
+}
@@ -0,0 +1,55 @@
+package com.mynetrunner.backend.config;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.BeansException;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.env.Environment;
+
+import com.zaxxer.hikari.HikariDataSource;
+
+/**
+ * Sizes the Hikari pool from the threads that actually hold connections:
+ * one per conversation lane, the write-behind flusher, the thread the
+ * inbox drains run on once messages are stored, and the expiry reaper,
+ * plus headroom for HTTP requests and acknowledgements. Inbound STOMP
+ * threads hand work to the lanes and the write-behind queue, so they are
+ * not counted. An explicit spring.datasource.hikari.maximum-pool-size
+ * always wins.
+ */
+@Configuration
+public class DataSourceConfig {
+
+    private static final Logger log = LoggerFactory.getLogger(DataSourceConfig.class);
+
+    private static final String MAXIMUM_POOL_SIZE = "spring.datasource.hikari.maximum-pool-size";
+
+    // Write-behind flusher, drain notifier and reaper: one thread each
+    private static final int BACKGROUND_THREADS = 3;
+
+    @Bean
+    public static BeanPostProcessor hikariPoolSizePostProcessor(Environment environment) {
+        return new BeanPostProcessor() {
+            @Override
+            public Object postProcessAfterInitialization(Object bean, String beanName) throws BeansException {
+                if (bean instanceof HikariDataSource dataSource && !environment.containsProperty(MAXIMUM_POOL_SIZE)) {
+                    int size = laneThreads(environment) + BACKGROUND_THREADS
+                        + environment.getProperty("messaging.datasource.pool-headroom", Integer.class, 4);
+                    // A fixed-size pool, as Hikari recommends
+                    dataSource.setMaximumPoolSize(size);
+                    dataSource.setMinimumIdle(size);
+                    log.info("Sized the connection pool to {} connections", size);
+                }
+                return bean;
+            }
+        };
+    }
+
+    /** One thread per conversation lane, as ConversationDispatcher starts them */
+    private static int laneThreads(Environment environment) {
+        int lanes = environment.getProperty("messaging.dispatch.lanes", Integer.class, 0);
+        return lanes > 0 ? lanes : Runtime.getRuntime().availableProcessors();
+    }
+}
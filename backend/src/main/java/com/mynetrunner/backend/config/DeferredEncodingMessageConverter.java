@@ -0,0 +1,36 @@
+package com.mynetrunner.backend.config;
+
+import org.springframework.messaging.Message;
+import org.springframework.messaging.MessageHeaders;
+import org.springframework.messaging.converter.MessageConverter;
+import org.springframework.messaging.support.MessageBuilder;
+import org.springframework.messaging.support.MessageHeaderAccessor;
+
+/**
+ * First converter of the broker template: leaves object payloads as they
+ * are, so WireFormatChannelInterceptor can encode them once per receiving
+ * session in the format that session asked for. Never reads inbound frames.
+ */
+public class DeferredEncodingMessageConverter implements MessageConverter {
+
+    @Override
+    public Object fromMessage(Message<?> message, Class<?> targetClass) {
+        return null;
+    }
+
+    @Override
+    public Message<?> toMessage(Object payload, MessageHeaders headers) {
+        if (payload instanceof byte[] || payload instanceof String) {
+            // Already serialized; let the default converters handle it
+            return null;
+        }
+
+        MessageHeaderAccessor accessor = headers != null
+            ? MessageHeaderAccessor.getAccessor(headers, MessageHeaderAccessor.class)
+            : null;
+        if (accessor != null && accessor.isMutable()) {
+            return MessageBuilder.createMessage(payload, accessor.getMessageHeaders());
+        }
+        return MessageBuilder.withPayload(payload).copyHeaders(headers).build();
+    }
+}
@@ -0,0 +1,48 @@
+package com.mynetrunner.backend.config;
+
+import java.util.Collections;
+import java.util.List;
+
+import org.springframework.http.server.ServerHttpRequest;
+import org.springframework.http.server.ServerHttpResponse;
+import org.springframework.web.socket.server.HandshakeFailureException;
+import org.springframework.web.socket.server.standard.ServerEndpointRegistration;
+import org.springframework.web.socket.server.standard.StandardWebSocketUpgradeStrategy;
+
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.websocket.Endpoint;
+import jakarta.websocket.Extension;
+
+/**
+ * Upgrade strategy that never negotiates permessage-deflate. Tomcat accepts
+ * the extension straight from the request headers whenever the client
+ * offers it, regardless of what the handshake handler selected, so it has
+ * to be filtered out in the endpoint configurator instead.
+ */
+public class DeflateDisabledUpgradeStrategy extends StandardWebSocketUpgradeStrategy {
+
+    private static final String PER_MESSAGE_DEFLATE = "permessage-deflate";
+
+    @Override
+    protected void upgradeInternal(ServerHttpRequest request, ServerHttpResponse response,
+            String selectedProtocol, List<Extension> selectedExtensions, Endpoint endpoint) {
+        HttpServletRequest servletRequest = getHttpServletRequest(request);
+        ServerEndpointRegistration endpointConfig = new ServerEndpointRegistration(servletRequest.getRequestURI(), endpoint) {
+            @Override
+            public List<Extension> getNegotiatedExtensions(List<Extension> installed, List<Extension> requested) {
+                return super.getNegotiatedExtensions(installed, requested).stream()
+                    .filter(extension -> !PER_MESSAGE_DEFLATE.equalsIgnoreCase(extension.getName()))
+                    .toList();
+            }
+        };
+        endpointConfig.setSubprotocols(Collections.singletonList(selectedProtocol));
+        endpointConfig.setExtensions(selectedExtensions);
+
+        try {
+            upgradeHttpToWebSocket(servletRequest, getHttpServletResponse(response), endpointConfig,
+                Collections.emptyMap());
+        } catch (Exception e) {
+            throw new HandshakeFailureException("Servlet request failed to upgrade to WebSocket: " + request.getURI(), e);
+        }
+    }
+}
@@ -0,0 +1,133 @@
+package com.mynetrunner.backend.config;
+
+import java.util.ArrayList;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.springframework.messaging.Message;
+import org.springframework.messaging.simp.broker.AbstractSubscriptionRegistry;
+import org.springframework.messaging.simp.broker.DefaultSubscriptionRegistry;
+import org.springframework.util.AntPathMatcher;
+import org.springframework.util.LinkedMultiValueMap;
+import org.springframework.util.MultiValueMap;
+import org.springframework.util.PathMatcher;
+
+/**
+ * Subscription registry for the simple broker that keeps a hash index from
+ * exact destination to subscribers, so finding the subscribers of a
+ * per-session user queue is a single lookup however many sessions exist.
+ *
+ * DefaultSubscriptionRegistry scans every session on a cache miss, and with
+ * one /queue/messages-user{session} destination per session nearly every
+ * lookup misses its bounded cache. Pattern subscriptions (/topic/*) are rare
+ * here and still go to a DefaultSubscriptionRegistry. Selector headers are
+ * only honoured on pattern subscriptions.
+ */
+public class IndexedSubscriptionRegistry extends AbstractSubscriptionRegistry {
+
+    private final PathMatcher pathMatcher = new AntPathMatcher();
+
+    // destination -> (sessionId -> subscriptionIds)
+    private final Map<String, Map<String, Set<String>>> destinations = new ConcurrentHashMap<>();
+
+    // sessionId -> (subscriptionId -> destination), to undo subscriptions
+    private final Map<String, Map<String, String>> sessions = new ConcurrentHashMap<>();
+
+    private final DefaultSubscriptionRegistry patternRegistry = new DefaultSubscriptionRegistry();
+
+    private final AtomicInteger patternSubscriptions = new AtomicInteger();
+
+    private final AtomicInteger subscriptionCount = new AtomicInteger();
+
+    @Override
+    protected void addSubscriptionInternal(String sessionId, String subscriptionId, String destination,
+            Message<?> message) {
+        Map<String, String> subscriptions = sessions.computeIfAbsent(sessionId, id -> new ConcurrentHashMap<>());
+        if (subscriptions.putIfAbsent(subscriptionId, destination) != null) {
+            return;
+        }
+        subscriptionCount.incrementAndGet();
+
+        if (pathMatcher.isPattern(destination)) {
+            patternRegistry.registerSubscription(message);
+            patternSubscriptions.incrementAndGet();
+            return;
+        }
+
+        destinations.computeIfAbsent(destination, d -> new ConcurrentHashMap<>())
+            .computeIfAbsent(sessionId, id -> ConcurrentHashMap.newKeySet())
+            .add(subscriptionId);
+    }
+
+    @Override
+    protected void removeSubscriptionInternal(String sessionId, String subscriptionId, Message<?> message) {
+        Map<String, String> subscriptions = sessions.get(sessionId);
+        String destination = subscriptions != null ? subscriptions.remove(subscriptionId) : null;
+        if (destination == null) {
+            return;
+        }
+        subscriptionCount.decrementAndGet();
+
+        if (pathMatcher.isPattern(destination)) {
+            patternRegistry.unregisterSubscription(message);
+            patternSubscriptions.decrementAndGet();
+        } else {
+            removeFromDestination(destination, sessionId, subscriptionId);
+        }
+    }
+
+    @Override
+    public void unregisterAllSubscriptions(String sessionId) {
+        Map<String, String> subscriptions = sessions.remove(sessionId);
+        if (subscriptions == null) {
+            return;
+        }
+
+        subscriptionCount.addAndGet(-subscriptions.size());
+        boolean hadPatterns = false;
+        for (Map.Entry<String, String> subscription : subscriptions.entrySet()) {
+            if (pathMatcher.isPattern(subscription.getValue())) {
+                hadPatterns = true;
+                patternSubscriptions.decrementAndGet();
+            } else {
+                removeFromDestination(subscription.getValue(), sessionId, subscription.getKey());
+            }
+        }
+        if (hadPatterns) {
+            patternRegistry.unregisterAllSubscriptions(sessionId);
+        }
+    }
+
+    /**
+     * Live subscriptions across all sessions, pattern ones included
+     */
+    public int getSubscriptionCount() {
+        return subscriptionCount.get();
+    }
+
+    @Override
+    protected MultiValueMap<String, String> findSubscriptionsInternal(String destination, Message<?> message) {
+        MultiValueMap<String, String> result = new LinkedMultiValueMap<>();
+        Map<String, Set<String>> subscribers = destinations.get(destination);
+        if (subscribers != null) {
+            subscribers.forEach((sessionId, subscriptionIds) -> result.put(sessionId, new ArrayList<>(subscriptionIds)));
+        }
+
+        if (patternSubscriptions.get() > 0) {
+            patternRegistry.findSubscriptions(message).forEach(result::addAll);
+        }
+        return result;
+    }
+
+    private void removeFromDestination(String destination, String sessionId, String subscriptionId) {
+        destinations.computeIfPresent(destination, (d, subscribers) -> {
+            subscribers.computeIfPresent(sessionId, (id, subscriptionIds) -> {
+                subscriptionIds.remove(subscriptionId);
+                return subscriptionIds.isEmpty() ? null : subscriptionIds;
+            });
+            return subscribers.isEmpty() ? null : subscribers;
+        });
+    }
+}
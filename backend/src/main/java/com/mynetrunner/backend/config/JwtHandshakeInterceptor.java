@@ -0,0 +1,79 @@
+package com.mynetrunner.backend.config;
+
+import java.util.Map;
+import java.util.Optional;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.server.ServerHttpRequest;
+import org.springframework.http.server.ServerHttpResponse;
+import org.springframework.stereotype.Component;
+import org.springframework.web.socket.WebSocketHandler;
+import org.springframework.web.socket.server.HandshakeInterceptor;
+import org.springframework.web.util.UriComponentsBuilder;
+
+import com.mynetrunner.backend.model.User;
+import com.mynetrunner.backend.repository.UserRepository;
+import com.mynetrunner.backend.util.JwtUtil;
+
+import io.jsonwebtoken.JwtException;
+
+/**
+ * Authenticates the WebSocket handshake with the JWT from the "token" query
+ * parameter (browsers cannot set headers on a WebSocket) or a Bearer
+ * Authorization header, and stores the user's id for UserIdHandshakeHandler.
+ */
+@Component
+public class JwtHandshakeInterceptor implements HandshakeInterceptor {
+
+    public static final String USER_ID_ATTRIBUTE = "userId";
+
+    @Autowired
+    private JwtUtil jwtUtil;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Override
+    public boolean beforeHandshake(ServerHttpRequest request, ServerHttpResponse response,
+            WebSocketHandler wsHandler, Map<String, Object> attributes) {
+        Optional<Long> userId = resolveToken(request).flatMap(this::resolveUserId);
+        if (userId.isEmpty()) {
+            response.setStatusCode(HttpStatus.UNAUTHORIZED);
+            return false;
+        }
+
+        attributes.put(USER_ID_ATTRIBUTE, userId.get());
+        return true;
+    }
+
+    @Override
+    public void afterHandshake(ServerHttpRequest request, ServerHttpResponse response,
+            WebSocketHandler wsHandler, Exception exception) {
+    }
+
+    private Optional<String> resolveToken(ServerHttpRequest request) {
+        String header = request.getHeaders().getFirst(HttpHeaders.AUTHORIZATION);
+        if (header != null && header.startsWith("Bearer ")) {
+            return Optional.of(header.substring(7));
+        }
+
+        return Optional.ofNullable(UriComponentsBuilder.fromUri(request.getURI())
+            .build()
+            .getQueryParams()
+            .getFirst("token"));
+    }
+
+    private Optional<Long> resolveUserId(String token) {
+        try {
+            String username = jwtUtil.extractUsername(token);
+            if (!jwtUtil.validateToken(token, username)) {
+                return Optional.empty();
+            }
+            return userRepository.findByUsername(username).map(User::getId);
+        } catch (JwtException | IllegalArgumentException e) {
+            return Optional.empty();
+        }
+    }
+}
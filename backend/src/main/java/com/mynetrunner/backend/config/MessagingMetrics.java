@@ -0,0 +1,77 @@
+package com.mynetrunner.backend.config;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.messaging.simp.broker.SimpleBrokerMessageHandler;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import com.mynetrunner.backend.repository.MessageRepository;
+import com.mynetrunner.backend.service.MessageWriteBehindQueue;
+import com.mynetrunner.backend.service.PresenceService;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+
+/**
+ * Gauges for the messaging state that no single service owns: STOMP
+ * sessions, broker subscriptions and messages waiting for delivery.
+ *
+ * Counting pending rows is a query, so it runs on its own schedule and the
+ * gauge reports the last result; a scrape never touches the database.
+ */
+@Component
+public class MessagingMetrics {
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Autowired
+    private PresenceService presenceService;
+
+    @Autowired
+    private MessageRepository messageRepository;
+
+    @Autowired
+    private MessageWriteBehindQueue writeBehindQueue;
+
+    @Autowired
+    private ObjectProvider<SimpleBrokerMessageHandler> broker;
+
+    private final AtomicLong pendingMessages = new AtomicLong();
+
+    @PostConstruct
+    public void init() {
+        Gauge.builder("websocket.sessions", presenceService, PresenceService::getConnectedSessionCount)
+            .description("Connected STOMP sessions on this node")
+            .register(meterRegistry);
+        Gauge.builder("websocket.users.online", presenceService, PresenceService::getOnlineUserCount)
+            .description("Users subscribed to their message queue on this node")
+            .register(meterRegistry);
+        Gauge.builder("broker.subscriptions", this, MessagingMetrics::getSubscriptionCount)
+            .description("Subscriptions held by the in-memory broker")
+            .register(meterRegistry);
+        Gauge.builder("messages.pending", pendingMessages, AtomicLong::get)
+            .description("Stored messages not yet delivered, as of the last refresh")
+            .register(meterRegistry);
+        Gauge.builder("messaging.write-behind.queue.depth", writeBehindQueue, MessageWriteBehindQueue::getQueueDepth)
+            .description("Message inserts waiting to be flushed")
+            .register(meterRegistry);
+    }
+
+    @Scheduled(fixedDelayString = "${messaging.metrics.pending-refresh-ms:30000}")
+    public void refreshPendingMessages() {
+        pendingMessages.set(messageRepository.countPending());
+    }
+
+    private double getSubscriptionCount() {
+        SimpleBrokerMessageHandler handler = broker.getIfAvailable();
+        if (handler != null && handler.getSubscriptionRegistry() instanceof IndexedSubscriptionRegistry registry) {
+            return registry.getSubscriptionCount();
+        }
+        return Double.NaN;
+    }
+}
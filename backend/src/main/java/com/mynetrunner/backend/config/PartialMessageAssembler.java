@@ -0,0 +1,88 @@
+package com.mynetrunner.backend.config;
+
+import java.io.ByteArrayOutputStream;
+
+import org.springframework.web.socket.BinaryMessage;
+import org.springframework.web.socket.CloseStatus;
+import org.springframework.web.socket.TextMessage;
+import org.springframework.web.socket.WebSocketHandler;
+import org.springframework.web.socket.WebSocketMessage;
+import org.springframework.web.socket.WebSocketSession;
+import org.springframework.web.socket.handler.WebSocketHandlerDecorator;
+import org.springframework.web.socket.handler.WebSocketHandlerDecoratorFactory;
+
+/**
+ * Takes WebSocket messages from the container in parts and joins them back
+ * together, up to messaging.websocket.message-size-limit, before the STOMP
+ * handler sees them.
+ *
+ * The STOMP handler only accepts whole messages, and then Tomcat closes the
+ * session on any message larger than its per-session buffer (8 KiB by
+ * default) no matter what the limit says. Raising that buffer allocates it
+ * up front for every session; joining parts here only holds memory while a
+ * large message is arriving. Text is limited in characters, binary in bytes.
+ */
+public class PartialMessageAssembler implements WebSocketHandlerDecoratorFactory {
+
+    private static final String PARTIAL_ATTRIBUTE = PartialMessageAssembler.class.getName() + ".partial";
+
+    private final int messageSizeLimit;
+
+    public PartialMessageAssembler(int messageSizeLimit) {
+        this.messageSizeLimit = messageSizeLimit;
+    }
+
+    @Override
+    public WebSocketHandler decorate(WebSocketHandler handler) {
+        return new WebSocketHandlerDecorator(handler) {
+            @Override
+            public boolean supportsPartialMessages() {
+                return true;
+            }
+
+            @Override
+            public void handleMessage(WebSocketSession session, WebSocketMessage<?> message) throws Exception {
+                // The container delivers one session's parts in order, one at a time
+                Object partial = session.getAttributes().get(PARTIAL_ATTRIBUTE);
+                if (partial == null && message.isLast()) {
+                    super.handleMessage(session, message);
+                    return;
+                }
+
+                int size;
+                if (message instanceof TextMessage text) {
+                    StringBuilder buffer = partial instanceof StringBuilder builder ? builder : new StringBuilder();
+                    buffer.append(text.getPayload());
+                    partial = buffer;
+                    size = buffer.length();
+                } else if (message instanceof BinaryMessage binary) {
+                    ByteArrayOutputStream buffer = partial instanceof ByteArrayOutputStream stream
+                        ? stream : new ByteArrayOutputStream();
+                    byte[] bytes = new byte[binary.getPayloadLength()];
+                    binary.getPayload().get(bytes);
+                    buffer.write(bytes);
+                    partial = buffer;
+                    size = buffer.size();
+                } else {
+                    super.handleMessage(session, message);
+                    return;
+                }
+
+                if (size > messageSizeLimit) {
+                    session.getAttributes().remove(PARTIAL_ATTRIBUTE);
+                    session.close(CloseStatus.TOO_BIG_TO_PROCESS);
+                    return;
+                }
+                if (!message.isLast()) {
+                    session.getAttributes().put(PARTIAL_ATTRIBUTE, partial);
+                    return;
+                }
+
+                session.getAttributes().remove(PARTIAL_ATTRIBUTE);
+                super.handleMessage(session, partial instanceof StringBuilder builder
+                    ? new TextMessage(builder)
+                    : new BinaryMessage(((ByteArrayOutputStream) partial).toByteArray()));
+            }
+        };
+    }
+}
@@ -1,7 +1,10 @@
 package com.mynetrunner.backend.config;
 
+import org.springframework.boot.actuate.autoconfigure.security.servlet.EndpointRequest;
+import org.springframework.boot.actuate.health.HealthEndpoint;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.security.config.Customizer;
 import org.springframework.security.config.annotation.web.builders.HttpSecurity;
 import org.springframework.security.config.annotation.web.configuration.EnableWebSecurity;
 import org.springframework.security.web.SecurityFilterChain;
@@ -18,8 +21,12 @@ public class SecurityConfig {
                 .requestMatchers("/api/auth/**").permitAll() // Allow auth endpoints
                 .requestMatchers("/api/health").permitAll() // Allow health check
                 .requestMatchers("/ws/**").permitAll() // Allow WebSocket connections
+                .requestMatchers(EndpointRequest.to(HealthEndpoint.class)).permitAll() // Load balancer probes
+                // Metrics and any other actuator endpoint need the spring.security.user.* account
+                .requestMatchers(EndpointRequest.toAnyEndpoint()).hasRole("ACTUATOR")
                 .anyRequest().permitAll() // Allow all other requests for now
-            );
+            )
+            .httpBasic(Customizer.withDefaults());
         
         return http.build();
     }
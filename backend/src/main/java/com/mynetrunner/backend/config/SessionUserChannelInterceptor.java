@@ -0,0 +1,34 @@
+package com.mynetrunner.backend.config;
+
+import java.util.Map;
+
+import org.springframework.messaging.Message;
+import org.springframework.messaging.MessageChannel;
+import org.springframework.messaging.simp.stomp.StompCommand;
+import org.springframework.messaging.simp.stomp.StompHeaderAccessor;
+import org.springframework.messaging.support.ChannelInterceptor;
+import org.springframework.messaging.support.MessageHeaderAccessor;
+
+/**
+ * Sets the STOMP user on CONNECT from the id JwtHandshakeInterceptor stored
+ * at handshake. WebSocket sessions already get it from
+ * UserIdHandshakeHandler, but SockJS HTTP transports (xhr-streaming,
+ * polling) take their principal from the servlet request, which has none.
+ */
+public class SessionUserChannelInterceptor implements ChannelInterceptor {
+
+    @Override
+    public Message<?> preSend(Message<?> message, MessageChannel channel) {
+        StompHeaderAccessor accessor = MessageHeaderAccessor.getAccessor(message, StompHeaderAccessor.class);
+        if (accessor == null || accessor.getCommand() != StompCommand.CONNECT || accessor.getUser() != null) {
+            return message;
+        }
+
+        Map<String, Object> attributes = accessor.getSessionAttributes();
+        Long userId = attributes != null ? (Long) attributes.get(JwtHandshakeInterceptor.USER_ID_ATTRIBUTE) : null;
+        if (userId != null) {
+            accessor.setUser(new UserIdHandshakeHandler.UserPrincipal(userId));
+        }
+        return message;
+    }
+}
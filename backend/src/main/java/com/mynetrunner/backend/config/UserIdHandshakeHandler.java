@@ -0,0 +1,35 @@
+package com.mynetrunner.backend.config;
+
+import java.security.Principal;
+import java.util.Map;
+
+import org.springframework.http.server.ServerHttpRequest;
+import org.springframework.web.socket.WebSocketHandler;
+import org.springframework.web.socket.server.RequestUpgradeStrategy;
+import org.springframework.web.socket.server.support.DefaultHandshakeHandler;
+
+/**
+ * Makes the authenticated user's id the session principal, so user
+ * destinations (/user/queue/messages) resolve by id.
+ */
+public class UserIdHandshakeHandler extends DefaultHandshakeHandler {
+
+    public UserIdHandshakeHandler(RequestUpgradeStrategy requestUpgradeStrategy) {
+        super(requestUpgradeStrategy);
+    }
+
+    @Override
+    protected Principal determineUser(ServerHttpRequest request, WebSocketHandler wsHandler,
+            Map<String, Object> attributes) {
+        Long userId = (Long) attributes.get(JwtHandshakeInterceptor.USER_ID_ATTRIBUTE);
+        return userId != null ? new UserPrincipal(userId) : null;
+    }
+
+    public record UserPrincipal(Long userId) implements Principal {
+
+        @Override
+        public String getName() {
+            return userId.toString();
+        }
+    }
+}
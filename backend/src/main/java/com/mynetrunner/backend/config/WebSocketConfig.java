@@ -1,15 +1,86 @@
 package com.mynetrunner.backend.config;
 
+import java.util.ArrayList;
+import java.util.List;
+
+import org.springframework.beans.BeansException;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.core.task.SimpleAsyncTaskExecutor;
+import org.springframework.messaging.converter.MessageConverter;
+import org.springframework.messaging.simp.broker.SimpleBrokerMessageHandler;
+import org.springframework.messaging.simp.config.ChannelRegistration;
 import org.springframework.messaging.simp.config.MessageBrokerRegistry;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
 import org.springframework.web.socket.config.annotation.EnableWebSocketMessageBroker;
 import org.springframework.web.socket.config.annotation.StompEndpointRegistry;
 import org.springframework.web.socket.config.annotation.WebSocketMessageBrokerConfigurer;
+import org.springframework.web.socket.config.annotation.WebSocketTransportRegistration;
+import org.springframework.web.socket.server.RequestUpgradeStrategy;
+import org.springframework.web.socket.server.standard.StandardWebSocketUpgradeStrategy;
+
+import com.mynetrunner.backend.service.PresenceService;
+
+import io.micrometer.core.instrument.MeterRegistry;
 
 @Configuration
 @EnableWebSocketMessageBroker
 public class WebSocketConfig implements WebSocketMessageBrokerConfigurer {
 
+    @Autowired
+    private JwtHandshakeInterceptor jwtHandshakeInterceptor;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Autowired
+    private WireFormatChannelInterceptor wireFormatInterceptor;
+
+    @Autowired
+    private PresenceService presenceService;
+
+    // "platform" for a bounded thread pool, "virtual" for a virtual thread per message
+    @Value("${messaging.channel.inbound.mode:platform}")
+    private String inboundMode;
+
+    @Value("${messaging.channel.inbound.pool-size:32}")
+    private int inboundPoolSize;
+
+    @Value("${messaging.channel.inbound.queue-capacity:10000}")
+    private int inboundQueueCapacity;
+
+    // Most messages handled at once in virtual mode; -1 for no limit
+    @Value("${messaging.channel.inbound.virtual-concurrency-limit:-1}")
+    private int inboundVirtualConcurrencyLimit;
+
+    @Value("${messaging.channel.outbound.mode:platform}")
+    private String outboundMode;
+
+    @Value("${messaging.channel.outbound.pool-size:16}")
+    private int outboundPoolSize;
+
+    @Value("${messaging.channel.outbound.queue-capacity:10000}")
+    private int outboundQueueCapacity;
+
+    @Value("${messaging.channel.outbound.virtual-concurrency-limit:-1}")
+    private int outboundVirtualConcurrencyLimit;
+
+    @Value("${messaging.websocket.send-time-limit-ms:10000}")
+    private int sendTimeLimitMs;
+
+    @Value("${messaging.websocket.send-buffer-size-limit:1048576}")
+    private int sendBufferSizeLimit;
+
+    @Value("${messaging.websocket.message-size-limit:1048576}")
+    private int messageSizeLimit;
+
+    // Compress frames when the client offers permessage-deflate
+    @Value("${messaging.websocket.permessage-deflate:true}")
+    private boolean perMessageDeflate;
+
     @Override
     public void configureMessageBroker(MessageBrokerRegistry config) {
         // Enable a simple in-memory message broker
@@ -18,14 +89,123 @@ public class WebSocketConfig implements WebSocketMessageBrokerConfigurer {
         
         // Messages sent to destinations starting with "/app" will be routed to @MessageMapping methods
         config.setApplicationDestinationPrefixes("/app");
+
+        // Clients subscribe to /user/queue/messages; sends to a user id are routed to that user's sessions
+        config.setUserDestinationPrefix("/user");
+
+        // Keep each session's outbound messages in order when the outbound executor has several threads
+        config.setPreservePublishOrder(true);
+    }
+
+    @Override
+    public void configureClientInboundChannel(ChannelRegistration registration) {
+        // @MessageMapping handlers run here and may block on the database
+        configureExecutor(registration, "inbound", inboundMode, inboundPoolSize, inboundQueueCapacity, inboundVirtualConcurrencyLimit);
+        // Records the wire format a session asks for on CONNECT, and gives
+        // SockJS HTTP sessions the user id principal WebSocket sessions get.
+        // PresenceService sees each subscription after the broker registered it
+        registration.interceptors(wireFormatInterceptor, new SessionUserChannelInterceptor(), presenceService);
+    }
+
+    @Override
+    public void configureClientOutboundChannel(ChannelRegistration registration) {
+        configureExecutor(registration, "outbound", outboundMode, outboundPoolSize, outboundQueueCapacity, outboundVirtualConcurrencyLimit);
+        // Encodes each outgoing payload in its session's wire format
+        registration.interceptors(wireFormatInterceptor);
+    }
+
+    @Override
+    public boolean configureMessageConverters(List<MessageConverter> messageConverters) {
+        // Ahead of the JSON converter: defer outbound encoding to the interceptor,
+        // and read inbound CBOR/Smile frames by their content-type
+        List<MessageConverter> converters = new ArrayList<>();
+        converters.add(new DeferredEncodingMessageConverter());
+        wireFormatInterceptor.getBinaryCodecs().forEach(codec -> converters.add(new WireFormatMessageConverter(codec)));
+        messageConverters.addAll(0, converters);
+        return true;
+    }
+
+    @Override
+    public void configureWebSocketTransport(WebSocketTransportRegistration registration) {
+        // A slow client is disconnected once a send stalls this long or its buffer fills
+        registration.setSendTimeLimit(sendTimeLimitMs)
+                .setSendBufferSizeLimit(sendBufferSizeLimit)
+                .setMessageSizeLimit(messageSizeLimit);
+        // Keeps SockJS sessions, which cannot carry binary frames, on JSON
+        registration.addDecoratorFactory(wireFormatInterceptor);
+        // Outermost, so messages larger than the container's buffer arrive in parts
+        registration.addDecoratorFactory(new PartialMessageAssembler(messageSizeLimit));
     }
 
     @Override
     public void registerStompEndpoints(StompEndpointRegistry registry) {
-        // Register STOMP endpoint that clients will connect to
-        // Endpoint: ws://localhost:8080/ws
+        // Tomcat negotiates permessage-deflate whenever the client offers it
+        RequestUpgradeStrategy upgradeStrategy = perMessageDeflate
+                ? new StandardWebSocketUpgradeStrategy()
+                : new DeflateDisabledUpgradeStrategy();
+        UserIdHandshakeHandler handshakeHandler = new UserIdHandshakeHandler(upgradeStrategy); // Principal is the user id from the JWT
+
+        // Register STOMP endpoints that clients will connect to
+        // Plain WebSocket, no SockJS info request or framing
+        // Endpoint: ws://localhost:8080/ws/native?token=<jwt>
+        registry.addEndpoint("/ws/native")
+                .setHandshakeHandler(handshakeHandler)
+                .addInterceptors(jwtHandshakeInterceptor)
+                .setAllowedOriginPatterns("*"); // For development - restrict in production
+
+        // SockJS, for clients that cannot open a WebSocket
+        // Endpoint: http://localhost:8080/ws?token=<jwt>
         registry.addEndpoint("/ws")
+                .setHandshakeHandler(handshakeHandler)
+                .addInterceptors(jwtHandshakeInterceptor)
                 .setAllowedOriginPatterns("*") // For development - restrict in production
                 .withSockJS(); // Fallback option for browsers that don't support WebSocket
+
+        // Handle each session's frames one at a time, in the order received, so a
+        // sender's messages reach ConversationDispatcher in the order they were sent
+        registry.setPreserveReceiveOrder(true);
+    }
+
+    private void configureExecutor(ChannelRegistration registration, String channel, String mode,
+            int poolSize, int queueCapacity, int virtualConcurrencyLimit) {
+        ChannelTaskDecorator decorator = new ChannelTaskDecorator(channel, meterRegistry);
+
+        if ("virtual".equalsIgnoreCase(mode)) {
+            SimpleAsyncTaskExecutor executor = new SimpleAsyncTaskExecutor("ws-" + channel + "-");
+            executor.setVirtualThreads(true);
+            executor.setConcurrencyLimit(virtualConcurrencyLimit);
+            executor.setTaskDecorator(decorator);
+            registration.executor(executor);
+            return;
+        }
+
+        // Initialized by the container once it is registered as the channel's executor bean
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setThreadNamePrefix("ws-" + channel + "-");
+        // A pool only grows past its core size once its queue is full, so core
+        // is the real limit; idle threads still time out after a burst
+        executor.setCorePoolSize(poolSize);
+        executor.setMaxPoolSize(poolSize);
+        executor.setAllowCoreThreadTimeOut(true);
+        executor.setQueueCapacity(queueCapacity);
+        executor.setTaskDecorator(decorator);
+        executor.setRejectedExecutionHandler(decorator);
+        registration.taskExecutor(executor);
+    }
+
+    /**
+     * Swap the simple broker's subscription registry for the indexed one
+     */
+    @Bean
+    public static BeanPostProcessor indexedSubscriptionRegistryPostProcessor() {
+        return new BeanPostProcessor() {
+            @Override
+            public Object postProcessBeforeInitialization(Object bean, String beanName) throws BeansException {
+                if (bean instanceof SimpleBrokerMessageHandler broker) {
+                    broker.setSubscriptionRegistry(new IndexedSubscriptionRegistry());
+                }
+                return bean;
+            }
+        };
     }
-}
\ No newline at end of file
+}
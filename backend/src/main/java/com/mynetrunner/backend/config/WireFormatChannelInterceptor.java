@@ -0,0 +1,133 @@
+package com.mynetrunner.backend.config;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.springframework.context.event.EventListener;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.MessageChannel;
+import org.springframework.messaging.MessageHeaders;
+import org.springframework.messaging.simp.SimpMessageHeaderAccessor;
+import org.springframework.messaging.simp.SimpMessageType;
+import org.springframework.messaging.support.ChannelInterceptor;
+import org.springframework.messaging.support.MessageBuilder;
+import org.springframework.stereotype.Component;
+import org.springframework.util.MimeType;
+import org.springframework.util.MimeTypeUtils;
+import org.springframework.web.socket.WebSocketHandler;
+import org.springframework.web.socket.WebSocketSession;
+import org.springframework.web.socket.handler.WebSocketHandlerDecorator;
+import org.springframework.web.socket.handler.WebSocketHandlerDecoratorFactory;
+import org.springframework.web.socket.messaging.SessionDisconnectEvent;
+import org.springframework.web.socket.sockjs.transport.SockJsSession;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+
+/**
+ * Per-session wire format negotiation. A client that sends
+ * content-type:application/cbor or application/x-jackson-smile on its
+ * CONNECT frame gets every MESSAGE frame in that format; everyone else gets
+ * JSON. Outbound payloads arrive here still as objects (see
+ * DeferredEncodingMessageConverter) and are encoded for the target session.
+ *
+ * SockJS transports only carry text, so their sessions always stay on JSON.
+ */
+@Component
+public class WireFormatChannelInterceptor implements ChannelInterceptor, WebSocketHandlerDecoratorFactory {
+
+    private static final String TEXT_ONLY_ATTRIBUTE = "wireFormatTextOnly";
+
+    public static final MimeType CBOR = MimeType.valueOf("application/cbor");
+
+    public static final MimeType SMILE = MimeType.valueOf("application/x-jackson-smile");
+
+    private final WireFormatCodec json;
+
+    private final List<WireFormatCodec> binaryCodecs;
+
+    // sessionId -> negotiated codec, only for sessions that asked for a binary format
+    private final Map<String, WireFormatCodec> sessionCodecs = new ConcurrentHashMap<>();
+
+    public WireFormatChannelInterceptor(ObjectMapper objectMapper) {
+        this.json = new WireFormatCodec(MimeTypeUtils.APPLICATION_JSON, objectMapper);
+        // Binary formats send timestamps as numeric fields ([year, month, ...]) rather than ISO-8601 strings
+        this.binaryCodecs = List.of(
+            new WireFormatCodec(CBOR, Jackson2ObjectMapperBuilder.cbor()
+                .featuresToEnable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS).build()),
+            new WireFormatCodec(SMILE, Jackson2ObjectMapperBuilder.smile()
+                .featuresToEnable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS).build())
+        );
+    }
+
+    public List<WireFormatCodec> getBinaryCodecs() {
+        return binaryCodecs;
+    }
+
+    @Override
+    public Message<?> preSend(Message<?> message, MessageChannel channel) {
+        MessageHeaders headers = message.getHeaders();
+        String sessionId = SimpMessageHeaderAccessor.getSessionId(headers);
+        if (sessionId == null) {
+            return message;
+        }
+
+        if (SimpMessageHeaderAccessor.getMessageType(headers) == SimpMessageType.CONNECT) {
+            WireFormatCodec codec = binaryCodec(headers.get(MessageHeaders.CONTENT_TYPE));
+            Map<String, Object> attributes = SimpMessageHeaderAccessor.getSessionAttributes(headers);
+            boolean textOnly = attributes != null && Boolean.TRUE.equals(attributes.get(TEXT_ONLY_ATTRIBUTE));
+            if (codec != null && !textOnly) {
+                sessionCodecs.put(sessionId, codec);
+            }
+            return message;
+        }
+
+        if (message.getPayload() instanceof byte[]) {
+            return message;
+        }
+
+        // Outbound object payload: encode it for this session
+        WireFormatCodec codec = sessionCodecs.getOrDefault(sessionId, json);
+        byte[] payload = codec.encode(message.getPayload());
+        SimpMessageHeaderAccessor accessor = SimpMessageHeaderAccessor.wrap(message);
+        accessor.setContentType(codec.getFrameContentType());
+        return MessageBuilder.createMessage(payload, accessor.getMessageHeaders());
+    }
+
+    /**
+     * Marks SockJS sessions before their CONNECT frame is handled
+     */
+    @Override
+    public WebSocketHandler decorate(WebSocketHandler handler) {
+        return new WebSocketHandlerDecorator(handler) {
+            @Override
+            public void afterConnectionEstablished(WebSocketSession session) throws Exception {
+                if (session instanceof SockJsSession) {
+                    session.getAttributes().put(TEXT_ONLY_ATTRIBUTE, Boolean.TRUE);
+                }
+                super.afterConnectionEstablished(session);
+            }
+        };
+    }
+
+    @EventListener
+    public void handleDisconnect(SessionDisconnectEvent event) {
+        sessionCodecs.remove(event.getSessionId());
+    }
+
+    private WireFormatCodec binaryCodec(Object contentType) {
+        if (contentType == null) {
+            return null;
+        }
+
+        MimeType mimeType = contentType instanceof MimeType type ? type : MimeType.valueOf(contentType.toString());
+        for (WireFormatCodec codec : binaryCodecs) {
+            if (codec.getMimeType().equalsTypeAndSubtype(mimeType)) {
+                return codec;
+            }
+        }
+        return null;
+    }
+}
@@ -0,0 +1,64 @@
+package com.mynetrunner.backend.config;
+
+import java.io.IOException;
+import java.util.Map;
+
+import org.springframework.util.MimeType;
+import org.springframework.util.MimeTypeUtils;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.util.ByteArrayBuilder;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+/**
+ * Encodes and decodes STOMP payloads in one Jackson format (JSON, CBOR or
+ * Smile). Encoding writes into a per-thread ByteArrayBuilder that is reset
+ * and reused, so the only allocation per message is the final byte[].
+ */
+public class WireFormatCodec {
+
+    private final MimeType mimeType;
+
+    private final MimeType frameContentType;
+
+    private final ObjectMapper objectMapper;
+
+    private final ThreadLocal<ByteArrayBuilder> buffers = ThreadLocal.withInitial(() -> new ByteArrayBuilder(2048));
+
+    public WireFormatCodec(MimeType mimeType, ObjectMapper objectMapper) {
+        this.mimeType = mimeType;
+        // Spring only sends a binary WebSocket frame when the content-type is
+        // application/octet-stream; anything else goes out as UTF-8 text and
+        // would corrupt a binary encoding
+        this.frameContentType = MimeTypeUtils.APPLICATION_JSON.equalsTypeAndSubtype(mimeType)
+            ? mimeType
+            : new MimeType(MimeTypeUtils.APPLICATION_OCTET_STREAM, Map.of("format", mimeType.getSubtype()));
+        this.objectMapper = objectMapper;
+    }
+
+    public MimeType getMimeType() {
+        return mimeType;
+    }
+
+    /**
+     * Content-type put on outbound MESSAGE frames encoded with this codec
+     */
+    public MimeType getFrameContentType() {
+        return frameContentType;
+    }
+
+    public byte[] encode(Object payload) {
+        ByteArrayBuilder buffer = buffers.get();
+        buffer.reset();
+        try (JsonGenerator generator = objectMapper.getFactory().createGenerator(buffer)) {
+            objectMapper.writeValue(generator, payload);
+        } catch (IOException e) {
+            throw new IllegalStateException("Could not encode " + mimeType + " payload", e);
+        }
+        return buffer.toByteArray();
+    }
+
+    public <T> T decode(byte[] payload, Class<T> type) throws IOException {
+        return objectMapper.readValue(payload, type);
+    }
+}
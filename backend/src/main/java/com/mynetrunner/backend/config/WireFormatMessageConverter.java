@@ -0,0 +1,53 @@
+package com.mynetrunner.backend.config;
+
+import java.io.IOException;
+
+import org.springframework.messaging.Message;
+import org.springframework.messaging.MessageHeaders;
+import org.springframework.messaging.converter.AbstractMessageConverter;
+import org.springframework.messaging.converter.MessageConversionException;
+import org.springframework.util.MimeType;
+
+/**
+ * Reads inbound frames whose content-type is the codec's binary format.
+ * Outbound payloads are encoded per session by WireFormatChannelInterceptor.
+ */
+public class WireFormatMessageConverter extends AbstractMessageConverter {
+
+    private final WireFormatCodec codec;
+
+    public WireFormatMessageConverter(WireFormatCodec codec) {
+        super(codec.getMimeType());
+        this.codec = codec;
+    }
+
+    /**
+     * Accepts the format's own type, or the octet-stream type clients use to
+     * get a binary WebSocket frame. Without a content-type the frame is JSON.
+     */
+    @Override
+    protected boolean supportsMimeType(MessageHeaders headers) {
+        MimeType mimeType = getMimeType(headers);
+        return mimeType != null
+            && (codec.getMimeType().equalsTypeAndSubtype(mimeType) || codec.getFrameContentType().equals(mimeType));
+    }
+
+    @Override
+    protected boolean supports(Class<?> clazz) {
+        return true;
+    }
+
+    @Override
+    protected Object convertFromInternal(Message<?> message, Class<?> targetClass, Object conversionHint) {
+        try {
+            return codec.decode((byte[]) message.getPayload(), targetClass);
+        } catch (IOException e) {
+            throw new MessageConversionException(message, "Could not read " + codec.getMimeType() + " payload", e);
+        }
+    }
+
+    @Override
+    protected Object convertToInternal(Object payload, MessageHeaders headers, Object conversionHint) {
+        return codec.encode(payload);
+    }
+}
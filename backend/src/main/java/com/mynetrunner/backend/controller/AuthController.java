@@ -3,6 +3,7 @@ package com.mynetrunner.backend.controller;
 import com.mynetrunner.backend.dto.LoginRequest;
 import com.mynetrunner.backend.dto.RegisterRequest;
 import com.mynetrunner.backend.dto.AuthResponse;
+import com.mynetrunner.backend.dto.UsernameAvailabilityResponse;
 import com.mynetrunner.backend.service.UserService;
 import jakarta.validation.Valid;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -23,6 +24,12 @@ public class AuthController {
         return new ResponseEntity<>(response, HttpStatus.CREATED);
     }
     
+    @GetMapping("/username-available")
+    public ResponseEntity<UsernameAvailabilityResponse> isUsernameAvailable(@RequestParam String username) {
+        boolean available = userService.isUsernameAvailable(username);
+        return ResponseEntity.ok(new UsernameAvailabilityResponse(username, available));
+    }
+    
     @PostMapping("/login")
     public ResponseEntity<AuthResponse> login(@Valid @RequestBody LoginRequest request) {
         AuthResponse response = userService.login(request.getUsername(), request.getPassword());
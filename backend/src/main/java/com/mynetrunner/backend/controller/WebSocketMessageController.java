@@ -1,76 +1,358 @@
 package com.mynetrunner.backend.controller;
 
+import java.security.Principal;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpStatus;
+import org.springframework.messaging.handler.annotation.Header;
+import org.springframework.messaging.handler.annotation.MessageExceptionHandler;
 import org.springframework.messaging.handler.annotation.MessageMapping;
 import org.springframework.messaging.handler.annotation.Payload;
+import org.springframework.messaging.handler.annotation.support.MethodArgumentNotValidException;
 import org.springframework.messaging.simp.SimpMessagingTemplate;
+import org.springframework.messaging.simp.annotation.SendToUser;
 import org.springframework.stereotype.Controller;
 
+import com.mynetrunner.backend.config.UserIdHandshakeHandler.UserPrincipal;
+import com.mynetrunner.backend.dto.message.InboxAck;
+import com.mynetrunner.backend.dto.message.MessageBatch;
+import com.mynetrunner.backend.dto.message.MessageBatchRequest;
 import com.mynetrunner.backend.dto.message.MessageRequest;
 import com.mynetrunner.backend.dto.message.MessageResponse;
+import com.mynetrunner.backend.exception.ErrorResponse;
 import com.mynetrunner.backend.exception.MessageDeliveryException;
+import com.mynetrunner.backend.exception.SenderMismatchException;
 import com.mynetrunner.backend.exception.UserNotFoundException;
-import com.mynetrunner.backend.model.Message;
-import com.mynetrunner.backend.model.User;
-import com.mynetrunner.backend.repository.UserRepository;
+import com.mynetrunner.backend.service.ConversationDispatcher;
+import com.mynetrunner.backend.service.InboxDrainService;
+import com.mynetrunner.backend.service.MessageRouter;
 import com.mynetrunner.backend.service.MessageService;
+import com.mynetrunner.backend.service.UserCache;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
 
 import jakarta.validation.Valid;
 
 @Controller
 public class WebSocketMessageController {
     
+    // Clients subscribe to /user/queue/errors to hear about messages that could not be sent
+    public static final String ERROR_QUEUE = "/queue/errors";
+    
+    @Autowired
+    private MessageRouter messageRouter;
+    
     @Autowired
     private SimpMessagingTemplate messagingTemplate;
     
+    @Autowired
+    private ConversationDispatcher conversationDispatcher;
+    
     @Autowired
     private MessageService messageService;
     
     @Autowired
-    private UserRepository userRepository;
+    private UserCache userCache;
+    
+    @Autowired
+    private InboxDrainService inboxDrainService;
+    
+    private final Counter directDeliveries;
+    
+    private final Counter storedDeliveries;
+    
+    // Where the time goes between a /app/chat frame arriving and the message leaving
+    private final Timer validateStage;
+    
+    private final Timer queueStage;
+    
+    private final Timer fanOutStage;
+    
+    private final Timer persistStage;
+    
+    private final MeterRegistry meterRegistry;
+    
+    public WebSocketMessageController(MeterRegistry meterRegistry) {
+        this.meterRegistry = meterRegistry;
+        this.directDeliveries = Counter.builder("messages.delivered")
+            .description("Chat messages by delivery path")
+            .tag("path", "direct")
+            .register(meterRegistry);
+        this.storedDeliveries = Counter.builder("messages.delivered")
+            .description("Chat messages by delivery path")
+            .tag("path", "store-and-forward")
+            .register(meterRegistry);
+        this.validateStage = stageTimer(meterRegistry, "validate");
+        this.queueStage = stageTimer(meterRegistry, "queue");
+        this.fanOutStage = stageTimer(meterRegistry, "fan-out");
+        this.persistStage = stageTimer(meterRegistry, "persist");
+    }
+    
+    private static Timer stageTimer(MeterRegistry meterRegistry, String stage) {
+        return Timer.builder("messages.send.stage")
+            .description("Time spent in each stage of sending a chat message")
+            .tag("stage", stage)
+            .publishPercentileHistogram()
+            .register(meterRegistry);
+    }
     
     @MessageMapping("/chat")
-    public void sendMessage(@Valid @Payload MessageRequest request) {
+    public void sendMessage(@Valid @Payload MessageRequest request, Principal principal) {
         try {
+            long started = System.nanoTime();
+            authenticateSender(request, principal);
+
             // Validate sender exists
-            User sender = userRepository.findById(request.getSenderId())
+            String senderUsername = userCache.findUsername(request.getSenderId())
                 .orElseThrow(() -> new UserNotFoundException("Sender not found"));
 
             // Validate receiver exists
-            userRepository.findById(request.getReceiverId())
-                .orElseThrow(() -> new UserNotFoundException("Receiver not found"));
+            if (!userCache.exists(request.getReceiverId())) {
+                throw new UserNotFoundException("Receiver not found");
+            }
 
-            // Create and save message temporarily
-            Message message = messageService.sendMessage(
+            long validated = System.nanoTime();
+            validateStage.record(validated - started, TimeUnit.NANOSECONDS);
+
+            // Deliver on the conversation's lane so messages between two users keep their order
+            conversationDispatcher.dispatch(
                 request.getSenderId(),
                 request.getReceiverId(),
-                request.getContent()
+                () -> {
+                    queueStage.record(System.nanoTime() - validated, TimeUnit.NANOSECONDS);
+                    deliver(request, senderUsername);
+                },
+                error -> reportFailure(request.getSenderId(), request.getReceiverId(), error)
             );
 
-            // Create response with sender username
-            MessageResponse response = new MessageResponse(
-                message.getId(),
-                message.getSenderId(),
-                sender.getUsername(),
-                message.getReceiverId(),
-                message.getContent(),
-                message.getTimestamp(),
-                message.getDelivered()
-            );
+        } catch (UserNotFoundException | SenderMismatchException e) {
+            throw e;
+        } catch (Exception e) {
+            throw new MessageDeliveryException("Failed to deliver message: " + e.getMessage());
+        }
+    }
+    
+    private void deliver(MessageRequest request, String senderUsername) {
+        // Push straight to a live subscription, on this node or another, without storing it
+        MessageResponse response = new MessageResponse(
+            null,
+            request.getSenderId(),
+            senderUsername,
+            request.getReceiverId(),
+            request.getContent(),
+            LocalDateTime.now(),
+            true
+        );
 
-            // Send to receiver's topic
-            messagingTemplate.convertAndSend(
-                "/topic/messages/" + request.getReceiverId(),
-                response
-            );
+        CompletableFuture<Boolean> delivered =
+            fanOutStage.record(() -> messageRouter.deliver(request.getSenderId(), request.getReceiverId(), response));
+        // If the receiver is offline, store the message until they reconnect
+        settle(delivered, request.getSenderId(), request.getReceiverId(), 1, () -> messageService.sendMessage(
+            request.getSenderId(),
+            request.getReceiverId(),
+            request.getContent()
+        ));
+    }
+    
+    /**
+     * Count a delivery once it is settled, or store it when nobody received
+     * it. A relayed delivery settles after the lane moved on, so its store
+     * goes back on the conversation's lane to stay in order with later ones.
+     */
+    private void settle(CompletableFuture<Boolean> delivered, Long senderId, Long receiverId, int count,
+            Runnable store) {
+        if (delivered.isDone()) {
+            record(delivered.join(), count, store);
+            return;
+        }
+        delivered.thenAccept(direct -> {
+            if (direct) {
+                record(true, count, store);
+                return;
+            }
+            try {
+                conversationDispatcher.dispatch(senderId, receiverId,
+                    () -> record(false, count, store),
+                    error -> reportFailure(senderId, receiverId, error));
+            } catch (MessageDeliveryException e) {
+                reportFailure(senderId, receiverId, e);
+            }
+        });
+    }
+    
+    private void record(boolean direct, int count, Runnable store) {
+        if (direct) {
+            directDeliveries.increment(count);
+        } else {
+            persistStage.record(store);
+            storedDeliveries.increment(count);
+        }
+    }
+    
+    @MessageMapping("/chat/batch")
+    public void sendMessageBatch(@Valid @Payload MessageBatchRequest batch, Principal principal) {
+        try {
+            List<MessageRequest> requests = batch.getMessages();
+            for (MessageRequest request : requests) {
+                authenticateSender(request, principal);
+            }
+
+            // Validate every sender and receiver with one cache lookup; misses load in a single query
+            Set<Long> userIds = new HashSet<>();
+            for (MessageRequest request : requests) {
+                userIds.add(request.getSenderId());
+                userIds.add(request.getReceiverId());
+            }
+            Map<Long, Optional<String>> usernames = userCache.findUsernames(userIds);
+            for (MessageRequest request : requests) {
+                if (usernames.get(request.getSenderId()).isEmpty()) {
+                    throw new UserNotFoundException("Sender not found");
+                }
+                if (usernames.get(request.getReceiverId()).isEmpty()) {
+                    throw new UserNotFoundException("Receiver not found");
+                }
+            }
 
-            // Mark as delivered and delete from server
-            messageService.markAsDelivered(message.getId());
+            // One group per conversation, delivered or stored on that conversation's
+            // lane so it stays in order with the single messages sent there
+            Map<List<Long>, List<MessageRequest>> conversations = new LinkedHashMap<>();
+            for (MessageRequest request : requests) {
+                conversations.computeIfAbsent(
+                    List.of(request.getSenderId(), request.getReceiverId()),
+                    key -> new ArrayList<>()
+                ).add(request);
+            }
 
-        } catch (UserNotFoundException e) {
+            conversations.forEach((key, group) -> conversationDispatcher.dispatch(
+                key.get(0),
+                key.get(1),
+                () -> deliverBatch(group, usernames.get(key.get(0)).get()),
+                error -> reportFailure(key.get(0), key.get(1), error)
+            ));
+
+        } catch (UserNotFoundException | SenderMismatchException e) {
             throw e;
         } catch (Exception e) {
-            throw new MessageDeliveryException("Failed to deliver message: " + e.getMessage());
+            throw new MessageDeliveryException("Failed to deliver message batch: " + e.getMessage());
+        }
+    }
+    
+    private void deliverBatch(List<MessageRequest> group, String senderUsername) {
+        LocalDateTime now = LocalDateTime.now();
+        List<MessageResponse> responses = group.stream()
+            .map(request -> new MessageResponse(
+                null,
+                request.getSenderId(),
+                senderUsername,
+                request.getReceiverId(),
+                request.getContent(),
+                now,
+                true
+            ))
+            .toList();
+
+        // A null batchId marks a live batch, which needs no inbox ack. If the
+        // receiver is offline, store the whole group in one transaction
+        MessageRequest first = group.get(0);
+        CompletableFuture<Boolean> delivered =
+            messageRouter.deliver(first.getSenderId(), first.getReceiverId(), new MessageBatch(null, responses));
+        settle(delivered, first.getSenderId(), first.getReceiverId(), group.size(),
+            () -> messageService.sendMessages(group));
+    }
+    
+    @MessageMapping("/inbox/ack")
+    public void acknowledgeInbox(@Valid @Payload InboxAck ack, @Header("simpSessionId") String sessionId,
+            Principal principal) {
+        // Only the session's own user can ack, and so delete, their inbox
+        Long userId = authenticatedUserId(principal);
+        if (ack.getUserId() != null && !ack.getUserId().equals(userId)) {
+            return;
+        }
+
+        // Delete the acknowledged batch and stream the next one
+        inboxDrainService.acknowledge(sessionId, userId, ack.getBatchId());
+    }
+    
+    // Anything a handler throws goes back to the session that sent the frame
+    @MessageExceptionHandler
+    @SendToUser(destinations = ERROR_QUEUE, broadcast = false)
+    public ErrorResponse handleValidationException(MethodArgumentNotValidException ex) {
+        count(ex);
+        Map<String, String> errors = new HashMap<>();
+        if (ex.getBindingResult() != null) {
+            ex.getBindingResult().getFieldErrors()
+                .forEach(error -> errors.put(error.getField(), error.getDefaultMessage()));
+        }
+        return new ErrorResponse(HttpStatus.BAD_REQUEST.value(), "Validation failed", errors, LocalDateTime.now());
+    }
+    
+    @MessageExceptionHandler
+    @SendToUser(destinations = ERROR_QUEUE, broadcast = false)
+    public ErrorResponse handleException(Exception ex) {
+        count(ex);
+        return errorResponse(ex, null);
+    }
+    
+    /**
+     * Tell the sender about a delivery that failed on its lane, after the
+     * frame that carried it was already handled
+     */
+    private void reportFailure(Long senderId, Long receiverId, RuntimeException ex) {
+        count(ex);
+        messagingTemplate.convertAndSendToUser(senderId.toString(), ERROR_QUEUE,
+            errorResponse(ex, Map.of("receiverId", receiverId.toString())));
+    }
+    
+    private static ErrorResponse errorResponse(Exception ex, Map<String, String> errors) {
+        HttpStatus status;
+        String message = ex.getMessage();
+        if (ex instanceof UserNotFoundException) {
+            status = HttpStatus.NOT_FOUND;
+        } else if (ex instanceof SenderMismatchException) {
+            status = HttpStatus.FORBIDDEN;
+        } else if (ex instanceof MessageDeliveryException) {
+            status = HttpStatus.SERVICE_UNAVAILABLE;
+        } else {
+            status = HttpStatus.INTERNAL_SERVER_ERROR;
+            message = "An unexpected error occurred";
+        }
+        return new ErrorResponse(status.value(), message, errors, LocalDateTime.now());
+    }
+    
+    // Same shape as the REST api.exceptions counter
+    private void count(Exception ex) {
+        meterRegistry.counter("websocket.exceptions", "exception", ex.getClass().getSimpleName()).increment();
+    }
+    
+    /**
+     * Make the session's user the sender, rejecting a request that names someone else
+     */
+    private static void authenticateSender(MessageRequest request, Principal principal) {
+        Long userId = authenticatedUserId(principal);
+        if (request.getSenderId() != null && !request.getSenderId().equals(userId)) {
+            throw new SenderMismatchException("Sender does not match the authenticated user");
+        }
+        request.setSenderId(userId);
+    }
+    
+    private static Long authenticatedUserId(Principal principal) {
+        if (principal instanceof UserPrincipal user) {
+            return user.userId();
         }
+        // The handshake refuses connections without a valid token, so this is not expected
+        throw new SenderMismatchException("Not authenticated");
     }
 }
\ No newline at end of file
@@ -0,0 +1,16 @@
+package com.mynetrunner.backend.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Public directory entry for a user, without any credentials
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class UserInfo {
+    private Long id;
+    private String username;
+}
@@ -0,0 +1,19 @@
+package com.mynetrunner.backend.dto;
+
+import java.util.List;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * One page of the user directory, ordered by id. nextCursor is the
+ * after= value for the following page, or null on the last page.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class UserPage {
+    private List<UserInfo> users;
+    private Long nextCursor;
+}
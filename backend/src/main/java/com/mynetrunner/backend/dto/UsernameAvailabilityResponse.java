@@ -0,0 +1,11 @@
+package com.mynetrunner.backend.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+@Data
+@AllArgsConstructor
+public class UsernameAvailabilityResponse {
+    private String username;
+    private boolean available;
+}
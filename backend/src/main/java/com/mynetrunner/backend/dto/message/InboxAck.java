@@ -0,0 +1,39 @@
+package com.mynetrunner.backend.dto.message;
+
+import jakarta.validation.constraints.NotNull;
+import jakarta.validation.constraints.Positive;
+
+public class InboxAck {
+    
+    // Optional; the ack always applies to the authenticated session user
+    @Positive(message = "User ID must be a positive number")
+    private Long userId;
+    
+    @NotNull(message = "Batch ID is required")
+    private Long batchId;
+    
+    // Constructors
+    public InboxAck() {}
+    
+    public InboxAck(Long userId, Long batchId) {
+        this.userId = userId;
+        this.batchId = batchId;
+    }
+    
+    // Getters and Setters
+    public Long getUserId() {
+        return userId;
+    }
+    
+    public void setUserId(Long userId) {
+        this.userId = userId;
+    }
+    
+    public Long getBatchId() {
+        return batchId;
+    }
+    
+    public void setBatchId(Long batchId) {
+        this.batchId = batchId;
+    }
+}
@@ -0,0 +1,13 @@
+package com.mynetrunner.backend.dto.message;
+
+import java.util.List;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+@Data
+@AllArgsConstructor
+public class MessageBatch {
+    private Long batchId;
+    private List<MessageResponse> messages;
+}
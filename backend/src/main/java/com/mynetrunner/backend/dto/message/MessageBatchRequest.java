@@ -0,0 +1,32 @@
+package com.mynetrunner.backend.dto.message;
+
+import java.util.List;
+
+import jakarta.validation.Valid;
+import jakarta.validation.constraints.NotEmpty;
+import jakarta.validation.constraints.Size;
+
+public class MessageBatchRequest {
+    
+    // 50 of the longest messages, at up to 3 bytes a character, still fit in
+    // messaging.websocket.message-size-limit
+    @NotEmpty(message = "Batch cannot be empty")
+    @Size(max = 50, message = "Batch cannot exceed 50 messages")
+    private List<@Valid MessageRequest> messages;
+    
+    // Constructors
+    public MessageBatchRequest() {}
+    
+    public MessageBatchRequest(List<MessageRequest> messages) {
+        this.messages = messages;
+    }
+    
+    // Getters and Setters
+    public List<MessageRequest> getMessages() {
+        return messages;
+    }
+    
+    public void setMessages(List<MessageRequest> messages) {
+        this.messages = messages;
+    }
+}
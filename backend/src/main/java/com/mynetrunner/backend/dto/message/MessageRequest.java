@@ -2,12 +2,14 @@ package com.mynetrunner.backend.dto.message;
 
 import jakarta.validation.constraints.NotBlank;
 import jakarta.validation.constraints.NotNull;
+import jakarta.validation.constraints.Pattern;
 import jakarta.validation.constraints.Positive;
 import jakarta.validation.constraints.Size;
 
 public class MessageRequest {
     
-    @NotNull(message = "Sender ID is required")
+    // Optional over STOMP, where the sender is the authenticated session user;
+    // a different id is rejected
     @Positive(message = "Sender ID must be a positive number")
     private Long senderId;
     
@@ -17,6 +19,8 @@ public class MessageRequest {
     
     @NotBlank(message = "Message content cannot be empty")
     @Size(max = 5000, message = "Message cannot exceed 5000 characters")
+    // PostgreSQL text cannot hold NUL, so such a row would fail its whole insert batch
+    @Pattern(regexp = "[^\\x00]*", message = "Message cannot contain NUL characters")
     private String content;
     
     // Constructors
@@ -0,0 +1,7 @@
+package com.mynetrunner.backend.exception;
+
+public class SenderMismatchException extends RuntimeException {
+    public SenderMismatchException(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,29 @@
+package com.mynetrunner.backend.model;
+
+import org.springframework.beans.factory.annotation.Autowired;
+
+import com.mynetrunner.backend.util.ContentCompressor;
+
+import jakarta.persistence.AttributeConverter;
+import jakarta.persistence.Converter;
+
+/**
+ * Applies ContentCompressor to Message.content. Hibernate creates converters
+ * through Spring, so the compressor is injected.
+ */
+@Converter
+public class CompressedContentConverter implements AttributeConverter<String, String> {
+
+    @Autowired
+    private ContentCompressor contentCompressor;
+
+    @Override
+    public String convertToDatabaseColumn(String content) {
+        return contentCompressor.compress(content);
+    }
+
+    @Override
+    public String convertToEntityAttribute(String stored) {
+        return contentCompressor.decompress(stored);
+    }
+}
@@ -3,11 +3,13 @@ package com.mynetrunner.backend.model;
 import java.time.LocalDateTime;
 
 import jakarta.persistence.Column;
+import jakarta.persistence.Convert;
 import jakarta.persistence.Entity;
 import jakarta.persistence.GeneratedValue;
 import jakarta.persistence.GenerationType;
 import jakarta.persistence.Id;
 import jakarta.persistence.PrePersist;
+import jakarta.persistence.SequenceGenerator;
 import jakarta.persistence.Table;
 import lombok.AllArgsConstructor;
 import lombok.Data;
@@ -20,8 +22,17 @@ import lombok.NoArgsConstructor;
 @AllArgsConstructor
 public class Message {
     
+    public static final String SEQUENCE_NAME = "messages_seq";
+    
+    public static final int ALLOCATION_SIZE = 50;
+    
+    // Pooled sequence: one round trip hands out ALLOCATION_SIZE ids. The sequence
+    // increments by the same amount (V4 migration). MessageWriteBehindQueue is
+    // the only writer of messages and allocates from it with the same blocks,
+    // so this mapping only matters for reads and the test schema.
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = SEQUENCE_NAME)
+    @SequenceGenerator(name = SEQUENCE_NAME, sequenceName = SEQUENCE_NAME, allocationSize = ALLOCATION_SIZE)
     private Long id;
     
     @Column(nullable = false)
@@ -30,7 +41,9 @@ public class Message {
     @Column(nullable = false)
     private Long receiverId;
     
+    // Long content is stored compressed, see ContentCompressor
     @Column(nullable = false, columnDefinition = "TEXT")
+    @Convert(converter = CompressedContentConverter.class)
     private String content;
     
     @Column(nullable = false)
@@ -1,30 +1,61 @@
 package com.mynetrunner.backend.repository;
 
 import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
 
+import org.springframework.data.domain.Limit;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.stereotype.Repository;
 import org.springframework.transaction.annotation.Transactional;
 
+import com.mynetrunner.backend.dto.message.MessageResponse;
 import com.mynetrunner.backend.model.Message;
 
 @Repository
 public interface MessageRepository extends JpaRepository<Message, Long> {
     
-    // Find all undelivered messages for a specific receiver
-    List<Message> findByReceiverIdAndDeliveredFalse(Long receiverId);
+    // First page of undelivered messages with the sender username joined in
+    @Query("SELECT new com.mynetrunner.backend.dto.message.MessageResponse("
+            + "m.id, m.senderId, COALESCE(u.username, 'Unknown'), m.receiverId, m.content, m.timestamp, m.delivered) "
+            + "FROM Message m LEFT JOIN User u ON u.id = m.senderId "
+            + "WHERE m.receiverId = :receiverId AND m.delivered = false "
+            + "ORDER BY m.timestamp, m.id")
+    List<MessageResponse> findPendingPage(Long receiverId, Limit limit);
     
-    // Delete expired messages (cleanup job will use this)
+    // Next page after the (timestamp, id) of the last row already read
+    @Query("SELECT new com.mynetrunner.backend.dto.message.MessageResponse("
+            + "m.id, m.senderId, COALESCE(u.username, 'Unknown'), m.receiverId, m.content, m.timestamp, m.delivered) "
+            + "FROM Message m LEFT JOIN User u ON u.id = m.senderId "
+            + "WHERE m.receiverId = :receiverId AND m.delivered = false "
+            + "AND (m.timestamp > :afterTimestamp OR (m.timestamp = :afterTimestamp AND m.id > :afterId)) "
+            + "ORDER BY m.timestamp, m.id")
+    List<MessageResponse> findPendingPageAfter(Long receiverId, LocalDateTime afterTimestamp, Long afterId, Limit limit);
+    
+    // Delete up to :limit expired messages, oldest first. SKIP LOCKED lets
+    // reapers on several nodes run at once without blocking each other. The
+    // ids go through an array so each is a primary key lookup; as IN (...)
+    // the planner hash-joins against a full scan of the table.
     @Modifying
     @Transactional
-    @Query("DELETE FROM Message m WHERE m.expiresAt < :now")
-    void deleteExpiredMessages(LocalDateTime now);
+    @Query(value = "DELETE FROM messages WHERE id = ANY (ARRAY("
+            + "SELECT id FROM messages WHERE expires_at < :now "
+            + "ORDER BY expires_at LIMIT :limit FOR UPDATE SKIP LOCKED))", nativeQuery = true)
+    int deleteExpiredBatch(LocalDateTime now, int limit);
+    
+    // Stored messages not yet delivered, served by the partial pending index
+    @Query("SELECT COUNT(m) FROM Message m WHERE m.delivered = false")
+    long countPending();
+    
+    // Number of expired messages still waiting to be reaped
+    @Query("SELECT COUNT(m) FROM Message m WHERE m.expiresAt < :now")
+    long countExpired(LocalDateTime now);
     
-    // Delete delivered messages (called after successful delivery)
+    // Delete a whole acknowledged batch in one statement
     @Modifying
     @Transactional
-    void deleteById(Long id);
+    @Query("DELETE FROM Message m WHERE m.id IN :ids")
+    int deleteByIdIn(Collection<Long> ids);
 }
\ No newline at end of file
@@ -1,14 +1,28 @@
 package com.mynetrunner.backend.repository;
 
+import java.util.List;
 import java.util.Optional;
 
+import org.springframework.data.domain.Limit;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
 import org.springframework.stereotype.Repository;
 
+import com.mynetrunner.backend.dto.UserInfo;
 import com.mynetrunner.backend.model.User;
 
 @Repository
 public interface UserRepository extends JpaRepository<User, Long> {
     Optional<User> findByUsername(String username);
     boolean existsByUsername(String username);
-}
\ No newline at end of file
+    
+    // Directory page after the last id already read; only id and username are selected
+    @Query("SELECT new com.mynetrunner.backend.dto.UserInfo(u.id, u.username) "
+            + "FROM User u WHERE u.id > :afterId ORDER BY u.id")
+    List<UserInfo> findDirectoryPage(Long afterId, Limit limit);
+    
+    // Same, restricted to usernames matching a LIKE pattern ending in %
+    @Query("SELECT new com.mynetrunner.backend.dto.UserInfo(u.id, u.username) "
+            + "FROM User u WHERE u.username LIKE :pattern ESCAPE '\\' AND u.id > :afterId ORDER BY u.id")
+    List<UserInfo> findDirectoryPageByPrefix(String pattern, Long afterId, Limit limit);
+}
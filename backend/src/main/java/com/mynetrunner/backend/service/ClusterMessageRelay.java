@@ -0,0 +1,421 @@
+package com.mynetrunner.backend.service;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.data.redis.connection.StringRedisConnection;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.listener.ChannelTopic;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+import org.springframework.data.redis.listener.adapter.MessageListenerAdapter;
+import org.springframework.messaging.simp.SimpMessagingTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.mynetrunner.backend.exception.MessageDeliveryException;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+
+/**
+ * Routes /user/queue/messages deliveries between nodes in cluster mode.
+ *
+ * Receivers are sharded over messaging.cluster.shards Redis channels by
+ * user id. A node subscribes to a shard channel only while it has at least
+ * one local user in that shard, so it only receives traffic for users that
+ * may be connected to it. Cluster-wide presence is a sorted set per user of
+ * nodeId -> expiry, refreshed by a heartbeat so a crashed node ages out.
+ *
+ * Listening on a shard says nothing about a particular user: presence can
+ * outlive a crashed node, and other users share the shard. So the node that
+ * pushes a relayed message to its local subscriber acks it on the sender's
+ * ack channel, and a delivery without an ack within ack-timeout counts as
+ * undelivered and is stored by the caller. Waiting for the ack never holds
+ * up the sender's conversation lane. An ack that arrives after the
+ * timeout means the receiver gets the message again from their inbox.
+ *
+ * The listener container hands messages over one at a time and in order
+ * (see ClusterConfig); relayed deliveries then move to the conversation's
+ * lane, so they keep the order they were published in. Presence changes
+ * are written to Redis by one thread, which re-reads the local state
+ * instead of trusting the order events arrived in.
+ *
+ * Messages stored here for a receiver who is online on another node are
+ * announced with an envelope without payload, so that node drains them.
+ */
+@Service
+@ConditionalOnProperty(name = "messaging.cluster.enabled", havingValue = "true")
+public class ClusterMessageRelay implements PresenceService.PresenceListener, MessageWriteBehindQueue.FlushListener {
+
+    private static final Logger log = LoggerFactory.getLogger(ClusterMessageRelay.class);
+
+    private static final String PRESENCE_KEY_PREFIX = "mynetrunner:presence:";
+
+    @Autowired
+    private StringRedisTemplate redisTemplate;
+
+    @Autowired
+    private RedisMessageListenerContainer listenerContainer;
+
+    @Autowired
+    private SimpMessagingTemplate messagingTemplate;
+
+    @Autowired
+    private PresenceService presenceService;
+
+    @Autowired
+    private InboxDrainService inboxDrainService;
+
+    @Autowired
+    private MessageWriteBehindQueue writeBehindQueue;
+
+    @Autowired
+    private ConversationDispatcher conversationDispatcher;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Value("${messaging.cluster.shards:64}")
+    private int shards;
+
+    @Value("${messaging.cluster.channel-prefix:mynetrunner:messages:}")
+    private String channelPrefix;
+
+    @Value("${messaging.cluster.heartbeat-ms:10000}")
+    private long heartbeatMs;
+
+    // How long a published delivery may wait for the receiving node to confirm it
+    @Value("${messaging.cluster.ack-timeout-ms:500}")
+    private long ackTimeoutMs;
+
+    // Random per process, so a restarted node never inherits stale presence
+    private final String nodeId = UUID.randomUUID().toString();
+
+    // shard -> number of local users in it; guarded by this
+    private int[] localUsersPerShard;
+
+    // Writes this node's presence to Redis, one user at a time
+    private ExecutorService presenceExecutor;
+
+    // Users whose presence changed since their last sync; at most one queued sync each
+    private final Set<Long> presenceChanged = ConcurrentHashMap.newKeySet();
+
+    // Users this node has announced; only touched by presenceExecutor
+    private final Set<Long> announced = new HashSet<>();
+
+    private MessageListenerAdapter listener;
+
+    // deliveryId -> completed when the receiving node acks it
+    private final Map<String, CompletableFuture<Void>> pendingAcks = new ConcurrentHashMap<>();
+
+    private Counter unacknowledged;
+
+    /**
+     * What travels over the shard channel: the sender and receiver, the
+     * message as JSON, and where the delivering node should send its ack. A
+     * null payload only tells the receiver's node that their inbox has new rows.
+     */
+    public record Envelope(Long senderId, Long receiverId, String deliveryId, String ackChannel, JsonNode payload) {
+    }
+
+    @PostConstruct
+    public void init() {
+        localUsersPerShard = new int[shards];
+        presenceExecutor = Executors.newSingleThreadExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "cluster-presence");
+            thread.setDaemon(true);
+            return thread;
+        });
+        listener = new MessageListenerAdapter(this, "onRelayedMessage");
+        listener.afterPropertiesSet();
+        presenceService.addListener(this);
+        writeBehindQueue.addListener(this);
+
+        MessageListenerAdapter ackListener = new MessageListenerAdapter(this, "onDeliveryAck");
+        ackListener.afterPropertiesSet();
+        listenerContainer.addMessageListener(ackListener, new ChannelTopic(ackChannel()));
+
+        unacknowledged = Counter.builder("messaging.cluster.relay.unacknowledged")
+            .description("Relayed deliveries no node confirmed in time, stored for the inbox instead")
+            .register(meterRegistry);
+    }
+
+    /**
+     * Check whether the user has a live subscription on any node
+     */
+    public boolean isOnline(Long userId) {
+        if (presenceService.isOnline(userId)) {
+            return true;
+        }
+
+        Long live = redisTemplate.opsForZSet()
+            .count(PRESENCE_KEY_PREFIX + userId, System.currentTimeMillis(), Double.POSITIVE_INFINITY);
+        return live != null && live > 0;
+    }
+
+    /**
+     * Publish a delivery to the receiver's shard without waiting for it. The
+     * result completes true once the node the receiver is connected to
+     * confirms it, and false when nobody listens on the shard or no ack
+     * arrives within ack-timeout, so the caller can store the message instead.
+     * A late result completes on the timeout or listener thread, not the caller's.
+     */
+    public CompletableFuture<Boolean> publish(Long senderId, Long receiverId, Object payload) {
+        String deliveryId = UUID.randomUUID().toString();
+        String json;
+        try {
+            json = objectMapper.writeValueAsString(
+                new Envelope(senderId, receiverId, deliveryId, ackChannel(), objectMapper.valueToTree(payload)));
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Could not serialize relayed message", e);
+        }
+
+        CompletableFuture<Void> ack = new CompletableFuture<>();
+        pendingAcks.put(deliveryId, ack);
+        Long receivers;
+        try {
+            receivers = redisTemplate.convertAndSend(channelFor(receiverId), json);
+        } catch (RuntimeException e) {
+            pendingAcks.remove(deliveryId);
+            throw e;
+        }
+        if (receivers == null || receivers == 0) {
+            pendingAcks.remove(deliveryId);
+            return CompletableFuture.completedFuture(false);
+        }
+
+        return ack.orTimeout(ackTimeoutMs, TimeUnit.MILLISECONDS).handle((ignored, error) -> {
+            pendingAcks.remove(deliveryId);
+            if (error != null) {
+                // Stale presence, or only other users of the shard are listening
+                unacknowledged.increment();
+                return false;
+            }
+            return true;
+        });
+    }
+
+    /**
+     * Called by the listener container for every message on a subscribed shard
+     */
+    public void onRelayedMessage(String json) {
+        Envelope envelope;
+        try {
+            envelope = objectMapper.readValue(json, Envelope.class);
+        } catch (JsonProcessingException e) {
+            log.warn("Dropping malformed relayed message: {}", e.getMessage());
+            return;
+        }
+
+        // Other users in the same shard may live on this node; only deliver to
+        // our own, and leave the rest for the sender to store when no ack comes
+        if (!presenceService.isOnline(envelope.receiverId())) {
+            return;
+        }
+        // Jackson reads a null JsonNode back as NullNode
+        if (envelope.payload() == null || envelope.payload().isNull()) {
+            inboxDrainService.inboxChanged(envelope.receiverId());
+            return;
+        }
+
+        // On the lane a local message of the same conversation would take;
+        // a full lane sends no ack, so the sender stores the message
+        try {
+            conversationDispatcher.dispatch(envelope.senderId(), envelope.receiverId(), () -> deliverLocally(envelope));
+        } catch (MessageDeliveryException e) {
+            log.debug("No lane for relayed message to {}: {}", envelope.receiverId(), e.getMessage());
+        }
+    }
+
+    private void deliverLocally(Envelope envelope) {
+        if (!presenceService.isOnline(envelope.receiverId())) {
+            return;
+        }
+        messagingTemplate.convertAndSendToUser(
+            envelope.receiverId().toString(), PresenceService.USER_QUEUE, envelope.payload());
+        redisTemplate.convertAndSend(envelope.ackChannel(), envelope.deliveryId());
+    }
+
+    @Override
+    public void messagesStored(Set<Long> receiverIds) {
+        List<Long> remote = new ArrayList<>();
+        for (Long receiverId : receiverIds) {
+            if (!presenceService.isOnline(receiverId)) {
+                remote.add(receiverId);
+            }
+        }
+        if (remote.isEmpty()) {
+            return;
+        }
+
+        // Usually nobody is online elsewhere either; one round trip finds out
+        double now = System.currentTimeMillis();
+        List<Object> live = redisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+            StringRedisConnection strings = (StringRedisConnection) connection;
+            for (Long receiverId : remote) {
+                strings.zCount(PRESENCE_KEY_PREFIX + receiverId, now, Double.POSITIVE_INFINITY);
+            }
+            return null;
+        });
+
+        for (int i = 0; i < remote.size(); i++) {
+            if (live.get(i) instanceof Long count && count > 0) {
+                try {
+                    redisTemplate.convertAndSend(channelFor(remote.get(i)),
+                        objectMapper.writeValueAsString(new Envelope(null, remote.get(i), null, null, null)));
+                } catch (JsonProcessingException e) {
+                    throw new IllegalStateException("Could not serialize inbox notice", e);
+                }
+            }
+        }
+    }
+
+    /**
+     * Called by the listener container when a node confirms one of our deliveries
+     */
+    public void onDeliveryAck(String deliveryId) {
+        CompletableFuture<Void> ack = pendingAcks.get(deliveryId);
+        if (ack != null) {
+            ack.complete(null);
+        }
+    }
+
+    @Override
+    public void userOnline(Long userId) {
+        presenceChanged(userId);
+    }
+
+    @Override
+    public void userOffline(Long userId) {
+        presenceChanged(userId);
+    }
+
+    private void presenceChanged(Long userId) {
+        if (presenceChanged.add(userId)) {
+            presenceExecutor.execute(() -> {
+                // Removed first, so a change during the sync queues another one
+                presenceChanged.remove(userId);
+                try {
+                    syncPresence(userId);
+                } catch (RuntimeException e) {
+                    // The heartbeat announces the user again, and a stale entry ages out
+                    log.warn("Could not update presence of user {}: {}", userId, e.getMessage());
+                }
+            });
+        }
+    }
+
+    /**
+     * Bring the shard subscription and Redis presence of a user in line with
+     * whether they are online here now
+     */
+    private void syncPresence(Long userId) {
+        boolean online = presenceService.isOnline(userId);
+        if (online == announced.contains(userId)) {
+            return;
+        }
+
+        int shard = shardOf(userId);
+        String key = PRESENCE_KEY_PREFIX + userId;
+        if (online) {
+            announced.add(userId);
+            synchronized (this) {
+                if (localUsersPerShard[shard]++ == 0) {
+                    listenerContainer.addMessageListener(listener, new ChannelTopic(channelPrefix + shard));
+                }
+            }
+            redisTemplate.opsForZSet().add(key, nodeId, presenceExpiry());
+            redisTemplate.expire(key, Duration.ofMillis(heartbeatMs * 3));
+        } else {
+            announced.remove(userId);
+            synchronized (this) {
+                if (localUsersPerShard[shard] > 0 && --localUsersPerShard[shard] == 0) {
+                    listenerContainer.removeMessageListener(listener, new ChannelTopic(channelPrefix + shard));
+                }
+            }
+            redisTemplate.opsForZSet().remove(key, nodeId);
+        }
+    }
+
+    /**
+     * Shards this node currently listens on
+     */
+    public synchronized Set<Integer> getSubscribedShards() {
+        Set<Integer> subscribed = new TreeSet<>();
+        for (int shard = 0; shard < shards; shard++) {
+            if (localUsersPerShard[shard] > 0) {
+                subscribed.add(shard);
+            }
+        }
+        return subscribed;
+    }
+
+    /**
+     * Re-announce every local user so their presence outlives the next interval
+     */
+    @Scheduled(fixedDelayString = "${messaging.cluster.heartbeat-ms:10000}")
+    public void heartbeat() {
+        Set<Long> userIds = presenceService.getOnlineUserIds();
+        if (userIds.isEmpty()) {
+            return;
+        }
+
+        double expiry = presenceExpiry();
+        redisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+            StringRedisConnection strings = (StringRedisConnection) connection;
+            for (Long userId : userIds) {
+                String key = PRESENCE_KEY_PREFIX + userId;
+                strings.zAdd(key, expiry, nodeId);
+                strings.zRemRangeByScore(key, 0, System.currentTimeMillis());
+                strings.pExpire(key, heartbeatMs * 3);
+            }
+            return null;
+        });
+    }
+
+    @PreDestroy
+    public void stop() {
+        presenceExecutor.shutdown();
+    }
+
+    private int shardOf(Long userId) {
+        return (int) Math.floorMod(userId, (long) shards);
+    }
+
+    private String channelFor(Long userId) {
+        return channelPrefix + shardOf(userId);
+    }
+
+    private String ackChannel() {
+        return channelPrefix + "ack:" + nodeId;
+    }
+
+    private double presenceExpiry() {
+        return System.currentTimeMillis() + heartbeatMs * 3;
+    }
+}
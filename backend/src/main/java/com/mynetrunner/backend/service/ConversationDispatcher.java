@@ -0,0 +1,142 @@
+package com.mynetrunner.backend.service;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.DependsOn;
+import org.springframework.stereotype.Component;
+
+import com.mynetrunner.backend.exception.MessageDeliveryException;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+
+/**
+ * Runs chat deliveries on a fixed set of single-threaded lanes, picked by
+ * hashing (senderId, receiverId). Everything in one conversation goes
+ * through the same lane and so keeps its order, while different
+ * conversations spread over all lanes and run in parallel.
+ *
+ * A delivery that throws on its lane has already been accepted, so the
+ * caller can pass a handler to tell the sender about it.
+ */
+@Component
+// Destroyed first, so deliveries still queued on a lane can store their
+// messages before the write-behind queue shuts down
+@DependsOn("messageWriteBehindQueue")
+public class ConversationDispatcher {
+
+    private static final Logger log = LoggerFactory.getLogger(ConversationDispatcher.class);
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    // 0 means one lane per available processor
+    @Value("${messaging.dispatch.lanes:0}")
+    private int laneCount;
+
+    // Deliveries each lane may hold before senders are told to retry
+    @Value("${messaging.dispatch.lane-capacity:1000}")
+    private int laneCapacity;
+
+    private ThreadPoolExecutor[] lanes;
+
+    private Counter failures;
+
+    @PostConstruct
+    public void start() {
+        int count = laneCount > 0 ? laneCount : Runtime.getRuntime().availableProcessors();
+        lanes = new ThreadPoolExecutor[count];
+        for (int i = 0; i < count; i++) {
+            String name = "conversation-lane-" + i;
+            lanes[i] = new ThreadPoolExecutor(1, 1, 0, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(laneCapacity),
+                runnable -> {
+                    Thread thread = new Thread(runnable, name);
+                    thread.setDaemon(true);
+                    return thread;
+                });
+        }
+
+        Gauge.builder("messaging.dispatch.queue.depth", this, ConversationDispatcher::getQueueDepth)
+            .description("Deliveries waiting on conversation lanes")
+            .register(meterRegistry);
+        failures = Counter.builder("messaging.dispatch.failures")
+            .description("Deliveries that threw on a conversation lane")
+            .register(meterRegistry);
+    }
+
+    /**
+     * Run the delivery on the conversation's lane, after everything already
+     * dispatched for the same sender and receiver
+     */
+    public void dispatch(Long senderId, Long receiverId, Runnable delivery) {
+        dispatch(senderId, receiverId, delivery, e -> { });
+    }
+
+    /**
+     * Like dispatch, and hand the exception to onFailure, on the lane, if
+     * the delivery throws
+     */
+    public void dispatch(Long senderId, Long receiverId, Runnable delivery, Consumer<RuntimeException> onFailure) {
+        try {
+            lanes[laneOf(senderId, receiverId)].execute(() -> {
+                try {
+                    delivery.run();
+                } catch (RuntimeException e) {
+                    failures.increment();
+                    log.warn("Delivery from {} to {} failed: {}", senderId, receiverId, e.getMessage());
+                    try {
+                        onFailure.accept(e);
+                    } catch (RuntimeException reportFailure) {
+                        log.warn("Could not report failed delivery to {}: {}", senderId, reportFailure.getMessage());
+                    }
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            throw new MessageDeliveryException("Message queue is full, please retry");
+        }
+    }
+
+    public int getLaneCount() {
+        return lanes.length;
+    }
+
+    public int getQueueDepth() {
+        int depth = 0;
+        for (ThreadPoolExecutor lane : lanes) {
+            depth += lane.getQueue().size();
+        }
+        return depth;
+    }
+
+    private int laneOf(Long senderId, Long receiverId) {
+        long hash = senderId * 0x9E3779B97F4A7C15L + receiverId;
+        hash ^= hash >>> 32;
+        return (int) Math.floorMod(hash, (long) lanes.length);
+    }
+
+    @PreDestroy
+    public void stop() throws InterruptedException {
+        // Let queued deliveries finish before the broker and database go away
+        for (ThreadPoolExecutor lane : lanes) {
+            lane.shutdown();
+        }
+        for (ThreadPoolExecutor lane : lanes) {
+            if (!lane.awaitTermination(5, TimeUnit.SECONDS)) {
+                log.warn("Conversation lane did not drain within 5s");
+            }
+        }
+    }
+}
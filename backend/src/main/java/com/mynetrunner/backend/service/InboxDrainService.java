@@ -0,0 +1,265 @@
+package com.mynetrunner.backend.service;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.messaging.simp.SimpMessagingTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import com.mynetrunner.backend.dto.message.MessageBatch;
+import com.mynetrunner.backend.dto.message.MessageResponse;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+
+/**
+ * Streams a user's stored messages to them once the broker has registered
+ * their subscription to /user/queue/messages, as PresenceService reports
+ * it, so the first batch cannot race the subscription. Messages go out as
+ * MessageBatch frames of at most
+ * chunk-size rows; the next batch is only read once the client acks the
+ * current one on /app/inbox/ack, and each acked batch is deleted with a
+ * single statement. Batches not acked within ack-timeout are resent.
+ *
+ * A drain that runs out of messages stays registered, idle, until its
+ * session unsubscribes. Rows for its user committed after that, e.g. a
+ * message that was still in the write-behind queue when the user came
+ * online, start another pass, as does inboxChanged from another node.
+ * When the session ends while the user is still subscribed through another
+ * one, that session takes the drain over, in-flight batch included.
+ */
+@Service
+public class InboxDrainService implements MessageWriteBehindQueue.FlushListener, PresenceService.PresenceListener {
+
+    @Autowired
+    private MessageService messageService;
+
+    @Autowired
+    private MessageWriteBehindQueue writeBehindQueue;
+
+    @Autowired
+    private SimpMessagingTemplate messagingTemplate;
+
+    @Autowired
+    private PresenceService presenceService;
+
+    @Value("${messaging.inbox.chunk-size:100}")
+    private int chunkSize;
+
+    @Value("${messaging.inbox.ack-timeout-ms:10000}")
+    private long ackTimeoutMs;
+
+    // One drain per user at a time, owned by the session that started it
+    private final Map<Long, Drain> drains = new ConcurrentHashMap<>();
+
+    private final Counter drainedMessages;
+
+    private final DistributionSummary drainThroughput;
+
+    private final Timer ackTimer;
+
+    public InboxDrainService(MeterRegistry meterRegistry) {
+        this.drainedMessages = Counter.builder("inbox.drain.messages")
+            .description("Stored messages delivered and acknowledged through inbox drains")
+            .register(meterRegistry);
+        this.drainThroughput = DistributionSummary.builder("inbox.drain.throughput")
+            .description("Messages per second of each completed inbox drain")
+            .baseUnit("messages/s")
+            .register(meterRegistry);
+        this.ackTimer = Timer.builder("inbox.ack")
+            .description("Time spent deleting an acknowledged inbox batch and sending the next one")
+            .register(meterRegistry);
+    }
+
+    @PostConstruct
+    public void init() {
+        writeBehindQueue.addListener(this);
+        presenceService.addListener(this);
+    }
+
+    @Override
+    public void sessionSubscribed(String sessionId, Long userId) {
+        // An idle drain is handed to the newest session; a running one keeps going
+        Drain drain = new Drain(userId, sessionId);
+        if (drains.merge(userId, drain, (current, fresh) -> current.idle ? fresh : current) == drain) {
+            synchronized (drain) {
+                sendNext(drain);
+            }
+        }
+    }
+
+    @Override
+    public void messagesStored(Set<Long> receiverIds) {
+        for (Long receiverId : receiverIds) {
+            inboxChanged(receiverId);
+        }
+    }
+
+    /**
+     * Drain the user's stored messages again if they have a drain here;
+     * one in progress finishes its pass and then starts over
+     */
+    public void inboxChanged(Long userId) {
+        Drain drain = drains.get(userId);
+        if (drain == null) {
+            return;
+        }
+
+        synchronized (drain) {
+            if (drains.get(userId) != drain) {
+                return;
+            }
+            if (drain.idle) {
+                restart(drain);
+            } else {
+                drain.rescan = true;
+            }
+        }
+    }
+
+    @Override
+    public void sessionUnsubscribed(String sessionId, Long userId) {
+        Drain drain = drains.get(userId);
+        if (drain == null || !drain.sessionId.equals(sessionId)) {
+            return;
+        }
+
+        synchronized (drain) {
+            if (drains.get(userId) != drain) {
+                return;
+            }
+
+            String successor = presenceService.getSessionIds(userId).stream()
+                .filter(id -> !id.equals(sessionId))
+                .findFirst()
+                .orElse(null);
+            if (successor == null) {
+                // Unacked rows stay stored and are drained again on the next subscribe
+                drains.remove(userId, drain);
+                return;
+            }
+
+            // The batch the old session never acked goes out again for the new one to ack
+            drain.sessionId = successor;
+            if (drain.inFlight != null) {
+                send(drain);
+            }
+        }
+    }
+
+    /**
+     * Delete an acknowledged batch and send the next one
+     */
+    public void acknowledge(String sessionId, Long userId, Long batchId) {
+        Drain drain = drains.get(userId);
+        if (drain == null || !drain.sessionId.equals(sessionId)) {
+            return;
+        }
+
+        synchronized (drain) {
+            if (drain.inFlight == null || drain.batchId != batchId) {
+                return;
+            }
+
+            long started = System.nanoTime();
+            List<Long> ids = drain.inFlight.stream().map(MessageResponse::getId).toList();
+            messageService.markAsDelivered(ids);
+            drain.delivered += ids.size();
+            drainedMessages.increment(ids.size());
+            drain.cursor = drain.inFlight.get(drain.inFlight.size() - 1);
+            drain.inFlight = null;
+
+            sendNext(drain);
+            ackTimer.record(System.nanoTime() - started, TimeUnit.NANOSECONDS);
+        }
+    }
+
+    /**
+     * Resend batches whose ack has not arrived in time, e.g. because the
+     * client lost the frame or was slow to ack it
+     */
+    @Scheduled(fixedDelayString = "${messaging.inbox.ack-timeout-ms:10000}")
+    public void resendUnacknowledged() {
+        long now = System.currentTimeMillis();
+        for (Drain drain : drains.values()) {
+            synchronized (drain) {
+                if (drain.inFlight != null && now - drain.sentAtMillis >= ackTimeoutMs) {
+                    send(drain);
+                }
+            }
+        }
+    }
+
+    private void sendNext(Drain drain) {
+        List<MessageResponse> page = messageService.getPendingMessages(drain.userId, drain.cursor, chunkSize);
+        if (page.isEmpty()) {
+            complete(drain);
+            return;
+        }
+
+        drain.inFlight = page;
+        drain.batchId++;
+        send(drain);
+    }
+
+    private void send(Drain drain) {
+        drain.sentAtMillis = System.currentTimeMillis();
+        messagingTemplate.convertAndSendToUser(
+            drain.userId.toString(),
+            PresenceService.USER_QUEUE,
+            new MessageBatch(drain.batchId, drain.inFlight)
+        );
+    }
+
+    private void complete(Drain drain) {
+        if (drain.delivered > 0) {
+            double seconds = Math.max(System.nanoTime() - drain.startedNanos, 1) / (double) TimeUnit.SECONDS.toNanos(1);
+            drainThroughput.record(drain.delivered / seconds);
+        }
+
+        // Rows committed during the pass may sort before the cursor
+        if (drain.rescan) {
+            restart(drain);
+        } else {
+            drain.idle = true;
+        }
+    }
+
+    private void restart(Drain drain) {
+        drain.idle = false;
+        drain.rescan = false;
+        drain.startedNanos = System.nanoTime();
+        drain.delivered = 0;
+        drain.cursor = null;
+        sendNext(drain);
+    }
+
+    private static class Drain {
+        private final Long userId;
+        // Changed, under the lock, when another session takes the drain over
+        private volatile String sessionId;
+        private long startedNanos = System.nanoTime();
+        // Read outside the lock when a new session subscribes
+        private volatile boolean idle;
+        private boolean rescan;
+        private long batchId;
+        private long delivered;
+        private long sentAtMillis;
+        private MessageResponse cursor;
+        private List<MessageResponse> inFlight;
+
+        private Drain(Long userId, String sessionId) {
+            this.userId = userId;
+            this.sessionId = sessionId;
+        }
+    }
+}
@@ -1,34 +1,168 @@
 package com.mynetrunner.backend.service;
 
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Component;
 
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+
 @Component
 public class MessageCleanupScheduler {
-    
+
+    private static final Logger log = LoggerFactory.getLogger(MessageCleanupScheduler.class);
+
     @Autowired
     private MessageService messageService;
-    
+
+    // Only present in partitioned storage mode
+    @Autowired(required = false)
+    private MessagePartitionManager partitionManager;
+
+    @Value("${messaging.reaper.interval-ms:60000}")
+    private long intervalMs;
+
+    @Value("${messaging.reaper.initial-delay-ms:60000}")
+    private long initialDelayMs;
+
+    @Value("${messaging.reaper.batch-size:1000}")
+    private int maxBatchSize;
+
+    @Value("${messaging.reaper.min-batch-size:50}")
+    private int minBatchSize;
+
+    @Value("${messaging.reaper.target-batch-latency-ms:100}")
+    private long targetBatchLatencyMs;
+
+    @Value("${messaging.reaper.max-run-ms:10000}")
+    private long maxRunMs;
+
+    private final Counter reapedMessages;
+
+    private final AtomicLong backlog = new AtomicLong();
+
+    private final AtomicLong lastRunRate = new AtomicLong();
+
+    // Carried across runs so the next run starts from the last stable size
+    private int batchSize;
+
+    // Own thread: a run sleeps between batches for up to max-run-ms, which
+    // on the shared scheduler would hold up every other @Scheduled task
+    private ScheduledExecutorService executor;
+
+    public MessageCleanupScheduler(MeterRegistry meterRegistry) {
+        this.reapedMessages = Counter.builder("messages.reaper.deleted")
+            .description("Expired messages deleted by the reaper")
+            .register(meterRegistry);
+        Gauge.builder("messages.reaper.backlog", backlog, AtomicLong::get)
+            .description("Expired messages still waiting to be deleted")
+            .register(meterRegistry);
+        Gauge.builder("messages.reaper.rate", lastRunRate, AtomicLong::get)
+            .description("Rows per second deleted during the last reaper run")
+            .baseUnit("rows/s")
+            .register(meterRegistry);
+    }
+
+    @PostConstruct
+    public void start() {
+        executor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "message-reaper");
+            thread.setDaemon(true);
+            return thread;
+        });
+        executor.scheduleWithFixedDelay(this::runSafely, initialDelayMs, intervalMs, TimeUnit.MILLISECONDS);
+    }
+
+    @PreDestroy
+    public void stop() throws InterruptedException {
+        // Interrupts the pause between batches; the batch in progress finishes
+        executor.shutdownNow();
+        executor.awaitTermination(5, TimeUnit.SECONDS);
+    }
+
+    private void runSafely() {
+        // An exception would cancel every later run of a fixed-delay task
+        try {
+            cleanupExpiredMessages();
+        } catch (RuntimeException e) {
+            log.error("Reaper run failed", e);
+        }
+    }
+
     /**
-     * Runs every day at 3 AM to clean up expired messages
-     * Cron format: second, minute, hour, day, month, weekday
+     * Deletes expired messages in small batches, every minute by default,
+     * on the reaper's own thread.
+     * Each run stops after max-run-ms or once the backlog is empty; the next
+     * run simply picks up the oldest remaining rows. Batch size halves when
+     * a batch is slower than target-batch-latency-ms and grows again when
+     * the database is fast, and the reaper pauses between batches for as
+     * long as the last one took, so it never holds the DB more than half
+     * the time.
+     *
+     * In partitioned storage mode fully expired partitions are dropped
+     * first, so the batches only see the partially expired one.
      */
-    @Scheduled(cron = "0 0 3 * * *")
     public void cleanupExpiredMessages() {
-        System.out.println("Running scheduled cleanup of expired messages...");
-        messageService.deleteExpiredMessages();
-        System.out.println("Expired messages cleanup completed.");
+        if (batchSize == 0) {
+            batchSize = maxBatchSize;
+        }
+
+        if (partitionManager != null) {
+            partitionManager.dropExpiredPartitions();
+        }
+
+        long remaining = messageService.countExpiredMessages();
+        backlog.set(remaining);
+        if (remaining == 0) {
+            lastRunRate.set(0);
+            return;
+        }
+
+        long started = System.nanoTime();
+        long deadline = started + TimeUnit.MILLISECONDS.toNanos(maxRunMs);
+        long total = 0;
+
+        try {
+            while (System.nanoTime() < deadline) {
+                long batchStarted = System.nanoTime();
+                int deleted = messageService.deleteExpiredBatch(batchSize);
+                long batchMs = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - batchStarted);
+
+                total += deleted;
+                reapedMessages.increment(deleted);
+                backlog.set(Math.max(0, backlog.get() - deleted));
+
+                if (deleted < batchSize) {
+                    // Backlog drained (or the rest is claimed by another node)
+                    backlog.set(0);
+                    break;
+                }
+
+                if (batchMs > targetBatchLatencyMs) {
+                    batchSize = Math.max(minBatchSize, batchSize / 2);
+                } else if (batchMs < targetBatchLatencyMs / 2) {
+                    batchSize = Math.min(maxBatchSize, batchSize * 2);
+                }
+
+                Thread.sleep(batchMs);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+
+        double seconds = Math.max(System.nanoTime() - started, 1) / (double) TimeUnit.SECONDS.toNanos(1);
+        lastRunRate.set(Math.round(total / seconds));
+        log.info("Reaped {} expired messages in {} ms, {} left", total,
+            TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - started), backlog.get());
     }
-    
-    /**
-     * Alternative: Run every hour (for testing)
-     * Uncomment this and comment out the cron above if you want to test more frequently
-     */
-    // @Scheduled(fixedRate = 3600000) // Every hour in milliseconds
-    // public void cleanupExpiredMessagesHourly() {
-    //     System.out.println("Running hourly cleanup of expired messages...");
-    //     messageService.deleteExpiredMessages();
-    //     System.out.println("Expired messages cleanup completed.");
-    // }
-}
\ No newline at end of file
+}
@@ -0,0 +1,108 @@
+package com.mynetrunner.backend.service;
+
+import java.sql.Timestamp;
+import java.time.LocalDate;
+import java.time.format.DateTimeFormatter;
+import java.util.List;
+import java.util.Objects;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+/**
+ * Maintains the range partitions of the messages table in partitioned
+ * storage mode: creates them ahead of the 30-day expiry horizon and drops
+ * the ones whose whole range has expired.
+ *
+ * An expired partition is detached CONCURRENTLY, which only briefly locks
+ * messages, and then dropped on its own, so the reaper never holds the
+ * ACCESS EXCLUSIVE lock a plain DROP takes on the parent. A detach that was
+ * interrupted is finalized on the next run.
+ */
+@Service
+@ConditionalOnProperty(name = "messaging.storage.partitioned", havingValue = "true")
+public class MessagePartitionManager {
+
+    private static final Logger log = LoggerFactory.getLogger(MessagePartitionManager.class);
+
+    // Postgres only exposes range bounds as the bound expression; the TO
+    // literal is cut out and cast there, so Postgres parses the timestamp.
+    // DEFAULT and MAXVALUE bounds have no literal and come back null
+    private static final String LIST_PARTITIONS_SQL =
+        "SELECT c.relname, i.inhdetachpending, "
+            + "substring(pg_get_expr(c.relpartbound, c.oid) FROM 'TO \\(''([^'']+)''\\)')::timestamp "
+            + "FROM pg_partitioned_table pt "
+            + "JOIN pg_inherits i ON i.inhparent = pt.partrelid "
+            + "JOIN pg_class c ON c.oid = i.inhrelid "
+            + "WHERE pt.partrelid = 'messages'::regclass AND pt.partstrat = 'r'";
+
+    private static final DateTimeFormatter NAME_FORMAT = DateTimeFormatter.BASIC_ISO_DATE;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    // 1 for daily partitions, 7 for weekly
+    @Value("${messaging.storage.partition-days:1}")
+    private int partitionDays;
+
+    // How far past the 30-day expiry horizon partitions must already exist
+    @Value("${messaging.storage.premake-days:5}")
+    private int premakeDays;
+
+    @EventListener(ApplicationReadyEvent.class)
+    @Scheduled(cron = "${messaging.storage.partition-cron:0 15 * * * *}")
+    public void createUpcomingPartitions() {
+        LocalDate horizon = LocalDate.now().plusDays(30 + premakeDays);
+        LocalDate start = listPartitions().stream()
+            .map(Partition::to)
+            .max(LocalDate::compareTo)
+            .orElse(LocalDate.now());
+
+        while (start.isBefore(horizon)) {
+            LocalDate end = start.plusDays(partitionDays);
+            jdbcTemplate.execute(String.format(
+                "CREATE TABLE IF NOT EXISTS messages_p%s PARTITION OF messages FOR VALUES FROM ('%s') TO ('%s')",
+                start.format(NAME_FORMAT), start, end));
+            log.info("Created message partition for [{}, {})", start, end);
+            start = end;
+        }
+    }
+
+    /**
+     * Drop every partition whose upper bound has passed, i.e. whose rows have
+     * all expired. Returns how many partitions were dropped.
+     */
+    public int dropExpiredPartitions() {
+        LocalDate today = LocalDate.now();
+        int dropped = 0;
+        for (Partition partition : listPartitions()) {
+            if (!partition.to().isAfter(today)) {
+                // CONCURRENTLY cannot run inside a transaction, and the reaper has none
+                jdbcTemplate.execute("ALTER TABLE messages DETACH PARTITION " + partition.name()
+                    + (partition.detachPending() ? " FINALIZE" : " CONCURRENTLY"));
+                jdbcTemplate.execute("DROP TABLE IF EXISTS " + partition.name());
+                log.info("Dropped expired message partition {}", partition.name());
+                dropped++;
+            }
+        }
+        return dropped;
+    }
+
+    private List<Partition> listPartitions() {
+        return jdbcTemplate.query(LIST_PARTITIONS_SQL, (rs, rowNum) -> {
+            Timestamp to = rs.getTimestamp(3);
+            return to == null ? null : new Partition(rs.getString(1), to.toLocalDateTime().toLocalDate(), rs.getBoolean(2));
+        }).stream().filter(Objects::nonNull).toList();
+    }
+
+    private record Partition(String name, LocalDate to, boolean detachPending) {
+    }
+}
@@ -0,0 +1,52 @@
+package com.mynetrunner.backend.service;
+
+import java.util.concurrent.CompletableFuture;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.messaging.simp.SimpMessagingTemplate;
+import org.springframework.stereotype.Service;
+
+/**
+ * Pushes a payload to a user's /user/queue/messages destination, either
+ * through the local broker or, in cluster mode, through the node the user
+ * is connected to.
+ */
+@Service
+public class MessageRouter {
+
+    @Autowired
+    private SimpMessagingTemplate messagingTemplate;
+
+    @Autowired
+    private PresenceService presenceService;
+
+    // Present only when messaging.cluster.enabled=true
+    @Autowired(required = false)
+    private ClusterMessageRelay clusterRelay;
+
+    /**
+     * Check whether the user is subscribed on this node or, in cluster mode, any node
+     */
+    public boolean isOnline(Long userId) {
+        return presenceService.isOnline(userId) || (clusterRelay != null && clusterRelay.isOnline(userId));
+    }
+
+    /**
+     * Deliver a sender's payload to the user if they are online anywhere.
+     * Completes false when nobody received it, so the caller should store the
+     * message instead. Local and offline receivers are settled before this
+     * returns; a relayed delivery settles later, when the other node acks or
+     * the ack times out.
+     */
+    public CompletableFuture<Boolean> deliver(Long senderId, Long userId, Object payload) {
+        if (presenceService.isOnline(userId)) {
+            messagingTemplate.convertAndSendToUser(userId.toString(), PresenceService.USER_QUEUE, payload);
+            return CompletableFuture.completedFuture(true);
+        }
+
+        if (clusterRelay != null && clusterRelay.isOnline(userId)) {
+            return clusterRelay.publish(senderId, userId, payload);
+        }
+        return CompletableFuture.completedFuture(false);
+    }
+}
@@ -1,18 +1,19 @@
 package com.mynetrunner.backend.service;
 
 import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
-import java.util.stream.Collectors;
+import java.util.function.Consumer;
 
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.domain.Limit;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
+import com.mynetrunner.backend.dto.message.MessageRequest;
 import com.mynetrunner.backend.dto.message.MessageResponse;
 import com.mynetrunner.backend.model.Message;
-import com.mynetrunner.backend.model.User;
 import com.mynetrunner.backend.repository.MessageRepository;
-import com.mynetrunner.backend.repository.UserRepository;
 
 @Service
 public class MessageService {
@@ -21,80 +22,104 @@ public class MessageService {
     private MessageRepository messageRepository;
     
     @Autowired
-    private UserRepository userRepository;
+    private MessageWriteBehindQueue writeBehindQueue;
     
     /**
      * Send a message (temporarily store until delivered)
+     * The row is written behind by MessageWriteBehindQueue, so this returns
+     * before the insert is committed and the id is only set once flushed.
+     * Sender and receiver must already have been validated by the caller.
      */
     public Message sendMessage(Long senderId, Long receiverId, String content) {
-        // Verify sender exists
-        User sender = userRepository.findById(senderId)
-            .orElseThrow(() -> new RuntimeException("Sender not found"));
+        // Create message and queue it for persistence
+        Message message = newMessage(senderId, receiverId, content, LocalDateTime.now());
 
-        // Verify receiver exists
-        User receiver = userRepository.findById(receiverId)
-            .orElseThrow(() -> new RuntimeException("Receiver not found"));
+        writeBehindQueue.enqueueInsert(message);
 
-        // Create and save message
+        return message;
+    }
+    
+    /**
+     * Store a batch of messages in one transaction, skipping the write-behind
+     * queue. Sender and receiver must already have been validated by the caller.
+     */
+    public List<Message> sendMessages(List<MessageRequest> requests) {
+        LocalDateTime now = LocalDateTime.now();
+        List<Message> messages = requests.stream()
+            .map(request -> newMessage(request.getSenderId(), request.getReceiverId(), request.getContent(), now))
+            .toList();
+
+        writeBehindQueue.insertNow(messages);
+
+        return messages;
+    }
+    
+    private Message newMessage(Long senderId, Long receiverId, String content, LocalDateTime now) {
         Message message = new Message();
         message.setSenderId(senderId);
         message.setReceiverId(receiverId);
         message.setContent(content);
         message.setDelivered(false);
-
-        Message savedMessage = messageRepository.save(message);
-
-        return savedMessage;
+        message.setTimestamp(now);
+        // Messages expire after 30 days if undelivered
+        message.setExpiresAt(now.plusDays(30));
+        return message;
+    }
+    
+    /**
+     * Get one page of pending (undelivered) messages for a user, oldest first.
+     * Pass the last message of the previous page as the cursor, or null for
+     * the first page. Each page is a single query with the sender joined in.
+     */
+    public List<MessageResponse> getPendingMessages(Long userId, MessageResponse after, int pageSize) {
+        if (after == null) {
+            return messageRepository.findPendingPage(userId, Limit.of(pageSize));
+        }
+        return messageRepository.findPendingPageAfter(
+            userId, after.getTimestamp(), after.getId(), Limit.of(pageSize));
     }
     
     /**
-     * Get all pending (undelivered) messages for a user
+     * Walk all pending messages for a user page by page, so only one page
+     * is held in memory at a time
      */
-    public List<MessageResponse> getPendingMessages(Long userId) {
-        List<Message> messages = messageRepository.findByReceiverIdAndDeliveredFalse(userId);
-        
-        return messages.stream()
-            .map(message -> {
-                User sender = userRepository.findById(message.getSenderId())
-                    .orElse(null);
-                String senderUsername = sender != null ? sender.getUsername() : "Unknown";
-                return convertToResponse(message, senderUsername);
-            })
-            .collect(Collectors.toList());
+    public void forEachPendingPage(Long userId, int pageSize, Consumer<List<MessageResponse>> consumer) {
+        MessageResponse cursor = null;
+        List<MessageResponse> page;
+        do {
+            page = getPendingMessages(userId, cursor, pageSize);
+            if (!page.isEmpty()) {
+                consumer.accept(page);
+                cursor = page.get(page.size() - 1);
+            }
+        } while (page.size() == pageSize);
     }
     
     /**
-     * Mark message as delivered and DELETE from server (privacy-focused)
+     * Mark a batch of messages as delivered and DELETE them from server
+     * (privacy-focused) with a single statement
      */
     @Transactional
-    public void markAsDelivered(Long messageId) {
-        Message message = messageRepository.findById(messageId)
-            .orElseThrow(() -> new RuntimeException("Message not found"));
-        
-        // Immediately delete from database after delivery
-        messageRepository.deleteById(messageId);
+    public void markAsDelivered(Collection<Long> messageIds) {
+        if (messageIds.isEmpty()) {
+            return;
+        }
+        messageRepository.deleteByIdIn(messageIds);
     }
     
     /**
-     * Delete expired messages (called by scheduled job)
+     * Delete one bounded batch of expired messages (called by scheduled job)
+     * Returns how many rows were removed
      */
     @Transactional
-    public void deleteExpiredMessages() {
-        messageRepository.deleteExpiredMessages(LocalDateTime.now());
+    public int deleteExpiredBatch(int batchSize) {
+        return messageRepository.deleteExpiredBatch(LocalDateTime.now(), batchSize);
     }
     
     /**
-     * Convert Message entity to MessageResponse DTO
+     * Count expired messages not yet removed
      */
-    private MessageResponse convertToResponse(Message message, String senderUsername) {
-        return new MessageResponse(
-            message.getId(),
-            message.getSenderId(),
-            senderUsername,
-            message.getReceiverId(),
-            message.getContent(),
-            message.getTimestamp(),
-            message.getDelivered()
-        );
+    public long countExpiredMessages() {
+        return messageRepository.countExpired(LocalDateTime.now());
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,425 @@
+package com.mynetrunner.backend.service;
+
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.NestedExceptionUtils;
+import org.springframework.dao.DataAccessResourceFailureException;
+import org.springframework.dao.RecoverableDataAccessException;
+import org.springframework.dao.TransientDataAccessException;
+import org.springframework.jdbc.core.BatchPreparedStatementSetter;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.CannotCreateTransactionException;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import com.mynetrunner.backend.exception.MessageDeliveryException;
+import com.mynetrunner.backend.model.Message;
+import com.mynetrunner.backend.util.ContentCompressor;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+
+/**
+ * Write-behind buffer for the rows of messages stored for offline receivers.
+ *
+ * Inserts are queued here instead of hitting the database on the STOMP
+ * inbound thread. A single flusher thread drains the queue when either
+ * batch-size messages are waiting or flush-interval has passed since the
+ * first one arrived, and writes them as one JDBC batch in one transaction.
+ * Rows only leave the table through the inbox drain and the reaper, so
+ * nothing is ever deleted from here.
+ *
+ * A batch that fails to flush for a reason that may pass, such as a lost
+ * connection or a lock timeout, is retried with exponential backoff until it
+ * goes through. While the database stays down the queue fills up and offers
+ * start failing, which pushes back on senders. Any other failure means the
+ * database refuses some row, which no retry would change: the batch is split
+ * in halves until each refused row is on its own, the rest is written, and
+ * each refused row is dead-lettered, that is logged to the .dead-letter
+ * logger without its content, counted and dropped.
+ * On shutdown a flush in progress is allowed to finish and whatever is
+ * still queued is written once more before the context closes.
+ *
+ * Listeners hear which receivers got new rows once they are committed, so a
+ * receiver who came online while their messages were still queued here
+ * gets them drained instead of left in the table until they reconnect.
+ * They are called on their own thread, so a slow listener never holds up
+ * the next flush; receivers that pile up meanwhile go out together.
+ */
+@Component
+public class MessageWriteBehindQueue {
+
+    private static final Logger log = LoggerFactory.getLogger(MessageWriteBehindQueue.class);
+
+    private static final Logger deadLetterLog =
+        LoggerFactory.getLogger(MessageWriteBehindQueue.class.getName() + ".dead-letter");
+
+    private static final String INSERT_SQL =
+        "INSERT INTO messages (id, sender_id, receiver_id, content, timestamp, delivered, expires_at) "
+            + "VALUES (?, ?, ?, ?, ?, ?, ?)";
+
+    private static final String NEXT_ID_BLOCK_SQL = "SELECT nextval('" + Message.SEQUENCE_NAME + "')";
+
+    // Longest the flusher waits on the queue before checking whether to stop
+    private static final long STOP_CHECK_NANOS = TimeUnit.MILLISECONDS.toNanos(100);
+
+    /**
+     * Notified on the notifier thread after stored messages are committed
+     */
+    public interface FlushListener {
+        void messagesStored(Set<Long> receiverIds);
+    }
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    // Plain JDBC bypasses the entity's converter, so encode content here too
+    @Autowired
+    private ContentCompressor contentCompressor;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Value("${messaging.write-behind.capacity:10000}")
+    private int capacity;
+
+    @Value("${messaging.write-behind.batch-size:500}")
+    private int batchSize;
+
+    @Value("${messaging.write-behind.flush-interval-ms:50}")
+    private long flushIntervalMs;
+
+    @Value("${messaging.write-behind.offer-timeout-ms:200}")
+    private long offerTimeoutMs;
+
+    // First retry delay after a failed flush; doubles up to max-retry-backoff
+    @Value("${messaging.write-behind.retry-backoff-ms:100}")
+    private long retryBackoffMs;
+
+    @Value("${messaging.write-behind.max-retry-backoff-ms:5000}")
+    private long maxRetryBackoffMs;
+
+    @Value("${messaging.write-behind.shutdown-timeout-ms:10000}")
+    private long shutdownTimeoutMs;
+
+    private BlockingQueue<Message> queue;
+
+    private Thread flusher;
+
+    private volatile boolean running;
+
+    // Taken off the queue by the flusher but not written yet; only touched
+    // by the flusher, and by stop() once the flusher has exited
+    private final List<Message> batch = new ArrayList<>();
+
+    private final List<FlushListener> listeners = new CopyOnWriteArrayList<>();
+
+    private ExecutorService notifier;
+
+    // Receivers with committed rows that listeners have not heard about yet
+    private final Set<Long> unnotified = ConcurrentHashMap.newKeySet();
+
+    // Whether a notification task is queued or about to read unnotified
+    private final AtomicBoolean notificationScheduled = new AtomicBoolean();
+
+    private Counter flushFailures;
+
+    private Counter deadLettered;
+
+    // Ids left in the block last taken from messages_seq; guarded by this
+    private long nextId;
+
+    private long lastId = -1;
+
+    public void addListener(FlushListener listener) {
+        listeners.add(listener);
+    }
+
+    @PostConstruct
+    public void start() {
+        flushFailures = Counter.builder("messaging.write-behind.flush.failures")
+            .description("Write-behind flushes that failed and were retried")
+            .register(meterRegistry);
+        deadLettered = Counter.builder("messaging.write-behind.dead-lettered")
+            .description("Queued messages the database refused, logged and dropped")
+            .register(meterRegistry);
+        queue = new ArrayBlockingQueue<>(capacity);
+        notifier = Executors.newSingleThreadExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "message-write-behind-notify");
+            thread.setDaemon(true);
+            return thread;
+        });
+        running = true;
+        flusher = new Thread(this::runFlushLoop, "message-write-behind");
+        flusher.setDaemon(true);
+        flusher.start();
+    }
+
+    @PreDestroy
+    public void stop() throws InterruptedException {
+        // Not interrupted: the flusher finishes the batch it is writing and
+        // notices the flag at its next poll or retry
+        running = false;
+        flusher.join(shutdownTimeoutMs);
+
+        List<Message> remaining = new ArrayList<>();
+        if (flusher.isAlive()) {
+            // Stuck in the database; its batch is still its own
+            log.warn("Write-behind flusher did not finish within {} ms", shutdownTimeoutMs);
+            flusher.interrupt();
+        } else {
+            remaining.addAll(batch);
+        }
+        queue.drainTo(remaining);
+        if (!remaining.isEmpty()) {
+            try {
+                writeIsolatingRefusedRows(remaining, remaining.size());
+            } catch (RuntimeException e) {
+                log.error("Could not write {} queued messages before shutdown", remaining.size(), e);
+            }
+        }
+
+        // Listeners still hear about the last rows
+        notifier.shutdown();
+        if (!notifier.awaitTermination(shutdownTimeoutMs, TimeUnit.MILLISECONDS)) {
+            log.warn("Write-behind listeners did not finish within {} ms", shutdownTimeoutMs);
+        }
+    }
+
+    /**
+     * Queue a message for insertion. Blocks for at most offer-timeout when
+     * the queue is full and then fails, pushing back on the sender.
+     */
+    public void enqueueInsert(Message message) {
+        if (!running) {
+            throw new MessageDeliveryException("Server is shutting down, please retry");
+        }
+        try {
+            if (!queue.offer(message, offerTimeoutMs, TimeUnit.MILLISECONDS)) {
+                throw new MessageDeliveryException("Message queue is full, please retry");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new MessageDeliveryException("Interrupted while queueing message");
+        }
+    }
+
+    /**
+     * Insert messages right away, bypassing the queue, as one JDBC batch in
+     * a single transaction. Ids are set on the messages when this returns.
+     */
+    public void insertNow(List<Message> messages) {
+        flush(messages);
+    }
+
+    public int getQueueDepth() {
+        return queue.size();
+    }
+
+    private void runFlushLoop() {
+        try {
+            while (running) {
+                Message first = queue.poll(STOP_CHECK_NANOS, TimeUnit.NANOSECONDS);
+                if (first == null) {
+                    continue;
+                }
+                batch.add(first);
+
+                // Keep collecting until the batch is full or the interval is up
+                long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(flushIntervalMs);
+                while (batch.size() < batchSize && running) {
+                    queue.drainTo(batch, batchSize - batch.size());
+                    long remaining = deadline - System.nanoTime();
+                    if (batch.size() >= batchSize || remaining <= 0) {
+                        break;
+                    }
+                    Message next = queue.poll(Math.min(remaining, STOP_CHECK_NANOS), TimeUnit.NANOSECONDS);
+                    if (next != null) {
+                        batch.add(next);
+                    }
+                }
+
+                flushWithRetry();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Flush the current batch, backing off between attempts while the
+     * failure may pass, until it is written or the queue is stopped; stop()
+     * then makes the last attempt
+     */
+    private void flushWithRetry() throws InterruptedException {
+        long backoffMs = retryBackoffMs;
+        while (true) {
+            try {
+                writeIsolatingRefusedRows(batch, batch.size());
+                return;
+            } catch (RuntimeException e) {
+                // Only transient failures get here, and batch holds what is left
+                flushFailures.increment();
+                log.error("Failed to flush {} queued messages, retrying in {} ms", batch.size(), backoffMs, e);
+            }
+            if (!running) {
+                return;
+            }
+            Thread.sleep(backoffMs);
+            backoffMs = Math.min(backoffMs * 2, maxRetryBackoffMs);
+        }
+    }
+
+    /**
+     * Write the first count rows, splitting them in halves around rows the
+     * database refuses until each refused row is alone and dead-lettered.
+     * Rows leave the front of the list once written or dead-lettered, so a
+     * transient failure, which is thrown, leaves exactly what is unwritten.
+     */
+    private void writeIsolatingRefusedRows(List<Message> rows, int count) {
+        List<Message> head = rows.subList(0, count);
+        try {
+            flush(head);
+            head.clear();
+        } catch (RuntimeException e) {
+            if (isTransient(e)) {
+                throw e;
+            }
+            if (count == 1) {
+                deadLetter(rows.remove(0), e);
+                return;
+            }
+            int half = count / 2;
+            writeIsolatingRefusedRows(rows, half);
+            writeIsolatingRefusedRows(rows, count - half);
+        }
+    }
+
+    private static boolean isTransient(RuntimeException e) {
+        return e instanceof TransientDataAccessException
+            || e instanceof RecoverableDataAccessException
+            || e instanceof DataAccessResourceFailureException
+            || e instanceof CannotCreateTransactionException;
+    }
+
+    private void deadLetter(Message message, RuntimeException e) {
+        deadLettered.increment();
+        deadLetterLog.error("Dropped message from {} to {} sent at {}: {}", message.getSenderId(),
+            message.getReceiverId(), message.getTimestamp(), NestedExceptionUtils.getMostSpecificCause(e).getMessage());
+    }
+
+    private void flush(List<Message> messages) {
+        transactionTemplate.executeWithoutResult(status -> insertBatch(messages));
+        notifyStored(messages);
+    }
+
+    private void notifyStored(List<Message> messages) {
+        if (messages.isEmpty() || listeners.isEmpty()) {
+            return;
+        }
+
+        for (Message message : messages) {
+            unnotified.add(message.getReceiverId());
+        }
+        if (notificationScheduled.compareAndSet(false, true)) {
+            try {
+                notifier.execute(this::notifyListeners);
+            } catch (RejectedExecutionException e) {
+                // A flusher that outlived stop(); its receivers drain on their next subscribe
+                log.warn("Not notifying listeners of {} receivers after shutdown", unnotified.size());
+            }
+        }
+    }
+
+    private void notifyListeners() {
+        // Cleared before reading, so receivers added from here on schedule another run
+        notificationScheduled.set(false);
+        Set<Long> receiverIds = new LinkedHashSet<>();
+        for (Iterator<Long> pending = unnotified.iterator(); pending.hasNext(); ) {
+            receiverIds.add(pending.next());
+            pending.remove();
+        }
+        if (receiverIds.isEmpty()) {
+            return;
+        }
+
+        for (FlushListener listener : listeners) {
+            // The rows are committed; a failing listener must not keep the others from hearing
+            try {
+                listener.messagesStored(receiverIds);
+            } catch (RuntimeException e) {
+                log.warn("Flush listener failed for {} receivers", receiverIds.size(), e);
+            }
+        }
+    }
+
+    private void insertBatch(List<Message> inserts) {
+        if (inserts.isEmpty()) {
+            return;
+        }
+
+        // Ids come from pooled sequence blocks rather than the database default;
+        // with no generated keys to return the driver is free to rewrite the batch
+        for (Message message : inserts) {
+            message.setId(allocateId());
+        }
+
+        jdbcTemplate.batchUpdate(INSERT_SQL, new BatchPreparedStatementSetter() {
+            @Override
+            public void setValues(PreparedStatement ps, int i) throws SQLException {
+                Message message = inserts.get(i);
+                ps.setLong(1, message.getId());
+                ps.setLong(2, message.getSenderId());
+                ps.setLong(3, message.getReceiverId());
+                ps.setString(4, contentCompressor.compress(message.getContent()));
+                ps.setTimestamp(5, Timestamp.valueOf(message.getTimestamp()));
+                ps.setBoolean(6, message.getDelivered());
+                ps.setTimestamp(7, Timestamp.valueOf(message.getExpiresAt()));
+            }
+
+            @Override
+            public int getBatchSize() {
+                return inserts.size();
+            }
+        });
+    }
+
+    /**
+     * Next message id, using the same pooled blocks as Hibernate: a value v
+     * from messages_seq stands for the ids v - ALLOCATION_SIZE + 1 .. v.
+     */
+    private synchronized long allocateId() {
+        if (nextId > lastId) {
+            Long hi = jdbcTemplate.queryForObject(NEXT_ID_BLOCK_SQL, Long.class);
+            lastId = hi;
+            // A fresh sequence starts at 1, whose block would reach below 1
+            nextId = Math.max(1, hi - Message.ALLOCATION_SIZE + 1);
+        }
+        return nextId++;
+    }
+}
@@ -0,0 +1,140 @@
+package com.mynetrunner.backend.service;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+import org.springframework.stereotype.Component;
+
+import com.mynetrunner.backend.exception.TooManyRequestsException;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+
+/**
+ * Runs BCrypt on a bounded pool sized to the CPUs, so a login burst cannot
+ * occupy every HTTP worker with hashing. Request threads wait for their
+ * result, but only as many as the pool plus its queue can hold; once the
+ * queue is full, callers fail right away with TooManyRequestsException.
+ */
+@Component
+public class PasswordHasher {
+
+    // $2a$10$... -> the cost is the number between the second and third '$'
+    private static final Pattern BCRYPT_COST = Pattern.compile("^\\$2[aby]?\\$(\\d\\d)\\$");
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    // BCrypt log rounds; existing hashes with another cost are rehashed on login
+    @Value("${security.password.bcrypt-strength:10}")
+    private int strength;
+
+    // 0 = one per processor
+    @Value("${security.password.threads:0}")
+    private int threads;
+
+    @Value("${security.password.queue-capacity:64}")
+    private int queueCapacity;
+
+    private BCryptPasswordEncoder encoder;
+
+    private ThreadPoolExecutor executor;
+
+    private Timer encodeTimer;
+
+    private Timer matchTimer;
+
+    private Counter rejected;
+
+    @PostConstruct
+    public void start() {
+        encoder = new BCryptPasswordEncoder(strength);
+        int count = threads > 0 ? threads : Runtime.getRuntime().availableProcessors();
+        AtomicInteger sequence = new AtomicInteger();
+        executor = new ThreadPoolExecutor(count, count, 0, TimeUnit.MILLISECONDS,
+            new ArrayBlockingQueue<>(queueCapacity),
+            runnable -> {
+                Thread thread = new Thread(runnable, "password-hash-" + sequence.getAndIncrement());
+                thread.setDaemon(true);
+                return thread;
+            });
+
+        Gauge.builder("auth.password.queue.depth", this, PasswordHasher::getQueueDepth)
+            .description("Password hashing tasks waiting for a thread")
+            .register(meterRegistry);
+        encodeTimer = Timer.builder("auth.password.hash")
+            .description("Time spent hashing or verifying a password")
+            .tag("operation", "encode")
+            .register(meterRegistry);
+        matchTimer = Timer.builder("auth.password.hash")
+            .description("Time spent hashing or verifying a password")
+            .tag("operation", "matches")
+            .register(meterRegistry);
+        rejected = Counter.builder("auth.password.rejected")
+            .description("Password hashing requests turned away because the queue was full")
+            .register(meterRegistry);
+    }
+
+    @PreDestroy
+    public void stop() {
+        executor.shutdownNow();
+    }
+
+    public String encode(String rawPassword) {
+        return submit(() -> encodeTimer.record(() -> encoder.encode(rawPassword)));
+    }
+
+    public boolean matches(String rawPassword, String passwordHash) {
+        return submit(() -> matchTimer.record(() -> encoder.matches(rawPassword, passwordHash)));
+    }
+
+    /**
+     * Whether the hash was made with a different cost than the configured one
+     */
+    public boolean needsRehash(String passwordHash) {
+        Matcher matcher = BCRYPT_COST.matcher(passwordHash);
+        return !matcher.find() || Integer.parseInt(matcher.group(1)) != strength;
+    }
+
+    public int getQueueDepth() {
+        return executor.getQueue().size();
+    }
+
+    private <T> T submit(Callable<T> task) {
+        Future<T> future;
+        try {
+            future = executor.submit(task);
+        } catch (RejectedExecutionException e) {
+            rejected.increment();
+            throw new TooManyRequestsException("Too many login attempts in progress, please retry");
+        }
+
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            future.cancel(true);
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while hashing password", e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException runtime) {
+                throw runtime;
+            }
+            throw new IllegalStateException("Password hashing failed", e.getCause());
+        }
+    }
+}
@@ -0,0 +1,222 @@
+package com.mynetrunner.backend.service;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import org.springframework.context.event.EventListener;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.MessageChannel;
+import org.springframework.messaging.MessageHandler;
+import org.springframework.messaging.simp.broker.SimpleBrokerMessageHandler;
+import org.springframework.messaging.simp.stomp.StompCommand;
+import org.springframework.messaging.simp.stomp.StompHeaderAccessor;
+import org.springframework.messaging.simp.user.UserDestinationMessageHandler;
+import org.springframework.messaging.support.ExecutorChannelInterceptor;
+import org.springframework.stereotype.Service;
+import org.springframework.web.socket.messaging.SessionConnectEvent;
+import org.springframework.web.socket.messaging.SessionDisconnectEvent;
+
+/**
+ * Tracks which users currently have a live subscription to their
+ * /user/queue/messages destination.
+ *
+ * A SessionSubscribeEvent fires when the frame arrives, before the broker
+ * knows the subscription, and a message pushed in between is lost. So as
+ * an interceptor on the client inbound channel this counts a subscription
+ * only once UserDestinationMessageHandler has passed it to the broker,
+ * which registers it right away on the synchronous broker channel, and
+ * drops it once the broker has handled the UNSUBSCRIBE. Sessions come and
+ * go with the connect and disconnect events.
+ */
+@Service
+public class PresenceService implements ExecutorChannelInterceptor {
+
+    // Sent to with convertAndSendToUser(userId, USER_QUEUE, ...)
+    public static final String USER_QUEUE = "/queue/messages";
+
+    // What a client subscribes to for its own messages
+    public static final String USER_QUEUE_SUBSCRIPTION = "/user" + USER_QUEUE;
+
+    /**
+     * Notified when a user gains their first or loses their last local
+     * subscription, and when one of their sessions does
+     */
+    public interface PresenceListener {
+        default void userOnline(Long userId) {
+        }
+
+        default void userOffline(Long userId) {
+        }
+
+        default void sessionSubscribed(String sessionId, Long userId) {
+        }
+
+        default void sessionUnsubscribed(String sessionId, Long userId) {
+        }
+    }
+
+    // What adding or removing one subscription changed
+    private enum Change { NONE, SESSION, USER }
+
+    // sessionId -> (subscriptionId -> userId)
+    private final Map<String, Map<String, Long>> sessions = new ConcurrentHashMap<>();
+
+    // userId -> (sessionId -> live subscriptions of that session); only ever
+    // changed inside compute or computeIfPresent, so a count never outlives its entry
+    private final Map<Long, Map<String, Integer>> userSessions = new ConcurrentHashMap<>();
+
+    private final List<PresenceListener> listeners = new CopyOnWriteArrayList<>();
+
+    public void addListener(PresenceListener listener) {
+        listeners.add(listener);
+    }
+
+    /**
+     * Check whether a user can receive a message pushed right now
+     */
+    public boolean isOnline(Long userId) {
+        return userSessions.containsKey(userId);
+    }
+
+    /**
+     * Sessions on this node with a live subscription to the user's queue
+     */
+    public Set<String> getSessionIds(Long userId) {
+        Map<String, Integer> counts = userSessions.get(userId);
+        return counts != null ? Set.copyOf(counts.keySet()) : Set.of();
+    }
+
+    public int getConnectedSessionCount() {
+        return sessions.size();
+    }
+
+    public int getOnlineUserCount() {
+        return userSessions.size();
+    }
+
+    /**
+     * Users with at least one live subscription on this node
+     */
+    public Set<Long> getOnlineUserIds() {
+        return userSessions.keySet();
+    }
+
+    @EventListener
+    public void handleConnect(SessionConnectEvent event) {
+        String sessionId = StompHeaderAccessor.wrap(event.getMessage()).getSessionId();
+        if (sessionId != null) {
+            sessions.putIfAbsent(sessionId, new ConcurrentHashMap<>());
+        }
+    }
+
+    @Override
+    public void afterMessageHandled(Message<?> message, MessageChannel channel, MessageHandler handler,
+            Exception ex) {
+        if (ex != null) {
+            return;
+        }
+
+        StompHeaderAccessor accessor = StompHeaderAccessor.wrap(message);
+        if (accessor.getCommand() == StompCommand.SUBSCRIBE && handler instanceof UserDestinationMessageHandler) {
+            subscribed(accessor);
+        } else if (accessor.getCommand() == StompCommand.UNSUBSCRIBE && handler instanceof SimpleBrokerMessageHandler) {
+            unsubscribed(accessor);
+        }
+    }
+
+    private void subscribed(StompHeaderAccessor accessor) {
+        Long userId = userIdFromSubscription(accessor);
+        String sessionId = accessor.getSessionId();
+        if (userId == null || sessionId == null || accessor.getSubscriptionId() == null) {
+            return;
+        }
+
+        // Counted under the session's entry, so a disconnect releases exactly what
+        // was counted; the session is gone if it closed while its SUBSCRIBE was queued
+        Change[] change = { Change.NONE };
+        sessions.computeIfPresent(sessionId, (id, subscriptions) -> {
+            if (subscriptions.putIfAbsent(accessor.getSubscriptionId(), userId) == null) {
+                change[0] = addSubscription(userId, sessionId);
+            }
+            return subscriptions;
+        });
+
+        if (change[0] == Change.USER) {
+            listeners.forEach(listener -> listener.userOnline(userId));
+        }
+        if (change[0] != Change.NONE) {
+            listeners.forEach(listener -> listener.sessionSubscribed(sessionId, userId));
+        }
+    }
+
+    private void unsubscribed(StompHeaderAccessor accessor) {
+        Map<String, Long> subscriptions = accessor.getSessionId() != null
+            ? sessions.get(accessor.getSessionId())
+            : null;
+        if (subscriptions == null || accessor.getSubscriptionId() == null) {
+            return;
+        }
+
+        Long userId = subscriptions.remove(accessor.getSubscriptionId());
+        if (userId != null) {
+            release(userId, accessor.getSessionId());
+        }
+    }
+
+    @EventListener
+    public void handleDisconnect(SessionDisconnectEvent event) {
+        Map<String, Long> subscriptions = sessions.remove(event.getSessionId());
+        if (subscriptions == null) {
+            return;
+        }
+
+        subscriptions.values().forEach(userId -> release(userId, event.getSessionId()));
+    }
+
+    private Change addSubscription(Long userId, String sessionId) {
+        Change[] change = { Change.NONE };
+        userSessions.compute(userId, (id, counts) -> {
+            Map<String, Integer> updated = counts != null ? counts : new ConcurrentHashMap<>();
+            if (updated.merge(sessionId, 1, Integer::sum) == 1) {
+                change[0] = counts == null ? Change.USER : Change.SESSION;
+            }
+            return updated;
+        });
+        return change[0];
+    }
+
+    private void release(Long userId, String sessionId) {
+        Change[] change = { Change.NONE };
+        userSessions.computeIfPresent(userId, (id, counts) -> {
+            if (counts.computeIfPresent(sessionId, (session, count) -> count > 1 ? count - 1 : null) == null) {
+                change[0] = counts.isEmpty() ? Change.USER : Change.SESSION;
+            }
+            return counts.isEmpty() ? null : counts;
+        });
+
+        if (change[0] != Change.NONE) {
+            listeners.forEach(listener -> listener.sessionUnsubscribed(sessionId, userId));
+        }
+        if (change[0] == Change.USER) {
+            listeners.forEach(listener -> listener.userOffline(userId));
+        }
+    }
+
+    /**
+     * The user id of a subscription to /user/queue/messages, or null
+     */
+    public static Long userIdFromSubscription(StompHeaderAccessor accessor) {
+        if (!USER_QUEUE_SUBSCRIPTION.equals(accessor.getDestination()) || accessor.getUser() == null) {
+            return null;
+        }
+
+        try {
+            return Long.valueOf(accessor.getUser().getName());
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+}
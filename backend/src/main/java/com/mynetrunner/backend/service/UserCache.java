@@ -0,0 +1,119 @@
+package com.mynetrunner.backend.service;
+
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import com.github.benmanes.caffeine.cache.CacheLoader;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
+import com.github.benmanes.caffeine.cache.LoadingCache;
+import com.mynetrunner.backend.model.User;
+import com.mynetrunner.backend.repository.UserRepository;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import jakarta.annotation.PostConstruct;
+
+/**
+ * Bounded in-memory id -> username cache in front of UserRepository.
+ * Unknown ids are cached as empty too, so they must be invalidated when
+ * a user is registered. A miss also expires after negative-ttl, since a
+ * user registered through another node is never invalidated here; known
+ * users stay until evicted by size (Caffeine W-TinyLFU).
+ */
+@Service
+public class UserCache {
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Value("${users.cache.maximum-size:100000}")
+    private long maximumSize;
+
+    // How long an unknown id is remembered as unknown
+    @Value("${users.cache.negative-ttl-ms:30000}")
+    private long negativeTtlMs;
+
+    private LoadingCache<Long, Optional<String>> usernames;
+
+    @PostConstruct
+    public void init() {
+        usernames = Caffeine.newBuilder()
+            .maximumSize(maximumSize)
+            .expireAfter(new Expiry<Long, Optional<String>>() {
+                @Override
+                public long expireAfterCreate(Long id, Optional<String> username, long currentTime) {
+                    return username.isPresent() ? Long.MAX_VALUE : TimeUnit.MILLISECONDS.toNanos(negativeTtlMs);
+                }
+
+                @Override
+                public long expireAfterUpdate(Long id, Optional<String> username, long currentTime,
+                        long currentDuration) {
+                    return expireAfterCreate(id, username, currentTime);
+                }
+
+                @Override
+                public long expireAfterRead(Long id, Optional<String> username, long currentTime,
+                        long currentDuration) {
+                    return currentDuration;
+                }
+            })
+            .recordStats()
+            .build(new CacheLoader<Long, Optional<String>>() {
+                @Override
+                public Optional<String> load(Long id) {
+                    return userRepository.findById(id).map(User::getUsername);
+                }
+
+                // Bulk lookups load all their misses with one query
+                @Override
+                public Map<Long, Optional<String>> loadAll(Set<? extends Long> ids) {
+                    Map<Long, Optional<String>> result = new HashMap<>();
+                    ids.forEach(id -> result.put(id, Optional.empty()));
+                    userRepository.findAllById(List.copyOf(ids)).forEach(user ->
+                        result.put(user.getId(), Optional.of(user.getUsername())));
+                    return result;
+                }
+            });
+
+        // Exposes cache.gets{result=hit|miss}, cache.evictions and cache.size
+        CaffeineCacheMetrics.monitor(meterRegistry, usernames, "users");
+    }
+
+    /**
+     * Look up a username by id, hitting the database only on a cache miss
+     */
+    public Optional<String> findUsername(Long userId) {
+        return usernames.get(userId);
+    }
+
+    /**
+     * Look up many usernames at once; all cache misses are loaded together
+     */
+    public Map<Long, Optional<String>> findUsernames(Collection<Long> userIds) {
+        return usernames.getAll(userIds);
+    }
+
+    public boolean exists(Long userId) {
+        return findUsername(userId).isPresent();
+    }
+
+    /**
+     * Drop any cached entry for this id (including a cached "not found")
+     */
+    public void invalidate(Long userId) {
+        usernames.invalidate(userId);
+    }
+}
@@ -0,0 +1,147 @@
+package com.mynetrunner.backend.service;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Limit;
+import org.springframework.stereotype.Service;
+import org.springframework.util.DigestUtils;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.mynetrunner.backend.dto.UserInfo;
+import com.mynetrunner.backend.dto.UserPage;
+import com.mynetrunner.backend.repository.UserRepository;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import jakarta.annotation.PostConstruct;
+
+/**
+ * In-memory snapshot of the user directory, served in keyset pages ordered
+ * by id.
+ *
+ * New users get the highest id, so a registration can only change the last
+ * page of the listings whose prefix the new username matches; register drops
+ * just those pages and every other page keeps its cache entry and ETag. Each
+ * page carries an ETag derived from its content, which lets clients
+ * revalidate without the database being queried while the page is cached.
+ * Registrations on other nodes are picked up when the cached page expires.
+ */
+@Service
+public class UserDirectory {
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Value("${users.directory.page-size:100}")
+    private int defaultPageSize;
+
+    @Value("${users.directory.max-page-size:500}")
+    private int maxPageSize;
+
+    @Value("${users.directory.cache-size:1000}")
+    private long cacheSize;
+
+    @Value("${users.directory.ttl-seconds:60}")
+    private long ttlSeconds;
+
+    // Bumped by every registration, to catch ones that overlap a page load
+    private final AtomicLong registrations = new AtomicLong();
+
+    private Cache<PageKey, Page> pages;
+
+    private record PageKey(long afterId, int limit, String prefix) {
+    }
+
+    /**
+     * A directory page and the ETag of its JSON representation
+     */
+    public record Page(UserPage body, String etag) {
+    }
+
+    @PostConstruct
+    public void init() {
+        pages = Caffeine.newBuilder()
+            .maximumSize(cacheSize)
+            .expireAfterWrite(Duration.ofSeconds(ttlSeconds))
+            .recordStats()
+            .build();
+
+        CaffeineCacheMetrics.monitor(meterRegistry, pages, "users.directory");
+    }
+
+    /**
+     * Users with id > afterId, optionally restricted to a username prefix.
+     * A null or out of range limit falls back to the configured page size.
+     */
+    public Page getPage(Long afterId, Integer limit, String prefix) {
+        int size = limit == null || limit < 1 ? defaultPageSize : Math.min(limit, maxPageSize);
+        String normalizedPrefix = prefix == null || prefix.isBlank() ? null : prefix;
+        PageKey key = new PageKey(afterId == null ? 0 : afterId, size, normalizedPrefix);
+        Page page = pages.getIfPresent(key);
+        if (page != null) {
+            return page;
+        }
+
+        long registrationsBefore = registrations.get();
+        page = load(key);
+        pages.put(key, page);
+        // A registration during the load may have dropped the tail pages before this one was cached
+        if (isTail(page) && registrations.get() != registrationsBefore) {
+            pages.asMap().remove(key, page);
+        }
+        return page;
+    }
+
+    /**
+     * Drop the cached last pages a newly registered user belongs on; called
+     * after the user is committed
+     */
+    public void invalidate(String username) {
+        registrations.incrementAndGet();
+        pages.asMap().entrySet().removeIf(entry -> isTail(entry.getValue())
+            && (entry.getKey().prefix() == null || username.startsWith(entry.getKey().prefix())));
+    }
+
+    private static boolean isTail(Page page) {
+        return page.body().getNextCursor() == null;
+    }
+
+    private Page load(PageKey key) {
+        // Fetch one extra row to know whether there is a next page
+        Limit limit = Limit.of(key.limit() + 1);
+        List<UserInfo> users = key.prefix() == null
+            ? userRepository.findDirectoryPage(key.afterId(), limit)
+            : userRepository.findDirectoryPageByPrefix(likePrefix(key.prefix()), key.afterId(), limit);
+
+        Long nextCursor = null;
+        if (users.size() > key.limit()) {
+            users = List.copyOf(users.subList(0, key.limit()));
+            nextCursor = users.get(users.size() - 1).getId();
+        }
+
+        UserPage body = new UserPage(users, nextCursor);
+        return new Page(body, etagOf(body));
+    }
+
+    private static String likePrefix(String prefix) {
+        return prefix.replace("\\", "\\\\").replace("%", "\\%").replace("_", "\\_") + "%";
+    }
+
+    private static String etagOf(UserPage page) {
+        StringBuilder content = new StringBuilder();
+        for (UserInfo user : page.getUsers()) {
+            content.append(user.getId()).append(':').append(user.getUsername()).append('\n');
+        }
+        content.append(page.getNextCursor());
+        return "W/\"" + DigestUtils.md5DigestAsHex(content.toString().getBytes(StandardCharsets.UTF_8)) + "\"";
+    }
+}
@@ -1,11 +1,14 @@
 package com.mynetrunner.backend.service;
 
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+import org.springframework.dao.DataIntegrityViolationException;
 import org.springframework.stereotype.Service;
 
 import com.mynetrunner.backend.dto.AuthResponse;
 import com.mynetrunner.backend.exception.InvalidCredentialsException;
+import com.mynetrunner.backend.exception.TooManyRequestsException;
 import com.mynetrunner.backend.exception.UserAlreadyExistsException;
 import com.mynetrunner.backend.model.User;
 import com.mynetrunner.backend.repository.UserRepository;
@@ -13,26 +16,51 @@ import com.mynetrunner.backend.util.JwtUtil;
 @Service
 public class UserService {
     
+    private static final Logger log = LoggerFactory.getLogger(UserService.class);
+    
     @Autowired
     private UserRepository userRepository;
     
     @Autowired
     private JwtUtil jwtUtil;
     
-    private BCryptPasswordEncoder passwordEncoder = new BCryptPasswordEncoder();
+    @Autowired
+    private UserCache userCache;
+    
+    @Autowired
+    private PasswordHasher passwordHasher;
+    
+    @Autowired
+    private UserDirectory userDirectory;
+    
+    @Autowired
+    private UsernameRegistry usernameRegistry;
     
  public AuthResponse register(String username, String password) {
-    // Check if user already exists
-    if (userRepository.findByUsername(username).isPresent()) {
+    // Turn away names we know are taken before paying for a hash
+    if (usernameRegistry.isTaken(username)) {
         throw new UserAlreadyExistsException("Username '" + username + "' is already taken");
     }
 
-    // Create new user
-    String hashedPassword = passwordEncoder.encode(password);
+    // Create new user; the unique constraint on username has the final say
+    String hashedPassword = passwordHasher.encode(password);
     User user = new User();
     user.setUsername(username);
     user.setPasswordHash(hashedPassword);
-    userRepository.save(user);
+    try {
+        userRepository.saveAndFlush(user);
+    } catch (DataIntegrityViolationException e) {
+        // Lost a race with a concurrent registration, possibly on another node
+        if (userRepository.existsByUsername(username)) {
+            throw new UserAlreadyExistsException("Username '" + username + "' is already taken");
+        }
+        throw e;
+    }
+    usernameRegistry.add(username);
+
+    // The new id may have been cached as unknown before registration
+    userCache.invalidate(user.getId());
+    userDirectory.invalidate(username);
 
     // Generate JWT token
     String token = jwtUtil.generateToken(username);
@@ -46,13 +74,35 @@ public class UserService {
             .orElseThrow(() -> new InvalidCredentialsException("Invalid username or password"));
     
     // Verify password
-    if (!passwordEncoder.matches(password, user.getPasswordHash())) {
+    if (!passwordHasher.matches(password, user.getPasswordHash())) {
         throw new InvalidCredentialsException("Invalid username or password");
     }
+
+    // Bring the stored hash up to the configured cost while we have the password
+    if (passwordHasher.needsRehash(user.getPasswordHash())) {
+        rehash(user, password);
+    }
     
     // Generate JWT token
     String token = jwtUtil.generateToken(username);
     
     return new AuthResponse(token, username, "Login successful");
     }
+    
+    /**
+     * Whether the username can still be registered
+     */
+    public boolean isUsernameAvailable(String username) {
+        return !usernameRegistry.isTaken(username);
+    }
+    
+    private void rehash(User user, String password) {
+        try {
+            user.setPasswordHash(passwordHasher.encode(password));
+            userRepository.save(user);
+        } catch (TooManyRequestsException e) {
+            // Not worth failing the login over; try again next time
+            log.debug("Skipped rehash for {}: {}", user.getUsername(), e.getMessage());
+        }
+    }
 }
\ No newline at end of file
@@ -0,0 +1,121 @@
+package com.mynetrunner.backend.service;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+
+import com.mynetrunner.backend.repository.UserRepository;
+import com.mynetrunner.backend.util.BloomFilter;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+
+/**
+ * Answers "is this username taken?" from a Bloom filter of every username,
+ * so most free names are confirmed without a database query. Only names
+ * the filter might contain are checked with existsByUsername.
+ *
+ * The filter is loaded once at startup and then fed by local registrations.
+ * Names registered on other nodes are missing from it, which only means
+ * they reach the insert and are rejected by the unique constraint there.
+ */
+@Service
+public class UsernameRegistry {
+
+    private static final Logger log = LoggerFactory.getLogger(UsernameRegistry.class);
+
+    private static final int LOAD_BATCH_SIZE = 10_000;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Value("${users.username-filter.expected-insertions:1000000}")
+    private long expectedInsertions;
+
+    @Value("${users.username-filter.false-positive-probability:0.01}")
+    private double falsePositiveProbability;
+
+    // Null until loaded; until then every lookup goes to the database
+    private volatile BloomFilter filter;
+
+    private Counter filteredOut;
+
+    private Counter falsePositives;
+
+    @PostConstruct
+    public void init() {
+        filteredOut = Counter.builder("users.username.filter")
+            .description("Username lookups answered by the Bloom filter without a query")
+            .tag("result", "absent")
+            .register(meterRegistry);
+        falsePositives = Counter.builder("users.username.filter")
+            .description("Username lookups the Bloom filter passed on that turned out to be free")
+            .tag("result", "false_positive")
+            .register(meterRegistry);
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void load() {
+        Long count = jdbcTemplate.queryForObject("SELECT COUNT(*) FROM users", Long.class);
+        // Leave room to grow so the false positive rate holds until the next restart
+        BloomFilter loaded = new BloomFilter(Math.max(expectedInsertions, 2 * (count == null ? 0 : count)),
+            falsePositiveProbability);
+
+        // Keyset batches keep memory bounded however many users there are
+        long[] afterId = { 0 };
+        int read;
+        do {
+            read = jdbcTemplate.query("SELECT id, username FROM users WHERE id > ? ORDER BY id LIMIT ?", rs -> {
+                int rows = 0;
+                while (rs.next()) {
+                    afterId[0] = rs.getLong(1);
+                    loaded.put(rs.getString(2));
+                    rows++;
+                }
+                return rows;
+            }, afterId[0], LOAD_BATCH_SIZE);
+        } while (read == LOAD_BATCH_SIZE);
+        filter = loaded;
+        log.info("Loaded {} usernames into a {} KiB Bloom filter ({} hashes)",
+            count, loaded.getBitCount() / 8 / 1024, loaded.getHashCount());
+    }
+
+    /**
+     * Whether the username is already registered
+     */
+    public boolean isTaken(String username) {
+        BloomFilter current = filter;
+        if (current != null && !current.mightContain(username)) {
+            filteredOut.increment();
+            return false;
+        }
+
+        boolean taken = userRepository.existsByUsername(username);
+        if (!taken && current != null) {
+            falsePositives.increment();
+        }
+        return taken;
+    }
+
+    /**
+     * Record a username that now exists
+     */
+    public void add(String username) {
+        BloomFilter current = filter;
+        if (current != null) {
+            current.put(username);
+        }
+    }
+}
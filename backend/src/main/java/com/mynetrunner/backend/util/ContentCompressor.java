@@ -0,0 +1,101 @@
+package com.mynetrunner.backend.util;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import com.github.luben.zstd.Zstd;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+
+/**
+ * Storage encoding for message content. Content at or above the size
+ * threshold is Zstd-compressed and stored Base64-encoded behind a marker,
+ * as long as that comes out smaller than the plain text. Everything else,
+ * including all rows written before compression existed, is stored as is.
+ */
+@Component
+public class ContentCompressor {
+
+    // Control characters no real message starts with; plain content that
+    // does is escaped so it can never be mistaken for a compressed value
+    private static final String COMPRESSED_PREFIX = "\u0001z";
+
+    private static final String ESCAPED_PREFIX = "\u0001p";
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Value("${messaging.storage.compression.enabled:true}")
+    private boolean enabled;
+
+    // UTF-8 bytes below which content is never compressed
+    @Value("${messaging.storage.compression.threshold-bytes:512}")
+    private int thresholdBytes;
+
+    @Value("${messaging.storage.compression.level:3}")
+    private int level;
+
+    private DistributionSummary ratio;
+
+    private Counter savedBytes;
+
+    @PostConstruct
+    public void init() {
+        ratio = DistributionSummary.builder("messaging.storage.compression.ratio")
+            .description("Plain to stored size of message content above the compression threshold")
+            .register(meterRegistry);
+        savedBytes = Counter.builder("messaging.storage.compression.saved")
+            .description("Bytes of message content saved by compression")
+            .baseUnit("bytes")
+            .register(meterRegistry);
+    }
+
+    /**
+     * Encode content for the messages.content column
+     */
+    public String compress(String content) {
+        if (content == null) {
+            return null;
+        }
+
+        byte[] plain = content.getBytes(StandardCharsets.UTF_8);
+        if (enabled && plain.length >= thresholdBytes) {
+            String stored = COMPRESSED_PREFIX + Base64.getEncoder().encodeToString(Zstd.compress(plain, level));
+            // Base64 output is ASCII, so its length is its size in bytes
+            int storedBytes = Math.min(stored.length(), plain.length);
+            ratio.record(plain.length / (double) storedBytes);
+            if (stored.length() < plain.length) {
+                savedBytes.increment(plain.length - stored.length());
+                return stored;
+            }
+        }
+
+        return content.startsWith("\u0001") ? ESCAPED_PREFIX + content : content;
+    }
+
+    /**
+     * Decode a messages.content value written by compress, or before it existed
+     */
+    public String decompress(String stored) {
+        if (stored == null) {
+            return null;
+        }
+        if (stored.startsWith(ESCAPED_PREFIX)) {
+            return stored.substring(ESCAPED_PREFIX.length());
+        }
+        if (!stored.startsWith(COMPRESSED_PREFIX)) {
+            return stored;
+        }
+
+        byte[] packed = Base64.getDecoder().decode(stored.substring(COMPRESSED_PREFIX.length()));
+        byte[] plain = Zstd.decompress(packed, (int) Zstd.getFrameContentSize(packed));
+        return new String(plain, StandardCharsets.UTF_8);
+    }
+}
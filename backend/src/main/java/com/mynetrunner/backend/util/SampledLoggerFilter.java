@@ -0,0 +1,42 @@
+package com.mynetrunner.backend.util;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.slf4j.Marker;
+
+import ch.qos.logback.classic.Level;
+import ch.qos.logback.classic.Logger;
+import ch.qos.logback.classic.turbo.TurboFilter;
+import ch.qos.logback.core.spi.FilterReply;
+
+/**
+ * Logback turbo filter that lets through only the first of every
+ * sampleEvery events from one logger. Other loggers are not affected.
+ * Configured in logback-spring.xml.
+ */
+public class SampledLoggerFilter extends TurboFilter {
+
+    private final AtomicLong seen = new AtomicLong();
+
+    private String loggerName;
+
+    private int sampleEvery = 1;
+
+    @Override
+    public FilterReply decide(Marker marker, Logger logger, Level level, String format, Object[] params,
+            Throwable t) {
+        // A null format is an isXxxEnabled() check, not an event; don't count it
+        if (format == null || !logger.getName().equals(loggerName)) {
+            return FilterReply.NEUTRAL;
+        }
+        return seen.getAndIncrement() % sampleEvery == 0 ? FilterReply.NEUTRAL : FilterReply.DENY;
+    }
+
+    public void setLoggerName(String loggerName) {
+        this.loggerName = loggerName;
+    }
+
+    public void setSampleEvery(int sampleEvery) {
+        this.sampleEvery = Math.max(1, sampleEvery);
+    }
+}
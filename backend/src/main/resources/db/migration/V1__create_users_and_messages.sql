@@ -0,0 +1,18 @@
+-- Initial schema, matching what ddl-auto=update generated for User and Message
+
+CREATE TABLE IF NOT EXISTS users (
+    id            BIGINT GENERATED BY DEFAULT AS IDENTITY PRIMARY KEY,
+    username      VARCHAR(50)  NOT NULL UNIQUE,
+    password_hash VARCHAR(255) NOT NULL,
+    created_at    TIMESTAMP(6) NOT NULL
+);
+
+CREATE TABLE IF NOT EXISTS messages (
+    id          BIGINT GENERATED BY DEFAULT AS IDENTITY PRIMARY KEY,
+    sender_id   BIGINT       NOT NULL,
+    receiver_id BIGINT       NOT NULL,
+    content     TEXT         NOT NULL,
+    timestamp   TIMESTAMP(6) NOT NULL,
+    delivered   BOOLEAN      NOT NULL,
+    expires_at  TIMESTAMP(6) NOT NULL
+);
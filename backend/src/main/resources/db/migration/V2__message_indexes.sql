@@ -0,0 +1,15 @@
+-- Indexes for the messages hot paths. ddl-auto=update never created these,
+-- so existing tables have been relying on sequential scans.
+
+-- Pending inbox pages: WHERE receiver_id = ? AND delivered = false ORDER BY timestamp, id
+CREATE INDEX IF NOT EXISTS idx_messages_receiver_pending
+    ON messages (receiver_id, timestamp, id)
+    WHERE delivered = false;
+
+-- Expiry cleanup: WHERE expires_at < ?
+CREATE INDEX IF NOT EXISTS idx_messages_expires_at
+    ON messages (expires_at);
+
+-- Lookups by sender
+CREATE INDEX IF NOT EXISTS idx_messages_sender_id
+    ON messages (sender_id);
@@ -0,0 +1,5 @@
+-- Prefix search on the user directory: WHERE username LIKE 'abc%' ORDER BY id.
+-- The unique constraint index only serves LIKE under the C collation;
+-- text_pattern_ops makes the prefix range scan work under any locale.
+CREATE INDEX IF NOT EXISTS idx_users_username_prefix
+    ON users (username text_pattern_ops);
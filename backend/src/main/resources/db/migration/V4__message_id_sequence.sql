@@ -0,0 +1,13 @@
+-- Message ids move from IDENTITY to a sequence Hibernate allocates from in
+-- blocks of 50 (pooled optimizer), which lets it batch inserts. A value v
+-- taken from the sequence stands for the block (v - 49 .. v); the column
+-- default uses v itself, so plain INSERTs without an id never collide with
+-- a block handed out to the application.
+
+CREATE SEQUENCE IF NOT EXISTS messages_seq INCREMENT BY 50;
+
+-- Start above every existing id: the next block is (max + 51 .. max + 100)
+SELECT setval('messages_seq', (SELECT COALESCE(MAX(id), 0) + 50 FROM messages));
+
+ALTER TABLE messages ALTER COLUMN id DROP IDENTITY IF EXISTS;
+ALTER TABLE messages ALTER COLUMN id SET DEFAULT nextval('messages_seq');
@@ -0,0 +1,56 @@
+-- Partitioned storage mode (profile "partitioned"): rebuilds messages as a
+-- table range-partitioned by expires_at, one partition per day, so expiry
+-- can drop whole partitions instead of deleting rows.
+-- MessagePartitionManager keeps creating partitions ahead of time.
+
+ALTER TABLE messages RENAME TO messages_unpartitioned;
+DROP INDEX IF EXISTS idx_messages_receiver_pending;
+DROP INDEX IF EXISTS idx_messages_expires_at;
+DROP INDEX IF EXISTS idx_messages_sender_id;
+
+-- The partition key has to be part of the primary key
+CREATE TABLE messages (
+    id          BIGINT GENERATED BY DEFAULT AS IDENTITY,
+    sender_id   BIGINT       NOT NULL,
+    receiver_id BIGINT       NOT NULL,
+    content     TEXT         NOT NULL,
+    timestamp   TIMESTAMP(6) NOT NULL,
+    delivered   BOOLEAN      NOT NULL,
+    expires_at  TIMESTAMP(6) NOT NULL,
+    PRIMARY KEY (id, expires_at)
+) PARTITION BY RANGE (expires_at);
+
+CREATE INDEX idx_messages_receiver_pending
+    ON messages (receiver_id, timestamp, id)
+    WHERE delivered = false;
+CREATE INDEX idx_messages_expires_at ON messages (expires_at);
+CREATE INDEX idx_messages_sender_id ON messages (sender_id);
+
+-- Daily partitions from the oldest stored row up to 35 days out
+DO $$
+DECLARE
+    day DATE := LEAST(
+        (SELECT MIN(expires_at)::date FROM messages_unpartitioned),
+        CURRENT_DATE
+    );
+BEGIN
+    WHILE day < CURRENT_DATE + 35 LOOP
+        EXECUTE format(
+            'CREATE TABLE %I PARTITION OF messages FOR VALUES FROM (%L) TO (%L)',
+            'messages_p' || to_char(day, 'YYYYMMDD'), day, day + 1
+        );
+        day := day + 1;
+    END LOOP;
+END
+$$;
+
+INSERT INTO messages (id, sender_id, receiver_id, content, timestamp, delivered, expires_at)
+SELECT id, sender_id, receiver_id, content, timestamp, delivered, expires_at
+FROM messages_unpartitioned;
+
+SELECT setval(
+    pg_get_serial_sequence('messages', 'id'),
+    GREATEST((SELECT MAX(id) FROM messages), 1)
+);
+
+DROP TABLE messages_unpartitioned;
@@ -0,0 +1,12 @@
+-- V2_1 may run out of order after V4 and recreate messages with an IDENTITY
+-- id; put the partitioned table back on messages_seq (see V4).
+
+CREATE SEQUENCE IF NOT EXISTS messages_seq INCREMENT BY 50;
+
+SELECT setval('messages_seq', GREATEST(
+    (SELECT COALESCE(MAX(id), 0) + 50 FROM messages),
+    (SELECT last_value FROM messages_seq)
+));
+
+ALTER TABLE messages ALTER COLUMN id DROP IDENTITY IF EXISTS;
+ALTER TABLE messages ALTER COLUMN id SET DEFAULT nextval('messages_seq');
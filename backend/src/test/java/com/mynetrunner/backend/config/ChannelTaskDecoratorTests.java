@@ -0,0 +1,86 @@
+package com.mynetrunner.backend.config;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.core.task.TaskRejectedException;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+/**
+ * Runs a ChannelTaskDecorator on a one-thread pool with a one-slot queue
+ * and checks its gauges, including after the pool rejects a task.
+ */
+class ChannelTaskDecoratorTests {
+
+    private final MeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+    private final CountDownLatch release = new CountDownLatch(1);
+
+    private ThreadPoolTaskExecutor executor;
+
+    @BeforeEach
+    void setUp() {
+        ChannelTaskDecorator decorator = new ChannelTaskDecorator("inbound", meterRegistry);
+        executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(1);
+        executor.setMaxPoolSize(1);
+        executor.setQueueCapacity(1);
+        executor.setTaskDecorator(decorator);
+        executor.setRejectedExecutionHandler(decorator);
+        executor.initialize();
+    }
+
+    @AfterEach
+    void tearDown() {
+        release.countDown();
+        executor.shutdown();
+    }
+
+    @Test
+    void rejectedTasksDoNotStayQueued() throws Exception {
+        CountDownLatch started = new CountDownLatch(1);
+        executor.execute(() -> {
+            started.countDown();
+            await(release);
+        });
+        assertThat(started.await(2, TimeUnit.SECONDS)).isTrue();
+        executor.execute(() -> await(release));
+
+        for (int i = 0; i < 3; i++) {
+            assertThatThrownBy(() -> executor.execute(() -> { }))
+                .isInstanceOf(TaskRejectedException.class);
+        }
+
+        assertThat(gauge("websocket.channel.active")).isEqualTo(1);
+        assertThat(gauge("websocket.channel.queue.depth")).isEqualTo(1);
+        assertThat(meterRegistry.get("websocket.channel.rejected").counter().count()).isEqualTo(3);
+
+        // Not executor.shutdown(), which drops the queued task instead of running it
+        release.countDown();
+        executor.getThreadPoolExecutor().shutdown();
+        assertThat(executor.getThreadPoolExecutor().awaitTermination(2, TimeUnit.SECONDS)).isTrue();
+        assertThat(gauge("websocket.channel.active")).isZero();
+        assertThat(gauge("websocket.channel.queue.depth")).isZero();
+    }
+
+    private double gauge(String name) {
+        return meterRegistry.get(name).tag("channel", "inbound").gauge().value();
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
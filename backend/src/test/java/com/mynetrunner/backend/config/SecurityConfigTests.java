@@ -0,0 +1,84 @@
+package com.mynetrunner.backend.config;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.test.autoconfigure.actuate.observability.AutoConfigureObservability;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.context.SpringBootTest.WebEnvironment;
+import org.springframework.boot.test.web.server.LocalServerPort;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.TestPropertySource;
+
+/**
+ * Starts a backend node and calls the actuator over HTTP to check that only
+ * health is open and that metrics need the actuator account.
+ */
+@SpringBootTest(webEnvironment = WebEnvironment.RANDOM_PORT)
+@ActiveProfiles("test")
+// Test contexts leave metrics export off, and with it the prometheus endpoint
+@AutoConfigureObservability(tracing = false)
+@TestPropertySource(properties = {
+    "logging.level.root=WARN",
+    "spring.datasource.url=jdbc:h2:mem:security;MODE=PostgreSQL;DATABASE_TO_LOWER=TRUE;DB_CLOSE_DELAY=-1",
+    "spring.security.user.name=scraper",
+    "spring.security.user.password=scrape-secret"
+})
+class SecurityConfigTests {
+
+    private static HttpClient http;
+
+    private static String baseUrl;
+
+    @BeforeAll
+    static void setUp(@LocalServerPort int port) {
+        http = HttpClient.newHttpClient();
+        baseUrl = "http://localhost:" + port;
+    }
+
+    @Test
+    void healthIsOpen() throws Exception {
+        HttpResponse<String> health = get("/actuator/health", null);
+        // Reports DOWN (503) without a Redis server, but answers without credentials
+        assertThat(health.statusCode()).isIn(200, 503);
+        assertThat(health.body()).contains("\"status\"");
+    }
+
+    @Test
+    void metricsNeedTheActuatorAccount() throws Exception {
+        for (String path : new String[] { "/actuator/prometheus", "/actuator/metrics", "/actuator" }) {
+            HttpResponse<String> anonymous = get(path, null);
+            assertThat(anonymous.statusCode()).as(path).isEqualTo(401);
+            assertThat(anonymous.headers().firstValue("WWW-Authenticate")).as(path).isPresent();
+
+            assertThat(get(path, "scraper:wrong").statusCode()).as(path).isEqualTo(401);
+        }
+
+        HttpResponse<String> scraped = get("/actuator/prometheus", "scraper:scrape-secret");
+        assertThat(scraped.statusCode()).isEqualTo(200);
+        assertThat(scraped.body()).contains("inbox_ack_seconds");
+    }
+
+    @Test
+    void applicationEndpointsStayOpen() throws Exception {
+        assertThat(get("/api/health", null).statusCode()).isEqualTo(200);
+        assertThat(get("/api/users", null).statusCode()).isEqualTo(200);
+    }
+
+    private static HttpResponse<String> get(String path, String credentials) throws Exception {
+        HttpRequest.Builder request = HttpRequest.newBuilder(URI.create(baseUrl + path)).GET();
+        if (credentials != null) {
+            request.header("Authorization",
+                "Basic " + Base64.getEncoder().encodeToString(credentials.getBytes(StandardCharsets.UTF_8)));
+        }
+        return http.send(request.build(), HttpResponse.BodyHandlers.ofString());
+    }
+}
@@ -0,0 +1,211 @@
+package com.mynetrunner.backend.controller;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.context.SpringBootTest.WebEnvironment;
+import org.springframework.boot.test.web.server.LocalServerPort;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.TestPropertySource;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import com.mynetrunner.backend.service.PasswordHasher;
+
+import io.micrometer.core.instrument.MeterRegistry;
+
+/**
+ * Starts a backend node with cheap BCrypt settings and a one-thread,
+ * one-slot hashing pool, and calls the auth endpoints over HTTP to check
+ * that old hashes are brought up to the configured cost, that a full pool
+ * answers 429 and that a taken username answers 409 however it was taken.
+ */
+@SpringBootTest(webEnvironment = WebEnvironment.RANDOM_PORT)
+@ActiveProfiles("test")
+@TestPropertySource(properties = {
+    "logging.level.root=WARN",
+    "spring.datasource.url=jdbc:h2:mem:auth;MODE=PostgreSQL;DATABASE_TO_LOWER=TRUE;DB_CLOSE_DELAY=-1",
+    "security.password.bcrypt-strength=5",
+    "security.password.threads=1",
+    "security.password.queue-capacity=1"
+})
+class AuthControllerTests {
+
+    private static final String PASSWORD = "correct horse";
+
+    private static HttpClient http;
+
+    private static String baseUrl;
+
+    @Autowired
+    private JdbcTemplate jdbc;
+
+    @Autowired
+    private PasswordHasher hasher;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @BeforeAll
+    static void setUp(@LocalServerPort int port) {
+        http = HttpClient.newHttpClient();
+        baseUrl = "http://localhost:" + port;
+    }
+
+    @Test
+    void loginRehashesPasswordsStoredWithAnotherCost() throws Exception {
+        String oldHash = new BCryptPasswordEncoder(4).encode(PASSWORD);
+        insertUser("olduser", oldHash);
+
+        HttpResponse<String> response = login("olduser", PASSWORD);
+
+        assertThat(response.statusCode()).isEqualTo(200);
+        String storedHash = storedHash("olduser");
+        assertThat(storedHash).startsWith("$2a$05$");
+        assertThat(new BCryptPasswordEncoder().matches(PASSWORD, storedHash)).isTrue();
+
+        // Already at the configured cost, so the next login leaves it alone
+        assertThat(login("olduser", PASSWORD).statusCode()).isEqualTo(200);
+        assertThat(storedHash("olduser")).isEqualTo(storedHash);
+    }
+
+    @Test
+    void turnsLoginsAwayWhileHashingIsSaturated() throws Exception {
+        insertUser("busyuser", new BCryptPasswordEncoder(5).encode(PASSWORD));
+        ThreadPoolExecutor executor = (ThreadPoolExecutor) ReflectionTestUtils.getField(hasher, "executor");
+        double rejectedBefore = meterRegistry.get("auth.password.rejected").counter().count();
+
+        // One task on the only thread and one in the only queue slot
+        CountDownLatch release = new CountDownLatch(1);
+        CountDownLatch started = new CountDownLatch(1);
+        try {
+            executor.execute(() -> {
+                started.countDown();
+                await(release);
+            });
+            assertThat(started.await(5, TimeUnit.SECONDS)).isTrue();
+            executor.execute(() -> await(release));
+            assertThat(meterRegistry.get("auth.password.queue.depth").gauge().value()).isEqualTo(1);
+
+            HttpResponse<String> response = login("busyuser", PASSWORD);
+
+            assertThat(response.statusCode()).isEqualTo(429);
+            assertThat(response.headers().firstValue("Retry-After")).hasValue("1");
+            assertThat(response.body()).contains("Too many login attempts");
+            assertThat(meterRegistry.get("auth.password.rejected").counter().count()).isEqualTo(rejectedBefore + 1);
+        } finally {
+            release.countDown();
+        }
+
+        assertThat(login("busyuser", PASSWORD).statusCode()).isEqualTo(200);
+    }
+
+    @Test
+    void refusesAUsernameThatIsAlreadyRegistered() throws Exception {
+        double filteredBefore = filterCount("absent");
+        assertThat(availability("newcomer")).isTrue();
+        assertThat(filterCount("absent")).isEqualTo(filteredBefore + 1);
+
+        assertThat(register("newcomer").statusCode()).isEqualTo(201);
+
+        assertThat(availability("newcomer")).isFalse();
+        HttpResponse<String> duplicate = register("newcomer");
+        assertThat(duplicate.statusCode()).isEqualTo(409);
+        assertThat(duplicate.body()).contains("already taken");
+    }
+
+    @Test
+    void refusesAUsernameRegisteredBehindTheFiltersBack() throws Exception {
+        // As if registered on another node: the local filter never saw it
+        insertUser("elsewhere", new BCryptPasswordEncoder(5).encode(PASSWORD));
+
+        HttpResponse<String> duplicate = register("elsewhere");
+
+        assertThat(duplicate.statusCode()).isEqualTo(409);
+        assertThat(jdbc.queryForObject("SELECT COUNT(*) FROM users WHERE username = 'elsewhere'", Integer.class))
+            .isEqualTo(1);
+    }
+
+    @Test
+    void concurrentRegistrationsOfOneNameLeaveOneWinner() throws Exception {
+        // However the two interleave, the filter or the unique constraint stops one; the hashing pool fits both
+        CompletableFuture<HttpResponse<String>> first = CompletableFuture.supplyAsync(() -> registerUnchecked("racer"));
+        CompletableFuture<HttpResponse<String>> second = CompletableFuture.supplyAsync(() -> registerUnchecked("racer"));
+
+        List<Integer> statuses = List.of(first.get(10, TimeUnit.SECONDS).statusCode(),
+            second.get(10, TimeUnit.SECONDS).statusCode());
+
+        assertThat(statuses).containsExactlyInAnyOrder(201, 409);
+        assertThat(jdbc.queryForObject("SELECT COUNT(*) FROM users WHERE username = 'racer'", Integer.class))
+            .isEqualTo(1);
+    }
+
+    private double filterCount(String result) {
+        return meterRegistry.get("users.username.filter").tag("result", result).counter().count();
+    }
+
+    private static boolean availability(String username) throws Exception {
+        HttpRequest request = HttpRequest.newBuilder(
+            URI.create(baseUrl + "/api/auth/username-available?username=" + username)).GET().build();
+        HttpResponse<String> response = http.send(request, HttpResponse.BodyHandlers.ofString());
+        assertThat(response.statusCode()).isEqualTo(200);
+        return response.body().contains("\"available\":true");
+    }
+
+    private static HttpResponse<String> register(String username) throws Exception {
+        HttpRequest request = HttpRequest.newBuilder(URI.create(baseUrl + "/api/auth/register"))
+            .header("Content-Type", "application/json")
+            .POST(HttpRequest.BodyPublishers.ofString(
+                "{\"username\":\"" + username + "\",\"password\":\"Correct1horse\"}"))
+            .build();
+        return http.send(request, HttpResponse.BodyHandlers.ofString());
+    }
+
+    private static HttpResponse<String> registerUnchecked(String username) {
+        try {
+            return register(username);
+        } catch (Exception e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private void insertUser(String username, String passwordHash) {
+        jdbc.update("INSERT INTO users (username, password_hash, created_at) VALUES (?, ?, CURRENT_TIMESTAMP)",
+            username, passwordHash);
+    }
+
+    private String storedHash(String username) {
+        return jdbc.queryForObject("SELECT password_hash FROM users WHERE username = ?", String.class, username);
+    }
+
+    private static HttpResponse<String> login(String username, String password) throws Exception {
+        HttpRequest request = HttpRequest.newBuilder(URI.create(baseUrl + "/api/auth/login"))
+            .header("Content-Type", "application/json")
+            .POST(HttpRequest.BodyPublishers.ofString(
+                "{\"username\":\"" + username + "\",\"password\":\"" + password + "\"}"))
+            .build();
+        return http.send(request, HttpResponse.BodyHandlers.ofString());
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
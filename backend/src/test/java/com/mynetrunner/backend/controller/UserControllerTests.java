@@ -0,0 +1,115 @@
+package com.mynetrunner.backend.controller;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.context.SpringBootTest.WebEnvironment;
+import org.springframework.boot.test.web.server.LocalServerPort;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.TestPropertySource;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+/**
+ * Starts a backend node and pages through the user directory over HTTP to
+ * check that pages revalidate with 304 against their ETag, and that a
+ * registration only changes the last page of the listings it belongs to.
+ */
+@SpringBootTest(webEnvironment = WebEnvironment.RANDOM_PORT)
+@ActiveProfiles("test")
+@TestPropertySource(properties = {
+    "logging.level.root=WARN",
+    "spring.datasource.url=jdbc:h2:mem:directory;MODE=PostgreSQL;DATABASE_TO_LOWER=TRUE;DB_CLOSE_DELAY=-1",
+    "security.password.bcrypt-strength=4"
+})
+class UserControllerTests {
+
+    private static final ObjectMapper objectMapper = new ObjectMapper();
+
+    private static HttpClient http;
+
+    private static String baseUrl;
+
+    @BeforeAll
+    static void setUp(@Autowired JdbcTemplate jdbc, @LocalServerPort int port) {
+        for (String username : new String[] { "amber", "basil", "cedar", "birch" }) {
+            jdbc.update("INSERT INTO users (username, password_hash, created_at) VALUES (?, 'hash', CURRENT_TIMESTAMP)",
+                username);
+        }
+        http = HttpClient.newHttpClient();
+        baseUrl = "http://localhost:" + port;
+    }
+
+    @Test
+    void pagesRevalidateAgainstTheirEtag() throws Exception {
+        HttpResponse<String> first = get("/api/users?limit=2", null);
+        assertThat(first.statusCode()).isEqualTo(200);
+        String etag = first.headers().firstValue("ETag").orElseThrow();
+        JsonNode page = objectMapper.readTree(first.body());
+        assertThat(page.path("users")).hasSize(2);
+        assertThat(page.path("nextCursor").isNull()).isFalse();
+
+        HttpResponse<String> revalidated = get("/api/users?limit=2", etag);
+        assertThat(revalidated.statusCode()).isEqualTo(304);
+        assertThat(revalidated.body()).isEmpty();
+
+        // Another page has its own ETag
+        HttpResponse<String> second = get("/api/users?limit=2&after=" + page.path("nextCursor").asLong(), etag);
+        assertThat(second.statusCode()).isEqualTo(200);
+        assertThat(second.headers().firstValue("ETag")).isPresent().get().isNotEqualTo(etag);
+    }
+
+    @Test
+    void registrationOnlyChangesTheTailPagesItBelongsOn() throws Exception {
+        HttpResponse<String> head = get("/api/users?limit=2", null);
+        JsonNode headPage = objectMapper.readTree(head.body());
+        String headEtag = head.headers().firstValue("ETag").orElseThrow();
+        String tailPath = "/api/users?limit=500";
+        String tailEtag = get(tailPath, null).headers().firstValue("ETag").orElseThrow();
+        String bPath = "/api/users?limit=500&prefix=b";
+        String bEtag = get(bPath, null).headers().firstValue("ETag").orElseThrow();
+        String cPath = "/api/users?limit=500&prefix=c";
+        String cEtag = get(cPath, null).headers().firstValue("ETag").orElseThrow();
+        assertThat(headPage.path("nextCursor").isNull()).isFalse();
+
+        assertThat(register("bramble").statusCode()).isEqualTo(201);
+
+        // Full pages and listings the new name does not match are untouched
+        assertThat(get("/api/users?limit=2", headEtag).statusCode()).isEqualTo(304);
+        assertThat(get(cPath, cEtag).statusCode()).isEqualTo(304);
+
+        HttpResponse<String> tail = get(tailPath, tailEtag);
+        assertThat(tail.statusCode()).isEqualTo(200);
+        assertThat(tail.body()).contains("bramble");
+        HttpResponse<String> bPage = get(bPath, bEtag);
+        assertThat(bPage.statusCode()).isEqualTo(200);
+        assertThat(bPage.body()).contains("bramble");
+    }
+
+    private static HttpResponse<String> get(String path, String ifNoneMatch) throws Exception {
+        HttpRequest.Builder request = HttpRequest.newBuilder(URI.create(baseUrl + path)).GET();
+        if (ifNoneMatch != null) {
+            request.header("If-None-Match", ifNoneMatch);
+        }
+        return http.send(request.build(), HttpResponse.BodyHandlers.ofString());
+    }
+
+    private static HttpResponse<String> register(String username) throws Exception {
+        HttpRequest request = HttpRequest.newBuilder(URI.create(baseUrl + "/api/auth/register"))
+            .header("Content-Type", "application/json")
+            .POST(HttpRequest.BodyPublishers.ofString(
+                "{\"username\":\"" + username + "\",\"password\":\"Correct1horse\"}"))
+            .build();
+        return http.send(request, HttpResponse.BodyHandlers.ofString());
+    }
+}
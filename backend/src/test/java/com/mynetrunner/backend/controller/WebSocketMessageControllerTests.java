@@ -0,0 +1,458 @@
+package com.mynetrunner.backend.controller;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import java.lang.reflect.Type;
+import java.sql.Connection;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BooleanSupplier;
+
+import javax.sql.DataSource;
+
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.context.SpringBootTest.WebEnvironment;
+import org.springframework.boot.test.web.server.LocalServerPort;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.messaging.converter.ByteArrayMessageConverter;
+import org.springframework.messaging.converter.CompositeMessageConverter;
+import org.springframework.messaging.converter.MappingJackson2MessageConverter;
+import org.springframework.messaging.simp.stomp.StompFrameHandler;
+import org.springframework.messaging.simp.stomp.StompHeaders;
+import org.springframework.messaging.simp.stomp.StompSession;
+import org.springframework.messaging.simp.stomp.StompSessionHandlerAdapter;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.TestPropertySource;
+import org.springframework.util.MimeType;
+import org.springframework.web.socket.WebSocketHttpHeaders;
+import org.springframework.web.socket.client.standard.StandardWebSocketClient;
+import org.springframework.web.socket.messaging.WebSocketStompClient;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.cbor.databind.CBORMapper;
+import com.fasterxml.jackson.dataformat.smile.databind.SmileMapper;
+import com.mynetrunner.backend.config.WireFormatChannelInterceptor;
+import com.mynetrunner.backend.service.PresenceService;
+import com.mynetrunner.backend.util.JwtUtil;
+
+import jakarta.websocket.ContainerProvider;
+import jakarta.websocket.WebSocketContainer;
+
+/**
+ * Starts a backend node and sends chat frames over STOMP to check who a
+ * message is delivered as, who gets it, and that the sender hears about
+ * messages that could not be sent on /user/queue/errors.
+ */
+@SpringBootTest(webEnvironment = WebEnvironment.RANDOM_PORT)
+@ActiveProfiles("test")
+@TestPropertySource(properties = {
+    "logging.level.root=WARN",
+    "spring.datasource.url=jdbc:h2:mem:stomp;MODE=PostgreSQL;DATABASE_TO_LOWER=TRUE;DB_CLOSE_DELAY=-1",
+    // Small enough for a test to stall the database and fill the write-behind queue
+    "spring.datasource.hikari.maximum-pool-size=2",
+    "spring.datasource.hikari.connection-timeout=2000",
+    "messaging.write-behind.capacity=1",
+    "messaging.write-behind.batch-size=1",
+    "messaging.write-behind.offer-timeout-ms=100"
+})
+class WebSocketMessageControllerTests {
+
+    private static JdbcTemplate jdbc;
+
+    private static JwtUtil jwtUtil;
+
+    private static PresenceService presenceService;
+
+    private static int port;
+
+    private static WebSocketStompClient stompClient;
+
+    private static Long alice;
+
+    private static Long bob;
+
+    private static Long carol;
+
+    // Never connects, so messages to dave are stored
+    private static Long dave;
+
+    private final BlockingQueue<JsonNode> aliceInbox = new LinkedBlockingQueue<>();
+
+    private final BlockingQueue<JsonNode> aliceErrors = new LinkedBlockingQueue<>();
+
+    private final BlockingQueue<JsonNode> bobInbox = new LinkedBlockingQueue<>();
+
+    private final BlockingQueue<JsonNode> carolInbox = new LinkedBlockingQueue<>();
+
+    private StompSession aliceSession;
+
+    private StompSession bobSession;
+
+    private StompSession carolSession;
+
+    @Autowired
+    private DataSource dataSource;
+
+    @BeforeAll
+    static void setUp(@Autowired JdbcTemplate jdbcTemplate, @Autowired JwtUtil tokens,
+            @Autowired PresenceService presence, @LocalServerPort int serverPort) {
+        jdbc = jdbcTemplate;
+        jwtUtil = tokens;
+        presenceService = presence;
+        port = serverPort;
+        for (String username : new String[] { "alice", "bob", "carol", "dave" }) {
+            jdbc.update("INSERT INTO users (username, password_hash, created_at) VALUES (?, 'hash', CURRENT_TIMESTAMP)",
+                username);
+        }
+        alice = jdbc.queryForObject("SELECT id FROM users WHERE username = 'alice'", Long.class);
+        bob = jdbc.queryForObject("SELECT id FROM users WHERE username = 'bob'", Long.class);
+        carol = jdbc.queryForObject("SELECT id FROM users WHERE username = 'carol'", Long.class);
+        dave = jdbc.queryForObject("SELECT id FROM users WHERE username = 'dave'", Long.class);
+
+        // Room on the client side for the largest batch frame
+        WebSocketContainer container = ContainerProvider.getWebSocketContainer();
+        container.setDefaultMaxTextMessageBufferSize(1024 * 1024);
+        stompClient = new WebSocketStompClient(new StandardWebSocketClient(container));
+        // Binary wire formats are read and written as raw bytes
+        stompClient.setMessageConverter(new CompositeMessageConverter(
+            List.of(new ByteArrayMessageConverter(), new MappingJackson2MessageConverter())));
+        stompClient.setInboundMessageSizeLimit(1024 * 1024);
+    }
+
+    @AfterAll
+    static void tearDown() {
+        stompClient.stop();
+    }
+
+    @AfterEach
+    void disconnect() {
+        for (StompSession session : new StompSession[] { aliceSession, bobSession, carolSession }) {
+            if (session != null && session.isConnected()) {
+                session.disconnect();
+            }
+        }
+    }
+
+    @Test
+    void senderIsTheAuthenticatedUser() throws Exception {
+        aliceSession = connect("alice", aliceInbox);
+        bobSession = connect("bob", bobInbox);
+        awaitOnline(alice, bob);
+
+        // No senderId at all: the session decides
+        aliceSession.send("/app/chat", Map.of("receiverId", bob, "content", "hi bob"));
+
+        JsonNode received = bobInbox.poll(5, TimeUnit.SECONDS);
+        assertThat(received).isNotNull();
+        assertThat(received.path("senderId").asLong()).isEqualTo(alice);
+        assertThat(received.path("senderUsername").asText()).isEqualTo("alice");
+    }
+
+    @Test
+    void rejectsMessagesClaimingAnotherSender() throws Exception {
+        aliceSession = connect("alice", aliceInbox, aliceErrors);
+        carolSession = connect("carol", carolInbox);
+        awaitOnline(alice, carol);
+
+        aliceSession.send("/app/chat", Map.of("senderId", bob, "receiverId", carol, "content", "it's bob, honest"));
+        aliceSession.send("/app/chat/batch", Map.of("messages", List.of(
+            Map.of("senderId", alice, "receiverId", carol, "content", "from alice"),
+            Map.of("senderId", bob, "receiverId", carol, "content", "also bob"))));
+
+        // A genuine message afterwards is the only one that arrives
+        aliceSession.send("/app/chat", Map.of("senderId", alice, "receiverId", carol, "content", "really alice"));
+
+        JsonNode received = carolInbox.poll(5, TimeUnit.SECONDS);
+        assertThat(received).isNotNull();
+        assertThat(received.path("content").asText()).isEqualTo("really alice");
+        assertThat(carolInbox.poll(200, TimeUnit.MILLISECONDS)).isNull();
+
+        for (int i = 0; i < 2; i++) {
+            JsonNode error = aliceErrors.poll(5, TimeUnit.SECONDS);
+            assertThat(error).isNotNull();
+            assertThat(error.path("status").asInt()).isEqualTo(403);
+        }
+    }
+
+    @Test
+    void reportsInvalidFramesToTheSender() throws Exception {
+        aliceSession = connect("alice", aliceInbox, aliceErrors);
+        awaitOnline(alice);
+
+        aliceSession.send("/app/chat", Map.of("receiverId", bob, "content", ""));
+
+        JsonNode error = aliceErrors.poll(5, TimeUnit.SECONDS);
+        assertThat(error).isNotNull();
+        assertThat(error.path("status").asInt()).isEqualTo(400);
+        assertThat(error.path("errors").has("content")).isTrue();
+    }
+
+    @Test
+    void tellsTheSenderWhenTheirMessageCannotBeQueued() throws Exception {
+        aliceSession = connect("alice", aliceInbox, aliceErrors);
+        awaitOnline(alice);
+
+        // Also loads both users into the cache while the database is reachable
+        int rows = storedRowsFor(dave);
+        aliceSession.send("/app/chat", Map.of("receiverId", dave, "content", "before"));
+        awaitTrue(() -> storedRowsFor(dave) == rows + 1);
+
+        // With every connection held the flusher stalls on the next message,
+        // the one after takes the queue's only slot and the rest do not fit
+        List<Connection> held = new ArrayList<>();
+        try {
+            for (int i = 0; i < 2; i++) {
+                held.add(dataSource.getConnection());
+            }
+            for (int i = 0; i < 4; i++) {
+                aliceSession.send("/app/chat", Map.of("receiverId", dave, "content", "stalled " + i));
+            }
+
+            for (int i = 0; i < 2; i++) {
+                JsonNode error = aliceErrors.poll(5, TimeUnit.SECONDS);
+                assertThat(error).isNotNull();
+                assertThat(error.path("status").asInt()).isEqualTo(503);
+                assertThat(error.path("message").asText()).contains("full");
+                assertThat(error.path("errors").path("receiverId").asLong()).isEqualTo(dave);
+            }
+        } finally {
+            for (Connection connection : held) {
+                connection.close();
+            }
+        }
+
+        // The two that were accepted are written once the database is back
+        awaitTrue(() -> storedRowsFor(dave) == rows + 3);
+        assertThat(aliceErrors).isEmpty();
+    }
+
+    @Test
+    void batchGoesOutOneFramePerLiveConversationAndIsStoredInOrderForOfflineOnes() throws Exception {
+        aliceSession = connect("alice", aliceInbox, aliceErrors);
+        bobSession = connect("bob", bobInbox);
+        awaitOnline(alice, bob);
+        int rows = storedRowsFor(dave);
+
+        aliceSession.send("/app/chat", Map.of("receiverId", dave, "content", "d1"));
+        aliceSession.send("/app/chat/batch", Map.of("messages", List.of(
+            Map.of("receiverId", bob, "content", "b1"),
+            Map.of("receiverId", dave, "content", "d2"),
+            Map.of("receiverId", bob, "content", "b2"),
+            Map.of("receiverId", dave, "content", "d3"))));
+        aliceSession.send("/app/chat", Map.of("receiverId", dave, "content", "d4"));
+
+        JsonNode batch = bobInbox.poll(5, TimeUnit.SECONDS);
+        assertThat(batch).isNotNull();
+        assertThat(batch.path("batchId").isNull()).isTrue();
+        assertThat(batch.path("messages").findValuesAsText("content")).containsExactly("b1", "b2");
+        assertThat(batch.path("messages").findValuesAsText("senderUsername")).containsExactly("alice", "alice");
+
+        awaitTrue(() -> storedRowsFor(dave) == rows + 4);
+        List<String> stored = jdbc.queryForList(
+            "SELECT content FROM messages WHERE receiver_id = ? ORDER BY timestamp, id", String.class, dave);
+        assertThat(stored.subList(rows, rows + 4)).containsExactly("d1", "d2", "d3", "d4");
+        assertThat(aliceErrors).isEmpty();
+    }
+
+    @Test
+    void largestAllowedBatchFitsInAFrame() throws Exception {
+        aliceSession = connect("alice", aliceInbox, aliceErrors);
+        bobSession = connect("bob", bobInbox);
+        awaitOnline(alice, bob);
+
+        // Longest messages, in characters that take three bytes each in UTF-8
+        String content = "\u20ac".repeat(5000);
+        List<Map<String, Object>> messages = new ArrayList<>();
+        for (int i = 0; i < 50; i++) {
+            messages.add(Map.of("receiverId", bob, "content", content));
+        }
+        aliceSession.send("/app/chat/batch", Map.of("messages", messages));
+
+        JsonNode batch = bobInbox.poll(5, TimeUnit.SECONDS);
+        assertThat(batch).isNotNull();
+        assertThat(batch.path("messages").size()).isEqualTo(50);
+        assertThat(aliceSession.isConnected()).isTrue();
+
+        // One more is refused, but the session stays usable
+        messages.add(Map.of("receiverId", bob, "content", "one too many"));
+        aliceSession.send("/app/chat/batch", Map.of("messages", messages));
+        JsonNode error = aliceErrors.poll(5, TimeUnit.SECONDS);
+        assertThat(error).isNotNull();
+        assertThat(error.path("status").asInt()).isEqualTo(400);
+    }
+
+    @Test
+    void nativeEndpointCarriesMessagesBothWays() throws Exception {
+        aliceSession = connect("alice", aliceInbox);
+        bobSession = stompClient.connectAsync(url("bob").replace("/ws/websocket", "/ws/native"),
+            new StompSessionHandlerAdapter() {
+            }).get(5, TimeUnit.SECONDS);
+        subscribe(bobSession, PresenceService.USER_QUEUE_SUBSCRIPTION, bobInbox);
+        awaitOnline(alice, bob);
+
+        aliceSession.send("/app/chat", Map.of("receiverId", bob, "content", "to native"));
+        JsonNode toBob = bobInbox.poll(5, TimeUnit.SECONDS);
+        assertThat(toBob).isNotNull();
+        assertThat(toBob.path("content").asText()).isEqualTo("to native");
+
+        bobSession.send("/app/chat", Map.of("receiverId", alice, "content", "from native"));
+        JsonNode toAlice = aliceInbox.poll(5, TimeUnit.SECONDS);
+        assertThat(toAlice).isNotNull();
+        assertThat(toAlice.path("content").asText()).isEqualTo("from native");
+        assertThat(toAlice.path("senderId").asLong()).isEqualTo(bob);
+    }
+
+    @Test
+    void nativeEndpointRejectsHandshakesWithoutAToken() {
+        String url = "ws://localhost:" + port + "/ws/native";
+
+        assertThatThrownBy(() -> stompClient.connectAsync(url, new StompSessionHandlerAdapter() {
+        }).get(5, TimeUnit.SECONDS)).isInstanceOf(ExecutionException.class);
+    }
+
+    @Test
+    void binaryWireFormatsRoundTrip() throws Exception {
+        BlockingQueue<BinaryFrame> bobFrames = new LinkedBlockingQueue<>();
+        BlockingQueue<BinaryFrame> carolFrames = new LinkedBlockingQueue<>();
+        aliceSession = connect("alice", aliceInbox, aliceErrors);
+        bobSession = connectBinary("bob", WireFormatChannelInterceptor.SMILE, bobFrames);
+        carolSession = connectBinary("carol", WireFormatChannelInterceptor.CBOR, carolFrames);
+        awaitOnline(alice, bob, carol);
+        ObjectMapper smile = new SmileMapper();
+        ObjectMapper cbor = new CBORMapper();
+
+        // JSON in, each receiver's own format out
+        aliceSession.send("/app/chat", Map.of("receiverId", bob, "content", "to smile \u20ac"));
+        aliceSession.send("/app/chat", Map.of("receiverId", carol, "content", "to cbor \u20ac"));
+
+        BinaryFrame toBob = bobFrames.poll(5, TimeUnit.SECONDS);
+        assertThat(toBob).isNotNull();
+        assertThat(toBob.contentType().getParameter("format")).isEqualTo("x-jackson-smile");
+        JsonNode smileMessage = smile.readTree(toBob.payload());
+        assertThat(smileMessage.path("content").asText()).isEqualTo("to smile \u20ac");
+        assertThat(smileMessage.path("senderUsername").asText()).isEqualTo("alice");
+
+        BinaryFrame toCarol = carolFrames.poll(5, TimeUnit.SECONDS);
+        assertThat(toCarol).isNotNull();
+        assertThat(toCarol.contentType().getParameter("format")).isEqualTo("cbor");
+        JsonNode cborMessage = cbor.readTree(toCarol.payload());
+        assertThat(cborMessage.path("content").asText()).isEqualTo("to cbor \u20ac");
+        // Not an ISO-8601 string: LocalDateTime goes out as [year, month, day, ...]
+        assertThat(cborMessage.path("timestamp").isArray()).isTrue();
+
+        // Binary in, JSON out
+        bobSession.send(binaryHeaders("x-jackson-smile"),
+            smile.writeValueAsBytes(Map.of("receiverId", alice, "content", "from smile")));
+        JsonNode fromBob = aliceInbox.poll(5, TimeUnit.SECONDS);
+        assertThat(fromBob).isNotNull();
+        assertThat(fromBob.path("content").asText()).isEqualTo("from smile");
+        assertThat(fromBob.path("senderId").asLong()).isEqualTo(bob);
+
+        carolSession.send(binaryHeaders("cbor"),
+            cbor.writeValueAsBytes(Map.of("receiverId", alice, "content", "from cbor")));
+        JsonNode fromCarol = aliceInbox.poll(5, TimeUnit.SECONDS);
+        assertThat(fromCarol).isNotNull();
+        assertThat(fromCarol.path("content").asText()).isEqualTo("from cbor");
+        assertThat(fromCarol.path("senderId").asLong()).isEqualTo(carol);
+        assertThat(aliceErrors).isEmpty();
+    }
+
+    private record BinaryFrame(MimeType contentType, byte[] payload) {
+    }
+
+    private static StompHeaders binaryHeaders(String format) {
+        StompHeaders headers = new StompHeaders();
+        headers.setDestination("/app/chat");
+        headers.setContentType(new MimeType("application", "octet-stream", Map.of("format", format)));
+        return headers;
+    }
+
+    // Asks for a binary wire format on CONNECT and collects the raw frames sent to the user
+    private static StompSession connectBinary(String username, MimeType format,
+            BlockingQueue<BinaryFrame> frames) throws Exception {
+        StompHeaders connectHeaders = new StompHeaders();
+        connectHeaders.setContentType(format);
+        StompSession session = stompClient.connectAsync(url(username), new WebSocketHttpHeaders(), connectHeaders,
+            new StompSessionHandlerAdapter() {
+            }).get(5, TimeUnit.SECONDS);
+        session.subscribe(PresenceService.USER_QUEUE_SUBSCRIPTION, new StompFrameHandler() {
+            @Override
+            public Type getPayloadType(StompHeaders headers) {
+                return byte[].class;
+            }
+
+            @Override
+            public void handleFrame(StompHeaders headers, Object payload) {
+                frames.add(new BinaryFrame(headers.getContentType(), (byte[]) payload));
+            }
+        });
+        return session;
+    }
+
+    private static StompSession connect(String username, BlockingQueue<JsonNode> inbox) throws Exception {
+        return connect(username, inbox, new LinkedBlockingQueue<>());
+    }
+
+    private static StompSession connect(String username, BlockingQueue<JsonNode> inbox,
+            BlockingQueue<JsonNode> errors) throws Exception {
+        StompSession session = stompClient.connectAsync(url(username), new StompSessionHandlerAdapter() {
+        }).get(5, TimeUnit.SECONDS);
+        subscribe(session, PresenceService.USER_QUEUE_SUBSCRIPTION, inbox);
+        subscribe(session, "/user" + WebSocketMessageController.ERROR_QUEUE, errors);
+        return session;
+    }
+
+    private static String url(String username) {
+        String token = jwtUtil.generateToken(username);
+        return "ws://localhost:" + port
+            + "/ws/websocket?token=" + token;
+    }
+
+    private static void subscribe(StompSession session, String destination, BlockingQueue<JsonNode> frames) {
+        session.subscribe(destination, new StompFrameHandler() {
+            @Override
+            public Type getPayloadType(StompHeaders headers) {
+                return JsonNode.class;
+            }
+
+            @Override
+            public void handleFrame(StompHeaders headers, Object payload) {
+                frames.add((JsonNode) payload);
+            }
+        });
+    }
+
+    private static int storedRowsFor(Long receiverId) {
+        return jdbc.queryForObject("SELECT COUNT(*) FROM messages WHERE receiver_id = ?", Integer.class, receiverId);
+    }
+
+    private static void awaitTrue(BooleanSupplier condition) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 5000;
+        while (!condition.getAsBoolean()) {
+            assertThat(System.currentTimeMillis()).as("condition not met within 5s").isLessThan(deadline);
+            Thread.sleep(20);
+        }
+    }
+
+    private static void awaitOnline(Long... userIds) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 5000;
+        for (Long userId : userIds) {
+            while (!presenceService.isOnline(userId)) {
+                assertThat(System.currentTimeMillis()).as("user %d not online within 5s", userId).isLessThan(deadline);
+                Thread.sleep(20);
+            }
+        }
+    }
+}
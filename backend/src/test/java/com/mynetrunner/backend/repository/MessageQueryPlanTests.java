@@ -0,0 +1,125 @@
+package com.mynetrunner.backend.repository;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.flywaydb.core.Flyway;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import io.zonky.test.db.postgres.embedded.EmbeddedPostgres;
+
+/**
+ * Runs the Flyway migrations against an embedded PostgreSQL, loads a
+ * realistically sized messages table and checks with EXPLAIN that the
+ * hot queries are served by their indexes rather than sequential scans.
+ */
+class MessageQueryPlanTests {
+
+    private static EmbeddedPostgres postgres;
+
+    private static JdbcTemplate jdbc;
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    @BeforeAll
+    static void setUp() throws Exception {
+        postgres = EmbeddedPostgres.start();
+        Flyway.configure()
+            .dataSource(postgres.getPostgresDatabase())
+            .locations("classpath:db/migration")
+            .load()
+            .migrate();
+
+        jdbc = new JdbcTemplate(postgres.getPostgresDatabase());
+        jdbc.update("INSERT INTO users (username, password_hash, created_at) "
+            + "SELECT 'user' || g, 'hash', now() FROM generate_series(1, 1000) g");
+        // 100k queued messages spread over 1000 receivers, about 1% already expired
+        jdbc.update("INSERT INTO messages (sender_id, receiver_id, content, timestamp, delivered, expires_at) "
+            + "SELECT 1 + (g * 7) % 1000, 1 + g % 1000, 'message ' || g, "
+            + "now() - g * interval '1 second', false, "
+            + "now() + (CASE WHEN g % 100 = 0 THEN -1 ELSE 30 END) * interval '1 day' "
+            + "FROM generate_series(1, 100000) g");
+        jdbc.execute("ANALYZE users");
+        jdbc.execute("ANALYZE messages");
+    }
+
+    @AfterAll
+    static void tearDown() throws Exception {
+        postgres.close();
+    }
+
+    @Test
+    void pendingPageUsesPartialReceiverIndex() throws Exception {
+        List<String> scans = scans("SELECT m.id, m.sender_id, u.username, m.receiver_id, m.content, m.timestamp, m.delivered "
+            + "FROM messages m LEFT JOIN users u ON u.id = m.sender_id "
+            + "WHERE m.receiver_id = 42 AND m.delivered = false "
+            + "ORDER BY m.timestamp, m.id LIMIT 100");
+
+        assertThat(scans).anyMatch(scan -> scan.endsWith("idx_messages_receiver_pending"));
+        assertThat(scans).noneMatch(scan -> scan.equals("Seq Scan on messages"));
+    }
+
+    @Test
+    void pendingPageAfterCursorUsesPartialReceiverIndex() throws Exception {
+        List<String> scans = scans("SELECT m.id, m.sender_id, u.username, m.receiver_id, m.content, m.timestamp, m.delivered "
+            + "FROM messages m LEFT JOIN users u ON u.id = m.sender_id "
+            + "WHERE m.receiver_id = 42 AND m.delivered = false "
+            + "AND (m.timestamp > now() - interval '1 day' "
+            + "OR (m.timestamp = now() - interval '1 day' AND m.id > 5000)) "
+            + "ORDER BY m.timestamp, m.id LIMIT 100");
+
+        assertThat(scans).anyMatch(scan -> scan.endsWith("idx_messages_receiver_pending"));
+        assertThat(scans).noneMatch(scan -> scan.equals("Seq Scan on messages"));
+    }
+
+    @Test
+    void expiredDeleteUsesExpiresAtIndex() throws Exception {
+        // The reaper's batch statement, as in MessageRepository.deleteExpiredBatch
+        List<String> scans = scans("DELETE FROM messages WHERE id = ANY (ARRAY(SELECT id FROM messages "
+            + "WHERE expires_at < now() ORDER BY expires_at LIMIT 1000 FOR UPDATE SKIP LOCKED))");
+
+        assertThat(scans).anyMatch(scan -> scan.endsWith("idx_messages_expires_at"));
+        assertThat(scans).anyMatch(scan -> scan.endsWith("messages_pkey"));
+        assertThat(scans).noneMatch(scan -> scan.equals("Seq Scan on messages"));
+    }
+
+    @Test
+    void senderLookupUsesSenderIndex() throws Exception {
+        List<String> scans = scans("SELECT id FROM messages WHERE sender_id = 42");
+
+        assertThat(scans).anyMatch(scan -> scan.endsWith("idx_messages_sender_id"));
+        assertThat(scans).noneMatch(scan -> scan.equals("Seq Scan on messages"));
+    }
+
+    /**
+     * EXPLAIN a statement and list its scan nodes as "Node Type on relation"
+     * or "Node Type using index"
+     */
+    private List<String> scans(String sql) throws Exception {
+        String json = jdbc.queryForObject("EXPLAIN (FORMAT JSON) " + sql, String.class);
+        List<String> scans = new ArrayList<>();
+        collectScans(objectMapper.readTree(json).get(0).get("Plan"), scans);
+        return scans;
+    }
+
+    private void collectScans(JsonNode node, List<String> scans) {
+        String nodeType = node.path("Node Type").asText();
+        if (node.has("Index Name")) {
+            scans.add(nodeType + " using " + node.get("Index Name").asText());
+        } else if (nodeType.endsWith("Scan") && node.has("Relation Name")) {
+            scans.add(nodeType + " on " + node.get("Relation Name").asText());
+        }
+
+        for (JsonNode child : node.path("Plans")) {
+            collectScans(child, scans);
+        }
+    }
+}
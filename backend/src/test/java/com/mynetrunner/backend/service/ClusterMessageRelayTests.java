@@ -0,0 +1,236 @@
+package com.mynetrunner.backend.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.lang.reflect.Type;
+import java.net.ServerSocket;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BooleanSupplier;
+
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.messaging.converter.MappingJackson2MessageConverter;
+import org.springframework.messaging.simp.stomp.StompFrameHandler;
+import org.springframework.messaging.simp.stomp.StompHeaders;
+import org.springframework.messaging.simp.stomp.StompSession;
+import org.springframework.messaging.simp.stomp.StompSessionHandlerAdapter;
+import org.springframework.web.socket.client.standard.StandardWebSocketClient;
+import org.springframework.web.socket.messaging.WebSocketStompClient;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.mynetrunner.backend.BackendApplication;
+import com.mynetrunner.backend.util.JwtUtil;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import redis.embedded.RedisServer;
+
+/**
+ * Starts two backend nodes in cluster mode against an embedded Redis and
+ * checks that a message sent on one node reaches a receiver connected to
+ * the other, that each node only listens on its own users' shards, and that
+ * a relayed message nobody delivers is stored instead of lost.
+ */
+class ClusterMessageRelayTests {
+
+    private static final int SHARDS = 64;
+
+    private static RedisServer redis;
+
+    private static ConfigurableApplicationContext nodeA;
+
+    private static ConfigurableApplicationContext nodeB;
+
+    private static WebSocketStompClient stompClient;
+
+    private static Long alice;
+
+    private static Long bob;
+
+    private static Long carol;
+
+    // Shares carol's shard
+    private static Long dave;
+
+    @BeforeAll
+    static void setUp() throws Exception {
+        int redisPort;
+        try (ServerSocket socket = new ServerSocket(0)) {
+            redisPort = socket.getLocalPort();
+        }
+        redis = new RedisServer(redisPort);
+        redis.start();
+
+        nodeA = startNode(redisPort);
+        nodeB = startNode(redisPort);
+
+        JdbcTemplate jdbc = nodeA.getBean(JdbcTemplate.class);
+        for (String username : new String[] { "alice", "bob", "carol" }) {
+            jdbc.update("INSERT INTO users (username, password_hash, created_at) VALUES (?, 'hash', CURRENT_TIMESTAMP)",
+                username);
+        }
+        alice = jdbc.queryForObject("SELECT id FROM users WHERE username = 'alice'", Long.class);
+        bob = jdbc.queryForObject("SELECT id FROM users WHERE username = 'bob'", Long.class);
+        carol = jdbc.queryForObject("SELECT id FROM users WHERE username = 'carol'", Long.class);
+        dave = carol + SHARDS;
+        jdbc.update("INSERT INTO users (id, username, password_hash, created_at) "
+            + "VALUES (?, 'dave', 'hash', CURRENT_TIMESTAMP)", dave);
+
+        stompClient = new WebSocketStompClient(new StandardWebSocketClient());
+        stompClient.setMessageConverter(new MappingJackson2MessageConverter());
+    }
+
+    @AfterAll
+    static void tearDown() throws Exception {
+        stompClient.stop();
+        nodeA.close();
+        nodeB.close();
+        redis.stop();
+    }
+
+    @Test
+    void deliversToReceiverOnAnotherNode() throws Exception {
+        BlockingQueue<JsonNode> aliceInbox = new LinkedBlockingQueue<>();
+        BlockingQueue<JsonNode> bobInbox = new LinkedBlockingQueue<>();
+        StompSession aliceSession = connect(nodeA, "alice", aliceInbox);
+        StompSession bobSession = connect(nodeB, "bob", bobInbox);
+
+        ClusterMessageRelay relayA = nodeA.getBean(ClusterMessageRelay.class);
+        ClusterMessageRelay relayB = nodeB.getBean(ClusterMessageRelay.class);
+        awaitTrue(() -> relayA.getSubscribedShards().contains(shardOf(alice))
+            && relayB.getSubscribedShards().contains(shardOf(bob)));
+
+        // Each node only listens on the shards of its own users
+        assertThat(relayA.getSubscribedShards()).containsExactly(shardOf(alice));
+        assertThat(relayB.getSubscribedShards()).containsExactly(shardOf(bob));
+
+        aliceSession.send("/app/chat", Map.of("senderId", alice, "receiverId", bob, "content", "hello from A"));
+
+        JsonNode received = bobInbox.poll(5, TimeUnit.SECONDS);
+        assertThat(received).isNotNull();
+        assertThat(received.path("content").asText()).isEqualTo("hello from A");
+        assertThat(received.path("senderUsername").asText()).isEqualTo("alice");
+        assertThat(aliceInbox).isEmpty();
+
+        aliceSession.disconnect();
+        bobSession.disconnect();
+        awaitTrue(() -> relayA.getSubscribedShards().isEmpty() && relayB.getSubscribedShards().isEmpty());
+    }
+
+    @Test
+    void storesMessageWhenReceiverIsOfflineEverywhere() throws Exception {
+        StompSession aliceSession = connect(nodeA, "alice", new LinkedBlockingQueue<>());
+        ClusterMessageRelay relayA = nodeA.getBean(ClusterMessageRelay.class);
+        awaitTrue(() -> relayA.getSubscribedShards().contains(shardOf(alice)));
+
+        MeterRegistry registry = nodeA.getBean(MeterRegistry.class);
+        double stored = storedCount(registry);
+
+        aliceSession.send("/app/chat", Map.of("senderId", alice, "receiverId", carol, "content", "are you there?"));
+
+        awaitTrue(() -> storedCount(registry) == stored + 1);
+        aliceSession.disconnect();
+    }
+
+    @Test
+    void storesMessageWhenPresenceIsStaleAndNobodyDelivers() throws Exception {
+        // carol's node crashed without cleaning up, and dave keeps her shard
+        // subscribed on node B, so the publish does reach a listener
+        StringRedisTemplate redisTemplate = nodeA.getBean(StringRedisTemplate.class);
+        String presenceKey = "mynetrunner:presence:" + carol;
+        redisTemplate.opsForZSet().add(presenceKey, "crashed-node", System.currentTimeMillis() + 60_000);
+
+        BlockingQueue<JsonNode> daveInbox = new LinkedBlockingQueue<>();
+        StompSession aliceSession = connect(nodeA, "alice", new LinkedBlockingQueue<>());
+        StompSession daveSession = connect(nodeB, "dave", daveInbox);
+        ClusterMessageRelay relayA = nodeA.getBean(ClusterMessageRelay.class);
+        ClusterMessageRelay relayB = nodeB.getBean(ClusterMessageRelay.class);
+        awaitTrue(() -> relayA.getSubscribedShards().contains(shardOf(alice))
+            && relayB.getSubscribedShards().contains(shardOf(carol)));
+        assertThat(relayA.isOnline(carol)).isTrue();
+
+        JdbcTemplate jdbc = nodeA.getBean(JdbcTemplate.class);
+        MeterRegistry registry = nodeA.getBean(MeterRegistry.class);
+        double stored = storedCount(registry);
+        int rows = storedRowsFor(jdbc, carol);
+
+        aliceSession.send("/app/chat", Map.of("senderId", alice, "receiverId", carol, "content", "still there?"));
+
+        awaitTrue(() -> storedCount(registry) == stored + 1);
+        awaitTrue(() -> storedRowsFor(jdbc, carol) == rows + 1);
+        assertThat(registry.get("messaging.cluster.relay.unacknowledged").counter().count()).isEqualTo(1);
+        assertThat(daveInbox).isEmpty();
+
+        // The wait for an ack happens after publish has returned
+        CompletableFuture<Boolean> published = relayA.publish(alice, carol, Map.of("content", "anyone?"));
+        assertThat(published).isNotDone();
+        assertThat(published.get(5, TimeUnit.SECONDS)).isFalse();
+
+        aliceSession.disconnect();
+        daveSession.disconnect();
+        redisTemplate.delete(presenceKey);
+        awaitTrue(() -> relayA.getSubscribedShards().isEmpty() && relayB.getSubscribedShards().isEmpty());
+    }
+
+    private static ConfigurableApplicationContext startNode(int redisPort) {
+        return new SpringApplicationBuilder(BackendApplication.class)
+            .profiles("test")
+            .run("--server.port=0",
+                "--logging.level.root=WARN",
+                // Both nodes share one database, as the nodes of a real cluster do
+                "--spring.datasource.url=jdbc:h2:mem:cluster;MODE=PostgreSQL;DATABASE_TO_LOWER=TRUE;DB_CLOSE_DELAY=-1",
+                "--messaging.cluster.enabled=true",
+                "--messaging.cluster.shards=" + SHARDS,
+                "--spring.data.redis.host=localhost",
+                "--spring.data.redis.port=" + redisPort);
+    }
+
+    private static StompSession connect(ConfigurableApplicationContext node, String username,
+            BlockingQueue<JsonNode> inbox) throws Exception {
+        String token = node.getBean(JwtUtil.class).generateToken(username);
+        String url = "ws://localhost:" + node.getEnvironment().getProperty("local.server.port")
+            + "/ws/websocket?token=" + token;
+        StompSession session = stompClient.connectAsync(url, new StompSessionHandlerAdapter() {
+        }).get(5, TimeUnit.SECONDS);
+        session.subscribe(PresenceService.USER_QUEUE_SUBSCRIPTION, new StompFrameHandler() {
+            @Override
+            public Type getPayloadType(StompHeaders headers) {
+                return JsonNode.class;
+            }
+
+            @Override
+            public void handleFrame(StompHeaders headers, Object payload) {
+                inbox.add((JsonNode) payload);
+            }
+        });
+        return session;
+    }
+
+    private static double storedCount(MeterRegistry registry) {
+        return registry.get("messages.delivered").tag("path", "store-and-forward").counter().count();
+    }
+
+    private static int storedRowsFor(JdbcTemplate jdbc, Long receiverId) {
+        return jdbc.queryForObject("SELECT COUNT(*) FROM messages WHERE receiver_id = ?", Integer.class, receiverId);
+    }
+
+    private static int shardOf(Long userId) {
+        return (int) Math.floorMod(userId, (long) SHARDS);
+    }
+
+    private static void awaitTrue(BooleanSupplier condition) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 5000;
+        while (!condition.getAsBoolean()) {
+            assertThat(System.currentTimeMillis()).as("condition not met within 5s").isLessThan(deadline);
+            Thread.sleep(50);
+        }
+    }
+}
@@ -0,0 +1,122 @@
+package com.mynetrunner.backend.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import com.mynetrunner.backend.exception.MessageDeliveryException;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+/**
+ * Dispatches deliveries for many conversations over a few lanes and checks
+ * that each conversation keeps its order, that a full lane pushes back and
+ * that a delivery failing on its lane is handed to the failure handler.
+ */
+class ConversationDispatcherTests {
+
+    private final MeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+    private ConversationDispatcher dispatcher;
+
+    @BeforeEach
+    void setUp() {
+        dispatcher = new ConversationDispatcher();
+        ReflectionTestUtils.setField(dispatcher, "meterRegistry", meterRegistry);
+        ReflectionTestUtils.setField(dispatcher, "laneCount", 4);
+        ReflectionTestUtils.setField(dispatcher, "laneCapacity", 10_000);
+    }
+
+    @AfterEach
+    void tearDown() throws InterruptedException {
+        dispatcher.stop();
+    }
+
+    @Test
+    void keepsEachConversationInOrder() throws Exception {
+        dispatcher.start();
+        Map<List<Long>, List<Integer>> delivered = new ConcurrentHashMap<>();
+        CountDownLatch done = new CountDownLatch(20 * 100);
+
+        // Interleaved the way frames from many senders arrive
+        for (int seq = 0; seq < 100; seq++) {
+            for (long sender = 1; sender <= 5; sender++) {
+                for (long receiver = 6; receiver <= 9; receiver++) {
+                    List<Long> conversation = List.of(sender, receiver);
+                    int n = seq;
+                    dispatcher.dispatch(sender, receiver, () -> {
+                        delivered.computeIfAbsent(conversation, key -> new CopyOnWriteArrayList<>()).add(n);
+                        done.countDown();
+                    });
+                }
+            }
+        }
+
+        assertThat(done.await(5, TimeUnit.SECONDS)).isTrue();
+        List<Integer> expected = new ArrayList<>();
+        for (int seq = 0; seq < 100; seq++) {
+            expected.add(seq);
+        }
+        assertThat(delivered).hasSize(20);
+        delivered.values().forEach(order -> assertThat(order).isEqualTo(expected));
+    }
+
+    @Test
+    void handsAFailedDeliveryToItsHandlerAndCarriesOn() throws Exception {
+        dispatcher.start();
+        List<String> events = new CopyOnWriteArrayList<>();
+        CountDownLatch done = new CountDownLatch(1);
+
+        dispatcher.dispatch(1L, 2L,
+            () -> {
+                throw new MessageDeliveryException("Message queue is full, please retry");
+            },
+            error -> events.add("failed: " + error.getMessage()));
+        dispatcher.dispatch(1L, 2L, () -> {
+            events.add("delivered");
+            done.countDown();
+        }, error -> events.add("unexpected"));
+
+        assertThat(done.await(5, TimeUnit.SECONDS)).isTrue();
+        assertThat(events).containsExactly("failed: Message queue is full, please retry", "delivered");
+        assertThat(meterRegistry.get("messaging.dispatch.failures").counter().count()).isEqualTo(1);
+    }
+
+    @Test
+    void pushesBackWhenALaneIsFull() throws Exception {
+        ReflectionTestUtils.setField(dispatcher, "laneCount", 1);
+        ReflectionTestUtils.setField(dispatcher, "laneCapacity", 1);
+        dispatcher.start();
+        CountDownLatch release = new CountDownLatch(1);
+        CountDownLatch started = new CountDownLatch(1);
+
+        dispatcher.dispatch(1L, 2L, () -> {
+            started.countDown();
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
+        assertThat(started.await(5, TimeUnit.SECONDS)).isTrue();
+        dispatcher.dispatch(1L, 2L, () -> { });
+
+        assertThatThrownBy(() -> dispatcher.dispatch(3L, 4L, () -> { }))
+            .isInstanceOf(MessageDeliveryException.class)
+            .hasMessageContaining("full");
+        release.countDown();
+    }
+}
@@ -0,0 +1,258 @@
+package com.mynetrunner.backend.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentSkipListMap;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.simp.SimpMessagingTemplate;
+import org.springframework.messaging.simp.stomp.StompCommand;
+import org.springframework.messaging.simp.stomp.StompHeaderAccessor;
+import org.springframework.messaging.simp.user.DefaultUserDestinationResolver;
+import org.springframework.messaging.simp.user.UserDestinationMessageHandler;
+import org.springframework.messaging.support.ExecutorSubscribableChannel;
+import org.springframework.messaging.support.MessageBuilder;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.web.socket.CloseStatus;
+import org.springframework.web.socket.messaging.DefaultSimpUserRegistry;
+import org.springframework.web.socket.messaging.SessionConnectEvent;
+import org.springframework.web.socket.messaging.SessionDisconnectEvent;
+
+import com.mynetrunner.backend.config.UserIdHandshakeHandler.UserPrincipal;
+import com.mynetrunner.backend.dto.message.MessageBatch;
+import com.mynetrunner.backend.dto.message.MessageResponse;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+/**
+ * Drives InboxDrainService through a PresenceService and an in-memory inbox
+ * and checks the acked batches it sends, including rows that are committed
+ * only after a drain has already found the inbox empty, and a drain whose
+ * session ends while another session of the user is still subscribed.
+ */
+class InboxDrainServiceTests {
+
+    private static final Long USER = 7L;
+
+    private final InMemoryMessageService inbox = new InMemoryMessageService();
+
+    private final List<MessageBatch> sent = new ArrayList<>();
+
+    private final ExecutorSubscribableChannel channel = new ExecutorSubscribableChannel();
+
+    private final UserDestinationMessageHandler userDestinationHandler = new UserDestinationMessageHandler(
+        channel, channel, new DefaultUserDestinationResolver(new DefaultSimpUserRegistry()));
+
+    private PresenceService presenceService;
+
+    private InboxDrainService drainService;
+
+    private long nextId = 1;
+
+    @BeforeEach
+    void setUp() {
+        presenceService = new PresenceService();
+        drainService = new InboxDrainService(new SimpleMeterRegistry());
+        ReflectionTestUtils.setField(drainService, "presenceService", presenceService);
+        presenceService.addListener(drainService);
+        ReflectionTestUtils.setField(drainService, "messageService", inbox);
+        ReflectionTestUtils.setField(drainService, "messagingTemplate", new SimpMessagingTemplate((message, timeout) -> true) {
+            @Override
+            public void convertAndSendToUser(String user, String destination, Object payload) {
+                assertThat(user).isEqualTo(USER.toString());
+                sent.add((MessageBatch) payload);
+            }
+        });
+        ReflectionTestUtils.setField(drainService, "chunkSize", 2);
+        ReflectionTestUtils.setField(drainService, "ackTimeoutMs", 10_000L);
+    }
+
+    @Test
+    void sendsTheNextBatchOnlyOnceTheCurrentOneIsAcked() {
+        store("a", "b", "c");
+        subscribe("s1");
+        assertThat(contents(lastBatch())).containsExactly("a", "b");
+
+        // A stale or foreign ack is ignored
+        drainService.acknowledge("s2", USER, lastBatch().getBatchId());
+        drainService.acknowledge("s1", USER, lastBatch().getBatchId() + 1);
+        assertThat(sent).hasSize(1);
+
+        drainService.acknowledge("s1", USER, lastBatch().getBatchId());
+        assertThat(contents(lastBatch())).containsExactly("c");
+        drainService.acknowledge("s1", USER, lastBatch().getBatchId());
+
+        assertThat(sent).hasSize(2);
+        assertThat(inbox.pending).isEmpty();
+    }
+
+    @Test
+    void drainsRowsCommittedAfterTheInboxWasFoundEmpty() {
+        subscribe("s1");
+        assertThat(sent).isEmpty();
+
+        // The write-behind flush lands after the drain read an empty inbox
+        store("late");
+        drainService.messagesStored(Set.of(USER));
+
+        assertThat(contents(lastBatch())).containsExactly("late");
+        drainService.acknowledge("s1", USER, lastBatch().getBatchId());
+        assertThat(inbox.pending).isEmpty();
+    }
+
+    @Test
+    void startsOverWhenRowsSortingBeforeTheCursorArriveMidPass() {
+        LocalDateTime now = LocalDateTime.now();
+        store(now, "b", "c");
+        subscribe("s1");
+        assertThat(contents(lastBatch())).containsExactly("b", "c");
+
+        // Sent earlier but only just flushed, so it sorts before the cursor
+        store(now.minusSeconds(1), "a");
+        drainService.messagesStored(Set.of(USER));
+        assertThat(sent).hasSize(1);
+
+        drainService.acknowledge("s1", USER, lastBatch().getBatchId());
+        assertThat(contents(lastBatch())).containsExactly("a");
+        drainService.acknowledge("s1", USER, lastBatch().getBatchId());
+        assertThat(inbox.pending).isEmpty();
+    }
+
+    @Test
+    void anIdleDrainMovesToTheNewestSessionAndEndsWithTheLastOne() {
+        subscribe("s1");
+        subscribe("s2");
+
+        store("a");
+        drainService.messagesStored(Set.of(USER));
+        drainService.acknowledge("s1", USER, lastBatch().getBatchId());
+        assertThat(inbox.pending).hasSize(1);
+        drainService.acknowledge("s2", USER, lastBatch().getBatchId());
+        assertThat(inbox.pending).isEmpty();
+
+        disconnect("s2");
+        disconnect("s1");
+        store("b");
+        drainService.messagesStored(Set.of(USER));
+        assertThat(sent).hasSize(1);
+    }
+
+    @Test
+    void anotherSessionTakesOverWhenTheDrainingSessionEnds() {
+        store("a", "b", "c");
+        subscribe("s1");
+        subscribe("s2");
+        long unacked = lastBatch().getBatchId();
+        assertThat(contents(lastBatch())).containsExactly("a", "b");
+
+        disconnect("s1");
+
+        // The batch s1 never acked goes out again, and s2 acks it
+        assertThat(sent).hasSize(2);
+        assertThat(lastBatch().getBatchId()).isEqualTo(unacked);
+        drainService.acknowledge("s1", USER, unacked);
+        assertThat(sent).hasSize(2);
+        drainService.acknowledge("s2", USER, unacked);
+        assertThat(contents(lastBatch())).containsExactly("c");
+        drainService.acknowledge("s2", USER, lastBatch().getBatchId());
+        assertThat(inbox.pending).isEmpty();
+    }
+
+    @Test
+    void startsOnlyOnceTheBrokerHasTheSubscription() {
+        store("a");
+        connect("s1");
+        Message<byte[]> frame = subscribeFrame("s1");
+
+        // Another handler has seen the SUBSCRIBE, but the broker does not have it yet
+        presenceService.afterMessageHandled(frame, channel, message -> { }, null);
+        assertThat(sent).isEmpty();
+
+        presenceService.afterMessageHandled(frame, channel, userDestinationHandler, null);
+        assertThat(contents(lastBatch())).containsExactly("a");
+    }
+
+    private void store(String... contents) {
+        store(LocalDateTime.now(), contents);
+    }
+
+    private void store(LocalDateTime timestamp, String... contents) {
+        for (String content : contents) {
+            long id = nextId++;
+            inbox.pending.put(id, new MessageResponse(id, 1L, "alice", USER, content, timestamp, false));
+        }
+    }
+
+    private MessageBatch lastBatch() {
+        assertThat(sent).isNotEmpty();
+        return sent.get(sent.size() - 1);
+    }
+
+    private static List<String> contents(MessageBatch batch) {
+        return batch.getMessages().stream().map(MessageResponse::getContent).toList();
+    }
+
+    private void connect(String sessionId) {
+        StompHeaderAccessor accessor = StompHeaderAccessor.create(StompCommand.CONNECT);
+        accessor.setSessionId(sessionId);
+        presenceService.handleConnect(new SessionConnectEvent(this, message(accessor)));
+    }
+
+    private void subscribe(String sessionId) {
+        connect(sessionId);
+        presenceService.afterMessageHandled(subscribeFrame(sessionId), channel, userDestinationHandler, null);
+    }
+
+    private static Message<byte[]> subscribeFrame(String sessionId) {
+        StompHeaderAccessor accessor = StompHeaderAccessor.create(StompCommand.SUBSCRIBE);
+        accessor.setSessionId(sessionId);
+        accessor.setSubscriptionId("sub-0");
+        accessor.setDestination(PresenceService.USER_QUEUE_SUBSCRIPTION);
+        accessor.setUser(new UserPrincipal(USER));
+        return message(accessor);
+    }
+
+    private void disconnect(String sessionId) {
+        StompHeaderAccessor accessor = StompHeaderAccessor.create(StompCommand.DISCONNECT);
+        accessor.setSessionId(sessionId);
+        presenceService.handleDisconnect(
+            new SessionDisconnectEvent(this, message(accessor), sessionId, CloseStatus.NORMAL));
+    }
+
+    private static Message<byte[]> message(StompHeaderAccessor accessor) {
+        return MessageBuilder.createMessage(new byte[0], accessor.getMessageHeaders());
+    }
+
+    /**
+     * Pending messages paged by (timestamp, id) like the repository queries
+     */
+    private static class InMemoryMessageService extends MessageService {
+
+        private static final Comparator<MessageResponse> ORDER =
+            Comparator.comparing(MessageResponse::getTimestamp).thenComparing(MessageResponse::getId);
+
+        private final ConcurrentSkipListMap<Long, MessageResponse> pending = new ConcurrentSkipListMap<>();
+
+        @Override
+        public List<MessageResponse> getPendingMessages(Long userId, MessageResponse after, int pageSize) {
+            return pending.values().stream()
+                .filter(message -> after == null || ORDER.compare(message, after) > 0)
+                .sorted(ORDER)
+                .limit(pageSize)
+                .toList();
+        }
+
+        @Override
+        public void markAsDelivered(Collection<Long> messageIds) {
+            messageIds.forEach(pending::remove);
+        }
+    }
+}
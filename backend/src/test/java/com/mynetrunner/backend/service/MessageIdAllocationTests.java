@@ -0,0 +1,71 @@
+package com.mynetrunner.backend.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.TestPropertySource;
+
+import com.mynetrunner.backend.model.Message;
+import com.mynetrunner.backend.repository.MessageRepository;
+
+/**
+ * Takes message ids from a freshly created messages_seq in turn through
+ * MessageWriteBehindQueue and through Hibernate's pooled generator, each
+ * run crossing a block boundary, to check that the two readings of a
+ * sequence value never hand out the same id.
+ */
+@SpringBootTest
+@ActiveProfiles("test")
+@TestPropertySource(properties = {
+    "logging.level.root=WARN",
+    "spring.datasource.url=jdbc:h2:mem:ids;MODE=PostgreSQL;DATABASE_TO_LOWER=TRUE;DB_CLOSE_DELAY=-1"
+})
+class MessageIdAllocationTests {
+
+    private static final int RUN = Message.ALLOCATION_SIZE + 10;
+
+    @Autowired
+    private MessageWriteBehindQueue writeBehindQueue;
+
+    @Autowired
+    private MessageRepository messageRepository;
+
+    @Autowired
+    private JdbcTemplate jdbc;
+
+    @Test
+    void writeBehindAndHibernateNeverShareAnId() {
+        List<Long> ids = new ArrayList<>();
+
+        // The write-behind queue takes the sequence's first value
+        for (int run = 0; run < 2; run++) {
+            List<Message> behind = messages(RUN);
+            writeBehindQueue.insertNow(behind);
+            behind.forEach(message -> ids.add(message.getId()));
+
+            for (Message message : messages(RUN)) {
+                ids.add(messageRepository.saveAndFlush(message).getId());
+            }
+        }
+
+        assertThat(ids).doesNotHaveDuplicates().allSatisfy(id -> assertThat(id).isPositive());
+        assertThat(jdbc.queryForObject("SELECT COUNT(*) FROM messages", Integer.class)).isEqualTo(4 * RUN);
+    }
+
+    private static List<Message> messages(int count) {
+        LocalDateTime now = LocalDateTime.now();
+        List<Message> messages = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            messages.add(new Message(null, 1L, 2L, "hello", now, false, now.plusDays(30)));
+        }
+        return messages;
+    }
+}
@@ -0,0 +1,99 @@
+package com.mynetrunner.backend.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.time.LocalDate;
+import java.time.format.DateTimeFormatter;
+
+import org.flywaydb.core.Flyway;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import io.zonky.test.db.postgres.embedded.EmbeddedPostgres;
+
+/**
+ * Runs the partitioned migrations against an embedded PostgreSQL and has
+ * MessagePartitionManager create partitions up to its horizon and detach
+ * and drop an expired one, leaving the current partitions and their rows
+ * alone.
+ */
+class MessagePartitionManagerTests {
+
+    private static final DateTimeFormatter NAME_FORMAT = DateTimeFormatter.ofPattern("yyyyMMdd");
+
+    private static EmbeddedPostgres postgres;
+
+    private static JdbcTemplate jdbc;
+
+    private static MessagePartitionManager manager;
+
+    @BeforeAll
+    static void setUp() throws Exception {
+        postgres = EmbeddedPostgres.start();
+        Flyway.configure()
+            .dataSource(postgres.getPostgresDatabase())
+            .locations("classpath:db/migration", "classpath:db/partitioned")
+            .outOfOrder(true)
+            .load()
+            .migrate();
+
+        jdbc = new JdbcTemplate(postgres.getPostgresDatabase());
+        manager = new MessagePartitionManager();
+        ReflectionTestUtils.setField(manager, "jdbcTemplate", jdbc);
+        ReflectionTestUtils.setField(manager, "partitionDays", 1);
+        ReflectionTestUtils.setField(manager, "premakeDays", 5);
+    }
+
+    @AfterAll
+    static void tearDown() throws Exception {
+        postgres.close();
+    }
+
+    @Test
+    void createsPartitionsUpToTheHorizon() {
+        manager.createUpcomingPartitions();
+
+        LocalDate today = LocalDate.now();
+        for (int day = 0; day < 35; day++) {
+            assertThat(partitionExists(today.plusDays(day))).as("partition for today + %d", day).isTrue();
+        }
+        // Already there, so a second run creates nothing
+        int partitions = partitionCount();
+        manager.createUpcomingPartitions();
+        assertThat(partitionCount()).isEqualTo(partitions);
+    }
+
+    @Test
+    void detachesAndDropsOnlyExpiredPartitions() {
+        manager.createUpcomingPartitions();
+        LocalDate expired = LocalDate.now().minusDays(3);
+        jdbc.execute(String.format(
+            "CREATE TABLE messages_p%s PARTITION OF messages FOR VALUES FROM ('%s') TO ('%s')",
+            expired.format(NAME_FORMAT), expired, expired.plusDays(1)));
+        jdbc.update("INSERT INTO messages (sender_id, receiver_id, content, timestamp, delivered, expires_at) "
+            + "VALUES (1, 2, 'old', now(), false, ?), (1, 2, 'live', now(), false, ?)",
+            expired.atTime(12, 0), LocalDate.now().plusDays(2).atTime(12, 0));
+
+        int dropped = manager.dropExpiredPartitions();
+
+        assertThat(dropped).isEqualTo(1);
+        assertThat(partitionExists(expired)).isFalse();
+        assertThat(jdbc.queryForObject("SELECT to_regclass(?) IS NULL", Boolean.class,
+            "messages_p" + expired.format(NAME_FORMAT))).isTrue();
+        assertThat(partitionExists(LocalDate.now())).isTrue();
+        assertThat(jdbc.queryForList("SELECT content FROM messages", String.class)).containsExactly("live");
+    }
+
+    private static boolean partitionExists(LocalDate day) {
+        return jdbc.queryForObject("SELECT COUNT(*) FROM pg_inherits WHERE inhparent = 'messages'::regclass "
+            + "AND inhrelid = to_regclass(?)", Integer.class, "messages_p" + day.format(NAME_FORMAT)) == 1;
+    }
+
+    private static int partitionCount() {
+        return jdbc.queryForObject("SELECT COUNT(*) FROM pg_inherits WHERE inhparent = 'messages'::regclass",
+            Integer.class);
+    }
+}
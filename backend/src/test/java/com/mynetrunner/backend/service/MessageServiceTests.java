@@ -0,0 +1,91 @@
+package com.mynetrunner.backend.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.TestPropertySource;
+
+import com.mynetrunner.backend.dto.message.MessageResponse;
+
+/**
+ * Stores pending messages that share timestamps, with ids out of timestamp
+ * order, and walks them with forEachPendingPage to check that the keyset
+ * cursor visits every row once, in (timestamp, id) order, whether a page
+ * boundary falls inside a run of equal timestamps or the rows fill the
+ * last page exactly.
+ */
+@SpringBootTest
+@ActiveProfiles("test")
+@TestPropertySource(properties = {
+    "logging.level.root=WARN",
+    "spring.datasource.url=jdbc:h2:mem:pending;MODE=PostgreSQL;DATABASE_TO_LOWER=TRUE;DB_CLOSE_DELAY=-1"
+})
+class MessageServiceTests {
+
+    private static final LocalDateTime T0 = LocalDateTime.of(2026, 1, 1, 12, 0);
+
+    @Autowired
+    private MessageService messageService;
+
+    @Autowired
+    private JdbcTemplate jdbc;
+
+    @Test
+    void visitsEveryRowOnceWhenPagesSplitEqualTimestamps() {
+        // Five rows at T0 straddle the first two page boundaries
+        insert(100L, 17L, T0.plusSeconds(1));
+        insert(100L, 12L, T0);
+        insert(100L, 15L, T0);
+        insert(100L, 11L, T0);
+        insert(100L, 19L, T0.minusSeconds(1));
+        insert(100L, 14L, T0);
+        insert(100L, 13L, T0);
+        insert(100L, 16L, T0.plusSeconds(1));
+
+        List<List<Long>> pages = pages(100L, 3);
+
+        assertThat(pages).containsExactly(List.of(19L, 11L, 12L), List.of(13L, 14L, 15L), List.of(16L, 17L));
+    }
+
+    @Test
+    void endsWithoutAnEmptyPageWhenTheRowsFillTheLastPage() {
+        insert(200L, 24L, T0);
+        insert(200L, 21L, T0);
+        insert(200L, 23L, T0);
+        insert(200L, 22L, T0);
+
+        List<List<Long>> pages = pages(200L, 2);
+
+        // The query after the second page comes back empty and is not passed on
+        assertThat(pages).containsExactly(List.of(21L, 22L), List.of(23L, 24L));
+    }
+
+    @Test
+    void skipsDeliveredRowsAndUsersWithNothingPending() {
+        insert(300L, 31L, T0);
+        jdbc.update("UPDATE messages SET delivered = true WHERE id = 31");
+
+        assertThat(pages(300L, 2)).isEmpty();
+        assertThat(pages(301L, 2)).isEmpty();
+    }
+
+    private List<List<Long>> pages(Long receiverId, int pageSize) {
+        List<List<Long>> pages = new ArrayList<>();
+        messageService.forEachPendingPage(receiverId, pageSize,
+            page -> pages.add(page.stream().map(MessageResponse::getId).toList()));
+        return pages;
+    }
+
+    private void insert(Long receiverId, Long id, LocalDateTime timestamp) {
+        jdbc.update("INSERT INTO messages (id, sender_id, receiver_id, content, timestamp, delivered, expires_at) "
+            + "VALUES (?, 1, ?, 'hello', ?, false, ?)", id, receiverId, timestamp, timestamp.plusDays(30));
+    }
+}
@@ -0,0 +1,294 @@
+package com.mynetrunner.backend.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BooleanSupplier;
+
+import javax.sql.DataSource;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.dao.TransientDataAccessResourceException;
+import org.springframework.jdbc.core.BatchPreparedStatementSetter;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import com.mynetrunner.backend.exception.MessageDeliveryException;
+import com.mynetrunner.backend.model.Message;
+import com.mynetrunner.backend.util.ContentCompressor;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+/**
+ * Runs MessageWriteBehindQueue against an in-memory H2 database through a
+ * JdbcTemplate that can hold or fail batch inserts, to check the size and
+ * time flush triggers, backpressure, retries, refused rows and shutdown.
+ */
+class MessageWriteBehindQueueTests {
+
+    private JdbcTemplate jdbc;
+
+    private ControllableJdbcTemplate writer;
+
+    private MeterRegistry meterRegistry;
+
+    private MessageWriteBehindQueue queue;
+
+    @BeforeEach
+    void setUp() {
+        DataSource dataSource = new DriverManagerDataSource(
+            "jdbc:h2:mem:write-behind-" + UUID.randomUUID() + ";MODE=PostgreSQL;DB_CLOSE_DELAY=-1", "sa", "");
+        jdbc = new JdbcTemplate(dataSource);
+        jdbc.execute("CREATE SEQUENCE messages_seq START WITH 1 INCREMENT BY " + Message.ALLOCATION_SIZE);
+        jdbc.execute("CREATE TABLE messages (id BIGINT PRIMARY KEY, sender_id BIGINT NOT NULL, "
+            + "receiver_id BIGINT NOT NULL, content VARCHAR(10000) NOT NULL, timestamp TIMESTAMP NOT NULL, "
+            + "delivered BOOLEAN NOT NULL, expires_at TIMESTAMP NOT NULL)");
+
+        writer = new ControllableJdbcTemplate(dataSource);
+        meterRegistry = new SimpleMeterRegistry();
+        queue = new MessageWriteBehindQueue();
+        ReflectionTestUtils.setField(queue, "jdbcTemplate", writer);
+        ReflectionTestUtils.setField(queue, "transactionTemplate",
+            new TransactionTemplate(new DataSourceTransactionManager(dataSource)));
+        ReflectionTestUtils.setField(queue, "contentCompressor", new ContentCompressor());
+        ReflectionTestUtils.setField(queue, "meterRegistry", meterRegistry);
+        ReflectionTestUtils.setField(queue, "capacity", 100);
+        ReflectionTestUtils.setField(queue, "batchSize", 500);
+        ReflectionTestUtils.setField(queue, "flushIntervalMs", 50L);
+        ReflectionTestUtils.setField(queue, "offerTimeoutMs", 50L);
+        ReflectionTestUtils.setField(queue, "retryBackoffMs", 10L);
+        ReflectionTestUtils.setField(queue, "maxRetryBackoffMs", 40L);
+        ReflectionTestUtils.setField(queue, "shutdownTimeoutMs", 5000L);
+    }
+
+    @AfterEach
+    void tearDown() throws InterruptedException {
+        writer.open();
+        queue.stop();
+        jdbc.execute("DROP ALL OBJECTS");
+    }
+
+    @Test
+    void flushesAsSoonAsBatchSizeMessagesAreWaiting() throws Exception {
+        ReflectionTestUtils.setField(queue, "batchSize", 5);
+        ReflectionTestUtils.setField(queue, "flushIntervalMs", 10_000L);
+        queue.start();
+
+        for (int i = 0; i < 5; i++) {
+            queue.enqueueInsert(message(i));
+        }
+
+        // Long before the 10s interval is up
+        awaitTrue(() -> storedRows() == 5, 2000);
+        assertThat(writer.batchSizes).containsExactly(5);
+    }
+
+    @Test
+    void flushesAPartialBatchOnceTheIntervalIsUp() throws Exception {
+        ReflectionTestUtils.setField(queue, "flushIntervalMs", 300L);
+        queue.start();
+
+        long started = System.nanoTime();
+        for (int i = 0; i < 3; i++) {
+            queue.enqueueInsert(message(i));
+        }
+
+        awaitTrue(() -> storedRows() == 3, 2000);
+        assertThat(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - started)).isGreaterThanOrEqualTo(250);
+        assertThat(writer.batchSizes).containsExactly(3);
+    }
+
+    @Test
+    void pushesBackOnSendersWhenTheQueueIsFull() throws Exception {
+        ReflectionTestUtils.setField(queue, "capacity", 2);
+        ReflectionTestUtils.setField(queue, "batchSize", 1);
+        writer.hold();
+        queue.start();
+
+        // The flusher takes the first message and waits on the database
+        queue.enqueueInsert(message(0));
+        awaitTrue(() -> writer.waiting.get() == 1, 2000);
+        queue.enqueueInsert(message(1));
+        queue.enqueueInsert(message(2));
+        assertThat(queue.getQueueDepth()).isEqualTo(2);
+
+        assertThatThrownBy(() -> queue.enqueueInsert(message(3)))
+            .isInstanceOf(MessageDeliveryException.class)
+            .hasMessageContaining("full");
+
+        // Everything accepted is still written once the database recovers
+        writer.open();
+        awaitTrue(() -> storedRows() == 3, 2000);
+    }
+
+    @Test
+    void retriesAFailedFlushUntilItGoesThrough() throws Exception {
+        writer.failuresLeft.set(3);
+        queue.start();
+
+        queue.enqueueInsert(message(0));
+        queue.enqueueInsert(message(1));
+
+        awaitTrue(() -> storedRows() == 2, 2000);
+        assertThat(meterRegistry.get("messaging.write-behind.flush.failures").counter().count()).isEqualTo(3);
+    }
+
+    @Test
+    void dropsOnlyTheRowsTheDatabaseRefuses() throws Exception {
+        ReflectionTestUtils.setField(queue, "batchSize", 5);
+        queue.start();
+
+        // Too long for the column, which no retry would fix
+        for (int i = 0; i < 5; i++) {
+            Message message = message(i);
+            if (i == 3) {
+                message.setContent("x".repeat(10_001));
+            }
+            queue.enqueueInsert(message);
+        }
+
+        awaitTrue(() -> storedRows() == 4, 2000);
+        assertThat(meterRegistry.get("messaging.write-behind.dead-lettered").counter().count()).isEqualTo(1);
+        assertThat(jdbc.queryForList("SELECT content FROM messages ORDER BY id", String.class))
+            .containsExactly("message 0", "message 1", "message 2", "message 4");
+        assertThat(meterRegistry.get("messaging.write-behind.flush.failures").counter().count()).isZero();
+    }
+
+    @Test
+    void stopLetsTheFlushInProgressFinishAndWritesTheRest() throws Exception {
+        ReflectionTestUtils.setField(queue, "batchSize", 1);
+        writer.hold();
+        queue.start();
+
+        queue.enqueueInsert(message(0));
+        awaitTrue(() -> writer.waiting.get() == 1, 2000);
+        queue.enqueueInsert(message(1));
+
+        Thread stopping = new Thread(() -> {
+            try {
+                queue.stop();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
+        stopping.start();
+        Thread.sleep(100);
+        assertThat(stopping.isAlive()).as("stop waits for the flush in progress").isTrue();
+
+        writer.open();
+        stopping.join(5000);
+        assertThat(stopping.isAlive()).isFalse();
+        assertThat(writer.interrupted).as("flusher interrupted mid-flush").isFalse();
+        assertThat(storedRows()).isEqualTo(2);
+
+        assertThatThrownBy(() -> queue.enqueueInsert(message(2)))
+            .isInstanceOf(MessageDeliveryException.class);
+    }
+
+    @Test
+    void tellsListenersWhoseMessagesWereCommitted() throws Exception {
+        List<Integer> rowsWhenNotified = new CopyOnWriteArrayList<>();
+        List<Long> notified = new CopyOnWriteArrayList<>();
+        List<String> notifyingThreads = new CopyOnWriteArrayList<>();
+        queue.addListener(receiverIds -> {
+            rowsWhenNotified.add(storedRows());
+            notified.addAll(receiverIds);
+            notifyingThreads.add(Thread.currentThread().getName());
+        });
+        queue.start();
+
+        queue.enqueueInsert(message(0));
+        queue.enqueueInsert(message(1));
+
+        awaitTrue(() -> !notified.isEmpty(), 2000);
+        assertThat(notified).containsExactly(2L);
+        assertThat(rowsWhenNotified).containsExactly(2);
+        // Off the flusher, so a slow listener cannot hold up the next flush
+        assertThat(notifyingThreads).containsExactly("message-write-behind-notify");
+    }
+
+    private int storedRows() {
+        return jdbc.queryForObject("SELECT COUNT(*) FROM messages", Integer.class);
+    }
+
+    private static Message message(int i) {
+        LocalDateTime now = LocalDateTime.now();
+        Message message = new Message();
+        message.setSenderId(1L);
+        message.setReceiverId(2L);
+        message.setContent("message " + i);
+        message.setDelivered(false);
+        message.setTimestamp(now);
+        message.setExpiresAt(now.plusDays(30));
+        return message;
+    }
+
+    private static void awaitTrue(BooleanSupplier condition, long timeoutMs) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + timeoutMs;
+        while (!condition.getAsBoolean()) {
+            assertThat(System.currentTimeMillis()).as("condition not met within %d ms", timeoutMs).isLessThan(deadline);
+            Thread.sleep(10);
+        }
+    }
+
+    /**
+     * Batch inserts can be held until open() or made to fail a number of times
+     */
+    private static class ControllableJdbcTemplate extends JdbcTemplate {
+
+        private final List<Integer> batchSizes = new CopyOnWriteArrayList<>();
+
+        private final AtomicInteger failuresLeft = new AtomicInteger();
+
+        private final AtomicInteger waiting = new AtomicInteger();
+
+        private volatile CountDownLatch gate = new CountDownLatch(0);
+
+        private volatile boolean interrupted;
+
+        ControllableJdbcTemplate(DataSource dataSource) {
+            super(dataSource);
+        }
+
+        void hold() {
+            gate = new CountDownLatch(1);
+        }
+
+        void open() {
+            gate.countDown();
+        }
+
+        @Override
+        public int[] batchUpdate(String sql, BatchPreparedStatementSetter setter) {
+            waiting.incrementAndGet();
+            try {
+                gate.await();
+            } catch (InterruptedException e) {
+                interrupted = true;
+                Thread.currentThread().interrupt();
+            } finally {
+                waiting.decrementAndGet();
+            }
+
+            if (failuresLeft.getAndUpdate(left -> Math.max(0, left - 1)) > 0) {
+                throw new TransientDataAccessResourceException("Database unavailable");
+            }
+            int[] counts = super.batchUpdate(sql, setter);
+            batchSizes.add(setter.getBatchSize());
+            return counts;
+        }
+    }
+}
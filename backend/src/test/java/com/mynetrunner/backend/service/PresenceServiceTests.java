@@ -0,0 +1,217 @@
+package com.mynetrunner.backend.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.MessageHandler;
+import org.springframework.messaging.simp.broker.SimpleBrokerMessageHandler;
+import org.springframework.messaging.simp.stomp.StompCommand;
+import org.springframework.messaging.simp.stomp.StompHeaderAccessor;
+import org.springframework.messaging.simp.user.DefaultUserDestinationResolver;
+import org.springframework.messaging.simp.user.UserDestinationMessageHandler;
+import org.springframework.messaging.support.ExecutorSubscribableChannel;
+import org.springframework.messaging.support.MessageBuilder;
+import org.springframework.web.socket.CloseStatus;
+import org.springframework.web.socket.messaging.DefaultSimpUserRegistry;
+import org.springframework.web.socket.messaging.SessionConnectEvent;
+import org.springframework.web.socket.messaging.SessionDisconnectEvent;
+
+import com.mynetrunner.backend.config.UserIdHandshakeHandler.UserPrincipal;
+
+/**
+ * Feeds STOMP session events and handled SUBSCRIBE and UNSUBSCRIBE frames
+ * to PresenceService and checks which users it reports online and when its
+ * listeners hear about it.
+ */
+class PresenceServiceTests {
+
+    private PresenceService presenceService;
+
+    private final List<String> events = Collections.synchronizedList(new ArrayList<>());
+
+    private final ExecutorSubscribableChannel channel = new ExecutorSubscribableChannel();
+
+    // Passes SUBSCRIBE frames to the broker
+    private final MessageHandler userDestinationHandler = new UserDestinationMessageHandler(channel, channel,
+        new DefaultUserDestinationResolver(new DefaultSimpUserRegistry()));
+
+    private final MessageHandler broker = new SimpleBrokerMessageHandler(channel, channel, channel, List.of("/queue"));
+
+    @BeforeEach
+    void setUp() {
+        presenceService = new PresenceService();
+        presenceService.addListener(new PresenceService.PresenceListener() {
+            @Override
+            public void userOnline(Long userId) {
+                events.add("online " + userId);
+            }
+
+            @Override
+            public void userOffline(Long userId) {
+                events.add("offline " + userId);
+            }
+        });
+    }
+
+    @Test
+    void userIsOnlineWhileSubscribedToTheirQueue() {
+        connect("s1");
+        subscribe("s1", "sub-0", 7L, PresenceService.USER_QUEUE_SUBSCRIPTION);
+        assertThat(presenceService.isOnline(7L)).isTrue();
+        assertThat(presenceService.getOnlineUserIds()).containsExactly(7L);
+
+        unsubscribe("s1", "sub-0");
+        assertThat(presenceService.isOnline(7L)).isFalse();
+        assertThat(events).containsExactly("online 7", "offline 7");
+    }
+
+    @Test
+    void otherDestinationsDoNotCount() {
+        connect("s1");
+        subscribe("s1", "sub-0", 7L, "/topic/announcements");
+        assertThat(presenceService.isOnline(7L)).isFalse();
+        assertThat(events).isEmpty();
+    }
+
+    @Test
+    void listenersOnlyHearTheFirstAndLastSubscription() {
+        connect("s1");
+        connect("s2");
+        subscribe("s1", "sub-0", 7L, PresenceService.USER_QUEUE_SUBSCRIPTION);
+        subscribe("s2", "sub-0", 7L, PresenceService.USER_QUEUE_SUBSCRIPTION);
+        assertThat(events).containsExactly("online 7");
+
+        disconnect("s1");
+        assertThat(presenceService.isOnline(7L)).isTrue();
+
+        disconnect("s2");
+        assertThat(presenceService.isOnline(7L)).isFalse();
+        assertThat(events).containsExactly("online 7", "offline 7");
+        assertThat(presenceService.getConnectedSessionCount()).isZero();
+    }
+
+    @Test
+    void repeatedEventsAreCountedOnce() {
+        connect("s1");
+        subscribe("s1", "sub-0", 7L, PresenceService.USER_QUEUE_SUBSCRIPTION);
+        subscribe("s1", "sub-0", 7L, PresenceService.USER_QUEUE_SUBSCRIPTION);
+        unsubscribe("s1", "sub-0");
+        unsubscribe("s1", "sub-0");
+        disconnect("s1");
+
+        assertThat(presenceService.isOnline(7L)).isFalse();
+        assertThat(events).containsExactly("online 7", "offline 7");
+    }
+
+    @Test
+    void countsASubscriptionOnlyOnceTheBrokerHasIt() {
+        connect("s1");
+        Message<byte[]> frame = subscribeFrame("s1", "sub-0", 7L, PresenceService.USER_QUEUE_SUBSCRIPTION);
+
+        // The annotation handler and a failed hand-off leave the user offline
+        presenceService.afterMessageHandled(frame, channel, message -> { }, null);
+        presenceService.afterMessageHandled(frame, channel, userDestinationHandler, new IllegalStateException());
+        assertThat(presenceService.isOnline(7L)).isFalse();
+
+        presenceService.afterMessageHandled(frame, channel, userDestinationHandler, null);
+        assertThat(presenceService.isOnline(7L)).isTrue();
+        assertThat(events).containsExactly("online 7");
+    }
+
+    @Test
+    void ignoresASubscriptionHandledAfterItsSessionClosed() {
+        connect("s1");
+        disconnect("s1");
+
+        subscribe("s1", "sub-0", 7L, PresenceService.USER_QUEUE_SUBSCRIPTION);
+
+        assertThat(presenceService.isOnline(7L)).isFalse();
+        assertThat(presenceService.getConnectedSessionCount()).isZero();
+        assertThat(events).isEmpty();
+    }
+
+    @Test
+    void staysOnlineWhileSubscribingAsAnotherSessionLeaves() throws Exception {
+        // Each thread keeps subscribing and leaving as its own session, so the
+        // count keeps dropping to zero while the other thread subscribes
+        connect("s0");
+        connect("s1");
+        connect("s2");
+        AtomicInteger offlineWhileSubscribed = new AtomicInteger();
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        try {
+            List<Future<?>> sessions = new ArrayList<>();
+            for (int t = 0; t < 2; t++) {
+                String sessionId = "s" + t;
+                sessions.add(executor.submit(() -> {
+                    for (int i = 0; i < 20_000; i++) {
+                        subscribe(sessionId, "sub-" + i, 7L, PresenceService.USER_QUEUE_SUBSCRIPTION);
+                        if (!presenceService.isOnline(7L)) {
+                            offlineWhileSubscribed.incrementAndGet();
+                        }
+                        unsubscribe(sessionId, "sub-" + i);
+                    }
+                }));
+            }
+            for (Future<?> session : sessions) {
+                session.get();
+            }
+        } finally {
+            executor.shutdown();
+        }
+
+        assertThat(offlineWhileSubscribed).hasValue(0);
+        assertThat(presenceService.isOnline(7L)).isFalse();
+        subscribe("s2", "sub-0", 7L, PresenceService.USER_QUEUE_SUBSCRIPTION);
+        assertThat(presenceService.isOnline(7L)).isTrue();
+    }
+
+    private void connect(String sessionId) {
+        StompHeaderAccessor accessor = StompHeaderAccessor.create(StompCommand.CONNECT);
+        accessor.setSessionId(sessionId);
+        presenceService.handleConnect(new SessionConnectEvent(this, message(accessor)));
+    }
+
+    private void subscribe(String sessionId, String subscriptionId, Long userId, String destination) {
+        presenceService.afterMessageHandled(subscribeFrame(sessionId, subscriptionId, userId, destination),
+            channel, userDestinationHandler, null);
+    }
+
+    private static Message<byte[]> subscribeFrame(String sessionId, String subscriptionId, Long userId,
+            String destination) {
+        StompHeaderAccessor accessor = StompHeaderAccessor.create(StompCommand.SUBSCRIBE);
+        accessor.setSessionId(sessionId);
+        accessor.setSubscriptionId(subscriptionId);
+        accessor.setDestination(destination);
+        accessor.setUser(new UserPrincipal(userId));
+        return message(accessor);
+    }
+
+    private void unsubscribe(String sessionId, String subscriptionId) {
+        StompHeaderAccessor accessor = StompHeaderAccessor.create(StompCommand.UNSUBSCRIBE);
+        accessor.setSessionId(sessionId);
+        accessor.setSubscriptionId(subscriptionId);
+        presenceService.afterMessageHandled(message(accessor), channel, broker, null);
+    }
+
+    private void disconnect(String sessionId) {
+        StompHeaderAccessor accessor = StompHeaderAccessor.create(StompCommand.DISCONNECT);
+        accessor.setSessionId(sessionId);
+        presenceService.handleDisconnect(
+            new SessionDisconnectEvent(this, message(accessor), sessionId, CloseStatus.NORMAL));
+    }
+
+    private static Message<byte[]> message(StompHeaderAccessor accessor) {
+        return MessageBuilder.createMessage(new byte[0], accessor.getMessageHeaders());
+    }
+}
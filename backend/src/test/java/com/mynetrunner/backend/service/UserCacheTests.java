@@ -0,0 +1,140 @@
+package com.mynetrunner.backend.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.lang.reflect.Proxy;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import com.mynetrunner.backend.model.User;
+import com.mynetrunner.backend.repository.UserRepository;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+/**
+ * Runs UserCache over an in-memory UserRepository that counts its queries,
+ * to check that hits, cached misses and bulk lookups stay off the database
+ * and that invalidate, or the expiry of a miss, makes a newly registered id
+ * visible.
+ */
+class UserCacheTests {
+
+    private final Map<Long, User> users = new ConcurrentHashMap<>();
+
+    private final AtomicInteger singleLoads = new AtomicInteger();
+
+    private final AtomicInteger bulkLoads = new AtomicInteger();
+
+    private final MeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+    private UserCache cache;
+
+    @BeforeEach
+    void setUp() {
+        addUser(1L, "alice");
+        addUser(2L, "bob");
+        addUser(3L, "carol");
+
+        cache = new UserCache();
+        ReflectionTestUtils.setField(cache, "userRepository", countingRepository());
+        ReflectionTestUtils.setField(cache, "meterRegistry", meterRegistry);
+        ReflectionTestUtils.setField(cache, "maximumSize", 100L);
+        ReflectionTestUtils.setField(cache, "negativeTtlMs", 30_000L);
+        cache.init();
+    }
+
+    @Test
+    void loadsEachUsernameOnce() {
+        assertThat(cache.findUsername(1L)).hasValue("alice");
+        assertThat(cache.findUsername(1L)).hasValue("alice");
+        assertThat(cache.exists(1L)).isTrue();
+
+        assertThat(singleLoads).hasValue(1);
+        assertThat(meterRegistry.get("cache.gets").tag("cache", "users").tag("result", "hit")
+            .functionCounter().count()).isEqualTo(2);
+    }
+
+    @Test
+    void remembersUnknownIdsUntilInvalidated() {
+        assertThat(cache.exists(4L)).isFalse();
+        assertThat(cache.exists(4L)).isFalse();
+        assertThat(singleLoads).hasValue(1);
+
+        // Registered after the miss was cached
+        addUser(4L, "dave");
+        assertThat(cache.exists(4L)).isFalse();
+
+        cache.invalidate(4L);
+        assertThat(cache.findUsername(4L)).hasValue("dave");
+        assertThat(singleLoads).hasValue(2);
+    }
+
+    @Test
+    void forgetsUnknownIdsAfterTheNegativeTtl() throws Exception {
+        ReflectionTestUtils.setField(cache, "negativeTtlMs", 100L);
+        cache.init();
+
+        assertThat(cache.findUsername(1L)).hasValue("alice");
+        assertThat(cache.exists(4L)).isFalse();
+
+        // Registered on another node, so nothing invalidates the miss here
+        addUser(4L, "dave");
+        Thread.sleep(200);
+
+        assertThat(cache.findUsername(4L)).hasValue("dave");
+        // Known users do not expire
+        assertThat(cache.findUsername(1L)).hasValue("alice");
+        assertThat(singleLoads).hasValue(3);
+    }
+
+    @Test
+    void loadsAllMissesOfABulkLookupWithOneQuery() {
+        cache.findUsername(1L);
+
+        Map<Long, Optional<String>> found = cache.findUsernames(List.of(1L, 2L, 3L, 99L));
+
+        assertThat(found).containsEntry(1L, Optional.of("alice"))
+            .containsEntry(2L, Optional.of("bob"))
+            .containsEntry(3L, Optional.of("carol"))
+            .containsEntry(99L, Optional.empty());
+        assertThat(bulkLoads).hasValue(1);
+
+        // Everything, including the unknown id, is now cached
+        cache.findUsernames(List.of(1L, 2L, 3L, 99L));
+        assertThat(bulkLoads).hasValue(1);
+        assertThat(singleLoads).hasValue(1);
+    }
+
+    private void addUser(Long id, String username) {
+        User user = new User();
+        user.setId(id);
+        user.setUsername(username);
+        users.put(id, user);
+    }
+
+    // Only the two lookups UserCache makes are implemented
+    private UserRepository countingRepository() {
+        return (UserRepository) Proxy.newProxyInstance(getClass().getClassLoader(),
+            new Class<?>[] { UserRepository.class },
+            (proxy, method, args) -> switch (method.getName()) {
+                case "findById" -> {
+                    singleLoads.incrementAndGet();
+                    yield Optional.ofNullable(users.get((Long) args[0]));
+                }
+                case "findAllById" -> {
+                    bulkLoads.incrementAndGet();
+                    yield ((List<?>) args[0]).stream().map(users::get).filter(Objects::nonNull).toList();
+                }
+                default -> throw new UnsupportedOperationException(method.getName());
+            });
+    }
+}
@@ -0,0 +1,76 @@
+package com.mynetrunner.backend.util;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * Fills Bloom filters with generated usernames to check that nothing put is
+ * ever reported absent, including under concurrent puts, and that the false
+ * positive rate stays near the one the filter was sized for.
+ */
+class BloomFilterTests {
+
+    @Test
+    void neverLosesAName() {
+        BloomFilter filter = new BloomFilter(10_000, 0.01);
+        for (int i = 0; i < 10_000; i++) {
+            filter.put("user_" + i);
+        }
+
+        for (int i = 0; i < 10_000; i++) {
+            assertThat(filter.mightContain("user_" + i)).as("user_%d", i).isTrue();
+        }
+    }
+
+    @Test
+    void keepsFalsePositivesNearTheConfiguredRate() {
+        BloomFilter filter = new BloomFilter(10_000, 0.01);
+        for (int i = 0; i < 10_000; i++) {
+            filter.put("user_" + i);
+        }
+
+        int falsePositives = 0;
+        for (int i = 0; i < 100_000; i++) {
+            if (filter.mightContain("free_" + i)) {
+                falsePositives++;
+            }
+        }
+        assertThat(falsePositives / 100_000.0).isLessThan(0.02);
+    }
+
+    @Test
+    void keepsEveryNamePutConcurrently() throws Exception {
+        // Small enough that threads keep setting bits in the same words
+        BloomFilter filter = new BloomFilter(1_000, 0.01);
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        try {
+            List<Future<?>> puts = new ArrayList<>();
+            for (int t = 0; t < 8; t++) {
+                int thread = t;
+                puts.add(executor.submit(() -> {
+                    for (int i = 0; i < 2_000; i++) {
+                        filter.put("user_" + thread + "_" + i);
+                    }
+                }));
+            }
+            for (Future<?> put : puts) {
+                put.get();
+            }
+        } finally {
+            executor.shutdown();
+        }
+
+        for (int t = 0; t < 8; t++) {
+            for (int i = 0; i < 2_000; i++) {
+                assertThat(filter.mightContain("user_" + t + "_" + i)).isTrue();
+            }
+        }
+    }
+}
@@ -0,0 +1,92 @@
+package com.mynetrunner.backend.util;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.Random;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+/**
+ * Round-trips message content through ContentCompressor to check which
+ * content is stored compressed, that plain content can never be mistaken
+ * for compressed content, and that rows written before compression read
+ * back unchanged.
+ */
+class ContentCompressorTests {
+
+    private final MeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+    private ContentCompressor compressor;
+
+    @BeforeEach
+    void setUp() {
+        compressor = new ContentCompressor();
+        ReflectionTestUtils.setField(compressor, "meterRegistry", meterRegistry);
+        ReflectionTestUtils.setField(compressor, "enabled", true);
+        ReflectionTestUtils.setField(compressor, "thresholdBytes", 512);
+        ReflectionTestUtils.setField(compressor, "level", 3);
+        compressor.init();
+    }
+
+    @Test
+    void compressesLongContentAndReadsItBack() {
+        String content = "The quick brown fox jumps over the lazy dog \u20ac\uD83D\uDE00 ".repeat(40);
+
+        String stored = compressor.compress(content);
+
+        assertThat(stored).startsWith("\u0001z").hasSizeLessThan(content.length());
+        assertThat(compressor.decompress(stored)).isEqualTo(content);
+        assertThat(meterRegistry.get("messaging.storage.compression.ratio").summary().mean()).isGreaterThan(1);
+        assertThat(meterRegistry.get("messaging.storage.compression.saved").counter().count()).isPositive();
+    }
+
+    @Test
+    void storesShortAndIncompressibleContentAsIs() {
+        String shortContent = "see you at 8";
+        assertThat(compressor.compress(shortContent)).isEqualTo(shortContent);
+
+        // Base64 makes random text longer than the original
+        Random random = new Random(42);
+        StringBuilder noise = new StringBuilder();
+        for (int i = 0; i < 2000; i++) {
+            noise.append((char) ('!' + random.nextInt(94)));
+        }
+        String incompressible = noise.toString();
+        String stored = compressor.compress(incompressible);
+
+        assertThat(stored).isEqualTo(incompressible);
+        assertThat(compressor.decompress(stored)).isEqualTo(incompressible);
+        assertThat(meterRegistry.get("messaging.storage.compression.saved").counter().count()).isZero();
+    }
+
+    @Test
+    void escapesPlainContentThatLooksCompressed() {
+        for (String content : new String[] { "\u0001zAAAA", "\u0001p", "\u0001" }) {
+            String stored = compressor.compress(content);
+
+            assertThat(stored).startsWith("\u0001p");
+            assertThat(compressor.decompress(stored)).isEqualTo(content);
+        }
+    }
+
+    @Test
+    void readsRowsWrittenBeforeCompressionUnchanged() {
+        assertThat(compressor.decompress("hello")).isEqualTo("hello");
+        assertThat(compressor.decompress("")).isEmpty();
+        assertThat(compressor.decompress(null)).isNull();
+        assertThat(compressor.compress(null)).isNull();
+    }
+
+    @Test
+    void leavesContentPlainWhenDisabled() {
+        ReflectionTestUtils.setField(compressor, "enabled", false);
+        String content = "x".repeat(4000);
+
+        assertThat(compressor.compress(content)).isEqualTo(content);
+    }
+}
@@ -0,0 +1,66 @@
+package com.mynetrunner.backend.util;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.Date;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import com.github.benmanes.caffeine.cache.Cache;
+
+/**
+ * Issues short-lived tokens and checks that verified tokens are cached only
+ * until they expire, and that a token failing verification is never cached.
+ */
+class JwtUtilTests {
+
+    private JwtUtil jwtUtil;
+
+    @BeforeEach
+    void setUp() {
+        jwtUtil = new JwtUtil();
+        ReflectionTestUtils.setField(jwtUtil, "secret", "testSecretKeyThatIsLongEnoughForHmacSha256Signing");
+        // exp is kept in whole seconds, so a token lives between one and two seconds
+        ReflectionTestUtils.setField(jwtUtil, "expiration", 2000L);
+        ReflectionTestUtils.setField(jwtUtil, "cacheMaximumSize", 100L);
+        jwtUtil.init();
+    }
+
+    @Test
+    void cachesAVerifiedTokenUntilItExpires() throws Exception {
+        String token = jwtUtil.generateToken("alice");
+        Date expiration = jwtUtil.extractExpiration(token);
+
+        assertThat(jwtUtil.validateToken(token, "alice")).isTrue();
+        assertThat(jwtUtil.validateToken(token, "bob")).isFalse();
+        assertThat(jwtUtil.extractUsername(token)).isEqualTo("alice");
+        assertThat(cachedTokens()).isEqualTo(1);
+
+        Thread.sleep(Math.max(expiration.getTime() - System.currentTimeMillis(), 0) + 100);
+
+        assertThat(jwtUtil.validateToken(token, "alice")).isFalse();
+        assertThat(cachedTokens()).isZero();
+    }
+
+    @Test
+    void doesNotCacheTokensThatFailVerification() {
+        String token = jwtUtil.generateToken("alice");
+        String[] parts = token.split("\\.");
+        String forged = parts[0] + "." + parts[1] + "." + new StringBuilder(parts[2]).reverse();
+
+        assertThat(jwtUtil.validateToken(forged, "alice")).isFalse();
+        assertThat(jwtUtil.validateToken("not a token", "alice")).isFalse();
+        assertThat(cachedTokens()).isZero();
+
+        // The genuine token still verifies after the forgery was rejected
+        assertThat(jwtUtil.validateToken(token, "alice")).isTrue();
+    }
+
+    private long cachedTokens() {
+        // Iterating skips expired entries that the timer wheel has not evicted yet
+        Cache<?, ?> cache = (Cache<?, ?>) ReflectionTestUtils.getField(jwtUtil, "verifiedTokens");
+        return cache.asMap().keySet().stream().count();
+    }
+}
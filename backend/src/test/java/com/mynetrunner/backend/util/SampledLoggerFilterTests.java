@@ -0,0 +1,83 @@
+package com.mynetrunner.backend.util;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import ch.qos.logback.classic.Level;
+import ch.qos.logback.classic.Logger;
+import ch.qos.logback.classic.LoggerContext;
+import ch.qos.logback.core.spi.FilterReply;
+
+/**
+ * Asks a SampledLoggerFilter about a run of events to check that exactly
+ * the first of every sampleEvery events of its logger passes, that other
+ * loggers and level checks are neither filtered nor counted, and that a
+ * rate below one lets every event through.
+ */
+class SampledLoggerFilterTests {
+
+    private final LoggerContext loggerContext = new LoggerContext();
+
+    private final Logger sampled = loggerContext.getLogger("com.example.Noisy");
+
+    private final Logger other = loggerContext.getLogger("com.example.Quiet");
+
+    private SampledLoggerFilter filter;
+
+    @BeforeEach
+    void setUp() {
+        filter = new SampledLoggerFilter();
+        filter.setLoggerName(sampled.getName());
+        filter.setSampleEvery(4);
+    }
+
+    @Test
+    void passesTheFirstOfEverySampleEveryEvents() {
+        List<Integer> passed = new ArrayList<>();
+        for (int i = 0; i < 12; i++) {
+            if (decide(sampled, "event {}") == FilterReply.NEUTRAL) {
+                passed.add(i);
+            }
+        }
+
+        assertThat(passed).containsExactly(0, 4, 8);
+    }
+
+    @Test
+    void neitherFiltersNorCountsOtherLoggersOrLevelChecks() {
+        assertThat(decide(sampled, "event {}")).isEqualTo(FilterReply.NEUTRAL);
+
+        for (int i = 0; i < 10; i++) {
+            assertThat(decide(other, "event {}")).isEqualTo(FilterReply.NEUTRAL);
+            // isWarnEnabled() reaches the filter with a null format
+            assertThat(decide(sampled, null)).isEqualTo(FilterReply.NEUTRAL);
+        }
+
+        // Still the second, third and fourth events of the sampled logger
+        assertThat(decide(sampled, "event {}")).isEqualTo(FilterReply.DENY);
+        assertThat(decide(sampled, "event {}")).isEqualTo(FilterReply.DENY);
+        assertThat(decide(sampled, "event {}")).isEqualTo(FilterReply.DENY);
+        assertThat(decide(sampled, "event {}")).isEqualTo(FilterReply.NEUTRAL);
+    }
+
+    @Test
+    void letsEveryEventThroughBelowARateOfOne() {
+        for (int sampleEvery : new int[] { 1, 0, -5 }) {
+            filter.setSampleEvery(sampleEvery);
+
+            for (int i = 0; i < 5; i++) {
+                assertThat(decide(sampled, "event {}")).as("sampleEvery %d", sampleEvery)
+                    .isEqualTo(FilterReply.NEUTRAL);
+            }
+        }
+    }
+
+    private FilterReply decide(Logger logger, String format) {
+        return filter.decide(null, logger, Level.WARN, format, null, null);
+    }
+}
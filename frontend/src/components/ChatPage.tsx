@@ -15,6 +15,10 @@ const ChatPage: React.FC<ChatPageProps> = ({ onNavigate }) => {
   const [selectedContact, setSelectedContact] = useState<Contact | null>(null);
   const [allUsers, setAllUsers] = useState<User[]>([]);
   const [showUserSelector, setShowUserSelector] = useState(false);
+  const [userCursor, setUserCursor] = useState<number | null>(null);
+  const [userSearch, setUserSearch] = useState('');
+  const [isLoadingUsers, setIsLoadingUsers] = useState(false);
+  const userQueryRef = useRef(0);
   const [isLoading, setIsLoading] = useState(true);
   const messagesEndRef = useRef<HTMLDivElement>(null);
 
@@ -30,21 +34,37 @@ const ChatPage: React.FC<ChatPageProps> = ({ onNavigate }) => {
     }
     
     setCurrentUser({ id: 1, username }); // TODO: Get actual user ID from backend
-    
-    // Fetch all users
-    const fetchUsers = async () => {
-      try {
-        const users = await userAPI.getAllUsers();
-        setAllUsers(users);
-      } catch (error) {
-        console.error('Failed to fetch users:', error);
-      }
-    };
-    
-    fetchUsers();
     setIsLoading(false);
   }, [onNavigate]);
 
+  // Load one directory page; after === null starts the list over
+  const loadUsers = async (after: number | null, prefix: string) => {
+    const query = userQueryRef.current;
+    setIsLoadingUsers(true);
+    try {
+      const page = await userAPI.getUsersPage(after, prefix);
+      // A newer search has replaced the list since this request went out
+      if (query !== userQueryRef.current) return;
+      setAllUsers(prevUsers => (after === null ? page.users : [...prevUsers, ...page.users]));
+      setUserCursor(page.nextCursor);
+    } catch (error) {
+      console.error('Failed to fetch users:', error);
+    } finally {
+      if (query === userQueryRef.current) {
+        setIsLoadingUsers(false);
+      }
+    }
+  };
+
+  // First page on login, then again whenever the search prefix settles
+  useEffect(() => {
+    if (!currentUser) return;
+
+    userQueryRef.current += 1;
+    const timer = setTimeout(() => loadUsers(null, userSearch.trim()), userSearch ? 250 : 0);
+    return () => clearTimeout(timer);
+  }, [currentUser, userSearch]);
+
   // Auto-scroll to bottom when new messages arrive
   useEffect(() => {
     messagesEndRef.current?.scrollIntoView({ behavior: 'smooth' });
@@ -141,6 +161,15 @@ const ChatPage: React.FC<ChatPageProps> = ({ onNavigate }) => {
     setShowUserSelector(false);
   };
 
+  // Fetch the next page when the list is scrolled near its end
+  const handleUserListScroll = (e: React.UIEvent<HTMLDivElement>) => {
+    const list = e.currentTarget;
+    if (isLoadingUsers || userCursor === null) return;
+    if (list.scrollTop + list.clientHeight >= list.scrollHeight - 48) {
+      loadUsers(userCursor, userSearch.trim());
+    }
+  };
+
   // Show loading state while checking authentication
   if (isLoading) {
     return (
@@ -330,7 +359,15 @@ const ChatPage: React.FC<ChatPageProps> = ({ onNavigate }) => {
               </button>
             </div>
             
-            <div className="space-y-2 max-h-64 overflow-y-auto">
+            <input
+              type="text"
+              value={userSearch}
+              onChange={(e) => setUserSearch(e.target.value)}
+              placeholder="Search by username..."
+              className="w-full mb-3 px-3 py-2 border border-gray-300 rounded-lg focus:outline-none focus:ring-2 focus:ring-indigo-500 focus:border-transparent"
+            />
+
+            <div className="space-y-2 max-h-64 overflow-y-auto" onScroll={handleUserListScroll}>
               {allUsers
                 .filter(user => user.id !== currentUser?.id) // Don't show current user
                 .map(user => (
@@ -350,9 +387,12 @@ const ChatPage: React.FC<ChatPageProps> = ({ onNavigate }) => {
                     </div>
                   </button>
                 ))}
+              {isLoadingUsers && (
+                <p className="text-center text-sm text-gray-500 py-2">Loading...</p>
+              )}
             </div>
             
-            {allUsers.filter(user => user.id !== currentUser?.id).length === 0 && (
+            {!isLoadingUsers && allUsers.filter(user => user.id !== currentUser?.id).length === 0 && (
               <div className="text-center py-8 text-gray-500">
                 <UserPlus className="w-12 h-12 mx-auto mb-4 text-gray-300" />
                 <p className="text-sm">No other users found</p>
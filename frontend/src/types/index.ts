@@ -19,6 +19,12 @@ export interface User {
   username: string;
 }
 
+// One page of GET /api/users; nextCursor is null on the last page
+export interface UserPage {
+  users: User[];
+  nextCursor: number | null;
+}
+
 // Message types for chat functionality
 export interface Message {
   id: number;
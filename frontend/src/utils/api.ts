@@ -1,5 +1,6 @@
 import axios, { AxiosError } from 'axios';
-import type { AuthCredentials, RegisterCredentials, AuthResponse } from '../types';
+import type { AxiosResponse } from 'axios';
+import type { AuthCredentials, RegisterCredentials, AuthResponse, UserPage } from '../types';
 
 // Create axios instance with default config
 const api = axios.create({
@@ -77,10 +78,17 @@ export const authAPI = {
 
 // User API calls
 export const userAPI = {
-  // Get all users
-  getAllUsers: async (): Promise<Array<{id: number; username: string}>> => {
+  // One page of the directory; pass the previous page's nextCursor to continue
+  getUsersPage: async (after: number | null, prefix: string): Promise<UserPage> => {
     try {
-      const response = await api.get('/api/users');
+      const params: { after?: number; prefix?: string } = {};
+      if (after !== null) {
+        params.after = after;
+      }
+      if (prefix) {
+        params.prefix = prefix;
+      }
+      const response: AxiosResponse<UserPage> = await api.get('/api/users', { params });
       return response.data;
     } catch (error) {
       if (error instanceof AxiosError) {